@@ -0,0 +1,67 @@
+package be.meemoo.benchmark;
+
+import de.gwdg.metadataqa.api.calculator.CalculatorFacade;
+import de.gwdg.metadataqa.api.interfaces.MetricResult;
+import de.gwdg.metadataqa.api.util.CsvReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single call to CalculatorFacade.measureAsMetricResult for every schema format.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MeasurementBenchmark {
+
+    private static final int RECORDS = 1000;
+
+    @Param({"csv", "json", "xml"})
+    public String format;
+
+    private CalculatorFacade calculator;
+    private List<List<String>> csvRecords;
+    private List<String> records;
+    private int next = 0;
+
+    @Setup
+    public void setup() throws Exception {
+        SyntheticRecords synthetic = new SyntheticRecords(RECORDS);
+        calculator = SyntheticRecords.calculator(format);
+        switch (format) {
+            case "csv":
+                calculator.setCsvReader(new CsvReader().setHeader(SyntheticRecords.FIELDS));
+                csvRecords = synthetic.getRecords();
+                break;
+            case "json":
+                records = synthetic.asJsonLines();
+                break;
+            default:
+                records = synthetic.asXmlRecords();
+        }
+    }
+
+    @Benchmark
+    public Map<String, List<MetricResult>> measure() {
+        next = (next + 1) % RECORDS;
+        return csvRecords != null
+             ? calculator.measureAsMetricResult(csvRecords.get(next))
+             : calculator.measureAsMetricResult(records.get(next));
+    }
+}
@@ -0,0 +1,94 @@
+package be.meemoo.benchmark;
+
+import be.meemoo.reader.CSVRecordReader;
+import be.meemoo.reader.JSONRecordReader;
+import be.meemoo.reader.StreamingJSONRecordReader;
+import be.meemoo.reader.StreamingXMLRecordReader;
+import be.meemoo.reader.XMLRecordReader;
+import de.gwdg.metadataqa.api.calculator.CalculatorFacade;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing records out of the input, without measuring them. Scores are per record.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ReaderBenchmark {
+
+    private static final int RECORDS = 1000;
+
+    private String csv;
+    private String ndjson;
+    private String jsonArray;
+    private String xml;
+    private CalculatorFacade csvCalculator;
+    private CalculatorFacade jsonCalculator;
+    private CalculatorFacade xmlCalculator;
+
+    @Setup
+    public void setup() throws Exception {
+        SyntheticRecords records = new SyntheticRecords(RECORDS);
+        csv = records.asCsv();
+        ndjson = records.asNdjson();
+        jsonArray = "{\"results\":[" + String.join(",", records.asJsonLines()) + "]}";
+        xml = records.asXml();
+        csvCalculator = SyntheticRecords.calculator("csv");
+        jsonCalculator = SyntheticRecords.calculator("json");
+        xmlCalculator = SyntheticRecords.calculator("xml");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public int csv(Blackhole blackhole) throws Exception {
+        return SyntheticRecords.readAll(new CSVRecordReader(reader(csv), csvCalculator), blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public int ndjson(Blackhole blackhole) throws Exception {
+        return SyntheticRecords.readAll(new JSONRecordReader(reader(ndjson), jsonCalculator), blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public int jsonStream(Blackhole blackhole) throws Exception {
+        return SyntheticRecords.readAll(new StreamingJSONRecordReader(reader(jsonArray), jsonCalculator, "$.results[*]"), blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public int xmlDom(Blackhole blackhole) throws Exception {
+        XMLRecordReader reader = new XMLRecordReader(reader(xml), xmlCalculator);
+        reader.setRecordAddress("/records/record");
+        return SyntheticRecords.readAll(reader, blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public int xmlStream(Blackhole blackhole) {
+        return SyntheticRecords.readAll(new StreamingXMLRecordReader(reader(xml), xmlCalculator, "/records/record"), blackhole);
+    }
+
+    private static BufferedReader reader(String input) {
+        return new BufferedReader(new StringReader(input));
+    }
+}
@@ -0,0 +1,195 @@
+package be.meemoo.benchmark;
+
+import be.meemoo.reader.RecordReader;
+import de.gwdg.metadataqa.api.calculator.CalculatorFacade;
+import de.gwdg.metadataqa.api.configuration.ConfigurationReader;
+import de.gwdg.metadataqa.api.configuration.MeasurementConfiguration;
+import de.gwdg.metadataqa.api.schema.Schema;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates records shaped like the meemoo exports: long hexadecimal identifiers, short codes, a few free text
+ * fields of a few hundred characters, and empty fields.
+ */
+public class SyntheticRecords {
+
+    public static final List<String> FIELDS = List.of(
+            "fragment_id_mam", "mediaobject_id_mam", "cp", "cp_id", "sp_id", "sp_name", "pid", "dc_description",
+            "dc_format", "dc_publisher", "dc_source", "dc_terms", "dc_title", "dcterms_abstract", "dcterms_created",
+            "dcterms_issued");
+
+    private static final String[] WORDS = {
+            "glasplaat", "onverwerkt", "materiaal", "beiaardommegang", "dailies", "borndigital", "fotografie",
+            "archief", "collectie", "\"citaat\"", "opname,", "Gent", "Antwerpen", "1975", "test\nmet regel"};
+
+    private final List<List<String>> records = new ArrayList<>();
+
+    public SyntheticRecords(int size) {
+        Random random = new Random(42);
+        for (int i = 0; i < size; i++) {
+            List<String> record = new ArrayList<>();
+            String id = hex(random, 96);
+            record.add(id);
+            record.add(id.substring(0, 64));
+            record.add(random.nextBoolean() ? "plantentuinmeise" : "VRT");
+            record.add("OR-" + hex(random, 7));
+            record.add(optional(random, "OR-" + hex(random, 7)));
+            record.add("borndigital");
+            record.add(hex(random, 10));
+            record.add(optional(random, text(random, 40)));
+            record.add(optional(random, "image/tiff"));
+            record.add(optional(random, text(random, 3)));
+            record.add(hex(random, 16) + ".tif");
+            record.add(optional(random, text(random, 5)));
+            record.add(text(random, 8));
+            record.add(optional(random, text(random, 80)));
+            record.add(optional(random, "2020-01-04"));
+            record.add(optional(random, "2020-01-04"));
+            records.add(record);
+        }
+    }
+
+    public List<List<String>> getRecords() {
+        return records;
+    }
+
+    public String asCsv() {
+        StringBuilder sb = new StringBuilder(String.join(",", FIELDS)).append('\n');
+        for (List<String> record : records) {
+            for (int i = 0; i < record.size(); i++) {
+                if (i > 0)
+                    sb.append(',');
+                sb.append(escapeCsv(record.get(i)));
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    public List<String> asJsonLines() {
+        List<String> lines = new ArrayList<>();
+        for (List<String> record : records) {
+            StringBuilder sb = new StringBuilder("{");
+            for (int i = 0; i < record.size(); i++) {
+                if (i > 0)
+                    sb.append(',');
+                sb.append('"').append(FIELDS.get(i)).append("\":\"")
+                  .append(escapeJson(record.get(i))).append('"');
+            }
+            lines.add(sb.append('}').toString());
+        }
+        return lines;
+    }
+
+    public String asNdjson() {
+        return String.join("\n", asJsonLines()) + "\n";
+    }
+
+    public List<String> asXmlRecords() {
+        List<String> xml = new ArrayList<>();
+        for (List<String> record : records) {
+            StringBuilder sb = new StringBuilder("<record>");
+            for (int i = 0; i < record.size(); i++)
+                if (!record.get(i).isEmpty())
+                    sb.append('<').append(FIELDS.get(i)).append('>')
+                      .append(escapeXml(record.get(i)))
+                      .append("</").append(FIELDS.get(i)).append('>');
+            xml.add(sb.append("</record>").toString());
+        }
+        return xml;
+    }
+
+    public String asXml() {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<records>" + String.join("\n", asXmlRecords()) + "</records>\n";
+    }
+
+    /**
+     * Load a schema of the tests of the application, one of csv, json or xml, with completeness and rule measurement
+     * enabled. The schemas are resources of the benchmarks, see pom.xml.
+     */
+    public static CalculatorFacade calculator(String format) throws IOException {
+        Path schemaFile = Files.createTempFile("meemoo", ".yaml");
+        try (InputStream schema = SyntheticRecords.class.getResourceAsStream("/schema/meemoo." + format + ".yaml")) {
+            Files.copy(schema, schemaFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Schema schema = ConfigurationReader.readSchemaYaml(schemaFile.toString()).asSchema();
+        Files.delete(schemaFile);
+
+        MeasurementConfiguration config = new MeasurementConfiguration();
+        config.enableCompletenessMeasurement()
+                .disableFieldCardinalityMeasurement()
+                .enableRuleCatalogMeasurement();
+        return new CalculatorFacade(config).setSchema(schema);
+    }
+
+    /**
+     * Read all records without measuring them.
+     */
+    public static <T> int readAll(RecordReader<T> reader, Blackhole blackhole) {
+        int count = 0;
+        while (reader.hasNext()) {
+            blackhole.consume(reader.read());
+            count++;
+        }
+        return count;
+    }
+
+    private static String hex(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++)
+            sb.append(Character.forDigit(random.nextInt(16), 16));
+        return sb.toString();
+    }
+
+    private static String text(Random random, int words) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0)
+                sb.append(' ');
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sb.toString();
+    }
+
+    private static String optional(Random random, String value) {
+        return random.nextInt(3) == 0 ? "" : value;
+    }
+
+    private static String escapeCsv(String value) {
+        if (value.chars().noneMatch(c -> c == ',' || c == '"' || c == '\n' || c == '\r'))
+            return value;
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static String escapeJson(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\')
+                sb.append('\\').append(c);
+            else if (c == '\n')
+                sb.append("\\n");
+            else if (c == '\r')
+                sb.append("\\r");
+            else if (c == '\t')
+                sb.append("\\t");
+            else if (c < 0x20)
+                sb.append(String.format("\\u%04x", (int) c));
+            else
+                sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private static String escapeXml(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
@@ -0,0 +1,69 @@
+package be.meemoo.benchmark;
+
+import be.meemoo.RecordFactory;
+import be.meemoo.writer.ResultWriter;
+import de.gwdg.metadataqa.api.calculator.CalculatorFacade;
+import de.gwdg.metadataqa.api.interfaces.MetricResult;
+import de.gwdg.metadataqa.api.util.CsvReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializing measured records with every output format. Output goes to /dev/null, so only serialization and
+ * encoding are measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class WriterBenchmark {
+
+    private static final int RECORDS = 1000;
+
+    @Param({"csv", "ndjson", "csvjson"})
+    public String format;
+
+    private final List<Map<String, List<MetricResult>>> results = new ArrayList<>();
+    private ResultWriter writer;
+    private int next = 0;
+
+    @Setup
+    public void setup() throws Exception {
+        CalculatorFacade calculator = SyntheticRecords.calculator("csv")
+                .setCsvReader(new CsvReader().setHeader(SyntheticRecords.FIELDS));
+        for (List<String> record : new SyntheticRecords(RECORDS).getRecords())
+            results.add(calculator.measureAsMetricResult(record));
+
+        writer = RecordFactory.getResultWriter(format, "/dev/null");
+        writer.writeHeader(calculator.getHeader());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        writer.close();
+    }
+
+    @Benchmark
+    public void write() throws IOException {
+        next = (next + 1) % RECORDS;
+        writer.writeResult(results.get(next));
+    }
+}
@@ -1,8 +1,37 @@
 package be.meemoo;
 
+import be.meemoo.pipeline.FilePipeline;
+import be.meemoo.pipeline.MeasurementPipeline;
+import be.meemoo.pipeline.SplitPipeline;
+import be.meemoo.cache.ResultCache;
+import be.meemoo.metrics.AssessmentMetrics;
+import be.meemoo.metrics.MetricsReporter;
+import be.meemoo.reader.ArchiveRecordReader;
+import be.meemoo.reader.CSVRecordReader;
+import be.meemoo.reader.CachingRecordReader;
+import be.meemoo.reader.FollowRecordReader;
+import be.meemoo.reader.InputFiles;
+import be.meemoo.reader.MeteredRecordReader;
+import be.meemoo.reader.NumberedRecordReader;
+import be.meemoo.reader.ProfileRecordReader;
+import be.meemoo.reader.ReaderOptions;
 import be.meemoo.reader.RecordReader;
-import be.meemoo.reader.XMLRecordReader;
+import be.meemoo.reader.SamplingRecordReader;
+import be.meemoo.reader.ShardRecordReader;
+import be.meemoo.reader.SourceRecordReader;
+import be.meemoo.reader.WorstRecordReader;
+import be.meemoo.server.AssessmentServer;
+import be.meemoo.stats.Sample;
+import be.meemoo.stats.WorstRecords;
+import be.meemoo.writer.Checkpoint;
+import be.meemoo.writer.AsyncResultWriter;
+import be.meemoo.writer.CheckpointResultWriter;
+import be.meemoo.writer.FollowResultWriter;
+import be.meemoo.writer.MeteredResultWriter;
+import be.meemoo.writer.ProfileResultWriter;
 import be.meemoo.writer.ResultWriter;
+import be.meemoo.writer.SampleResultWriter;
+import be.meemoo.writer.WorstRecordsWriter;
 import com.opencsv.exceptions.CsvValidationException;
 import de.gwdg.metadataqa.api.calculator.CalculatorFacade;
 import de.gwdg.metadataqa.api.configuration.ConfigurationReader;
@@ -13,8 +42,17 @@ import org.apache.commons.cli.*;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 
 public class App {
@@ -42,103 +80,579 @@ public class App {
     private static final String MEASUREMENTS_FORMAT = "measurementsFormat";
     private static final String GZIP_FLAG = "gzip";
     private static final String RECORD_ADDRESS = "recordAddress";
+    private static final String THREADS = "threads";
+    private static final String UNORDERED_FLAG = "unordered";
+    private static final String AGGREGATE_FLAG = "aggregate";
+    private static final String GROUP_BY = "groupBy";
+    private static final String GROUP_LIMIT = "groupLimit";
+    private static final String SPLIT_FLAG = "split";
+    private static final String COMPRESS_OUTPUT_FLAG = "compressOutput";
+    private static final String CHECKPOINT = "checkpoint";
+    private static final String CHECKPOINT_SECONDS = "checkpointSeconds";
+    private static final String RESUME_FLAG = "resume";
+    private static final String CACHE_DIR = "cache";
+    private static final String CACHE_SIZE = "cacheSize";
+    private static final String OUTPUT_PER_FILE_FLAG = "outputPerFile";
+    private static final String SOURCE_COLUMN_FLAG = "sourceColumn";
+    private static final String ENTRY_COLUMN_FLAG = "entryColumn";
+    private static final String SERVE_PORT = "serve";
+    private static final String METRICS_FILE = "metricsFile";
+    private static final String METRICS_SECONDS = "metricsSeconds";
+    private static final String ASYNC_OUTPUT_FLAG = "asyncOutput";
+    private static final String ASYNC_BUFFER = "asyncBuffer";
+    private static final String OUTPUT_BUFFER_SIZE = "outputBufferSize";
+    private static final String SAMPLE = "sample";
+    private static final String SAMPLE_BY = "sampleBy";
+    private static final String SAMPLE_WIDTH = "sampleWidth";
+    private static final String SAMPLE_SEED = "sampleSeed";
+    private static final String FAST_CSV_FLAG = "fastCsv";
+    private static final String SHARD = "shard";
+    private static final String SHARD_BY = "shardBy";
+    private static final String WORST = "worst";
+    private static final String WORST_COLUMNS = "worstColumns";
+    private static final String WORST_FILE = "worstFile";
+    private static final String FOLLOW_FLAG = "follow";
+    private static final String FOLLOW_FLUSH = "followFlush";
+
+    // number of runs after which unused results are evicted from the cache
+    private static final int CACHE_MAX_AGE = 7;
 
     private final Schema schema;
+    private final MeasurementConfiguration measurementConfig;
     private final CalculatorFacade calculator;
     private final ResultWriter outputWriter;
-    private final RecordReader inputReader;
+    private final RecordReader<?> inputReader;
+    private final List<RecordReader<?>> splitReaders;
     private final String recordAddress;
+    private final int threads;
+    private final boolean ordered;
+    private final Checkpoint resumeFrom;
+    private final ResultCache cache;
+    private final byte[] fingerprint;
+    private final InputFiles inputFiles;
+    private final boolean sourceColumn;
+    private final boolean entryColumn;
+    private final ReaderOptions readerOptions;
+    private final String outputFile;
+    private final String outFormat;
+    private final boolean aggregate;
+    private final String groupBy;
+    private final int groupLimit;
+    private final boolean compressOutput;
+    private final int outputBufferSize;
+    private final AssessmentMetrics metrics;
+    private final MetricsReporter metricsReporter;
+    private final Sample sample;
+    private final int shard;
+    private final int shards;
+    private final String shardField;
+    private final WorstRecords worst;
+    private final String worstFile;
+    private final List<Profile> profiles;
+    private final ExecutorService profileExecutor;
+    private final boolean follow;
 
-    public App(CommandLine cmd) throws IOException, CsvValidationException {
+    public App(CommandLine cmd) throws IOException, CsvValidationException, MissingOptionException {
         // initialize schema
         String schemaFile = cmd.getOptionValue(SCHEMA_CONFIG);
+        this.groupBy = cmd.getOptionValue(GROUP_BY);
+        this.schema = readSchema(schemaFile, cmd);
+
+        // initialize config
+        this.measurementConfig = cmd.hasOption(MEASUREMENTS_CONFIG)
+                ? readMeasurements(cmd.getOptionValue(MEASUREMENTS_CONFIG), cmd)
+                : new MeasurementConfiguration();
+
+        // initialize calculator
+        this.calculator = newCalculator();
+
+        // more schemas or measurements are profiles assessed on the same records, each written to an output of its own
+        this.profiles = new ArrayList<>();
+        String[] schemaFiles = cmd.getOptionValues(SCHEMA_CONFIG);
+        String[] measurementFiles = cmd.hasOption(MEASUREMENTS_CONFIG) ? cmd.getOptionValues(MEASUREMENTS_CONFIG) : new String[0];
+        int profileCount = Math.max(schemaFiles.length, measurementFiles.length);
+        if (profileCount > 1) {
+            String[] outputFiles = cmd.getOptionValues(OUTPUT_FILE);
+            if ((schemaFiles.length != 1 && schemaFiles.length != profileCount)
+                    || (measurementFiles.length > 1 && measurementFiles.length != profileCount))
+                throw new IllegalArgumentException("Give a schema and measurements for every profile, or one shared by all of them");
+            if (outputFiles == null || outputFiles.length != profileCount)
+                throw new IllegalArgumentException("Every profile is written to an output file of its own, give one for every profile");
+            for (int i = 1; i < profileCount; i++)
+                profiles.add(new Profile(
+                        readSchema(schemaFiles[Math.min(i, schemaFiles.length - 1)], cmd),
+                        measurementFiles.length > 1 ? readMeasurements(measurementFiles[i], cmd) : measurementConfig,
+                        outputFiles[i]));
+        }
+
+        this.entryColumn = cmd.hasOption(ENTRY_COLUMN_FLAG);
+        this.readerOptions = new ReaderOptions(cmd.hasOption(FAST_CSV_FLAG), entryColumn);
+        this.recordAddress = (cmd.hasOption(RECORD_ADDRESS) && StringUtils.isNotBlank(cmd.getOptionValue(RECORD_ADDRESS)))
+                           ? cmd.getOptionValue(RECORD_ADDRESS)
+                           : null;
+
+        // metrics are always available through JMX, and written to a file if asked
+        this.metrics = AssessmentMetrics.get();
+        metrics.register();
+        this.metricsReporter = cmd.hasOption(METRICS_FILE)
+                ? new MetricsReporter(metrics, Paths.get(cmd.getOptionValue(METRICS_FILE)),
+                        Long.parseLong(cmd.getOptionValue(METRICS_SECONDS, "10")))
+                : null;
+
+        this.threads = Integer.parseInt(cmd.getOptionValue(THREADS, "1"));
+        if (threads < 1)
+            throw new IllegalArgumentException("Number of threads should be at least 1");
+        this.ordered = !cmd.hasOption(UNORDERED_FLAG);
+        // with fewer threads than calculators, the profiles of a record are measured in parallel
+        this.profileExecutor = !profiles.isEmpty() && threads <= profiles.size()
+                ? ProfileRecordReader.newExecutor(profiles.size() + 1 - threads)
+                : null;
+
+        // initialize cache of results measured before
+        this.cache = cmd.hasOption(CACHE_DIR)
+                ? ResultCache.open(Paths.get(cmd.getOptionValue(CACHE_DIR)),
+                        Long.parseLong(cmd.getOptionValue(CACHE_SIZE, "10000000")), CACHE_MAX_AGE)
+                : null;
+        // the results are cached as objects serialized by this version of the library
+        this.fingerprint = cache == null ? null : ResultCache.fingerprint(
+                getLibraryVersion(),
+                Files.readString(Paths.get(schemaFile)),
+                cmd.hasOption(MEASUREMENTS_CONFIG) ? Files.readString(Paths.get(cmd.getOptionValue(MEASUREMENTS_CONFIG))) : null,
+                cmd.hasOption(HEADERS_CONFIG) ? String.join(",", cmd.getOptionValues(HEADERS_CONFIG)) : null);
+
+        this.outFormat = cmd.getOptionValue(OUTPUT_FORMAT, NDJSON);
+        // write to std out if no file was given
+        this.outputFile = cmd.getOptionValue(OUTPUT_FILE);
+        this.aggregate = cmd.hasOption(AGGREGATE_FLAG);
+        this.compressOutput = cmd.hasOption(COMPRESS_OUTPUT_FLAG);
+        this.outputBufferSize = Integer.parseInt(cmd.getOptionValue(OUTPUT_BUFFER_SIZE, String.valueOf(1 << 16)));
+        this.sourceColumn = cmd.hasOption(SOURCE_COLUMN_FLAG);
+        if (sourceColumn && aggregate)
+            throw new IllegalArgumentException("The source file column can not be aggregated");
+        if (entryColumn && aggregate)
+            throw new IllegalArgumentException("The archive entry column can not be aggregated");
+        if (!profiles.isEmpty() && (cache != null || cmd.hasOption(SERVE_PORT) || cmd.hasOption(OUTPUT_PER_FILE_FLAG) || cmd.hasOption(SAMPLE)))
+            throw new IllegalArgumentException("Profiles can not be cached, served, written per input file or sampled");
+        this.groupLimit = Integer.parseInt(cmd.getOptionValue(GROUP_LIMIT, "10000"));
+        if (groupBy != null && aggregate)
+            throw new IllegalArgumentException("Statistics are either aggregated over all records or grouped by a field");
+        boolean outputPerFile = cmd.hasOption(OUTPUT_PER_FILE_FLAG);
+        if (outputPerFile && outputFile == null)
+            throw new IllegalArgumentException("An output directory is needed to write an output per input file");
+        boolean serve = cmd.hasOption(SERVE_PORT);
+        if (entryColumn && serve)
+            throw new IllegalArgumentException("Records posted to the server are not read from archives");
+        if (!serve && !cmd.hasOption(INPUT_FILE))
+            throw new MissingOptionException(List.of(INPUT_FILE));
+        this.sample = cmd.hasOption(SAMPLE)
+                ? new Sample(getHeader(), Double.parseDouble(cmd.getOptionValue(SAMPLE_WIDTH, "0")))
+                : null;
+        if (sample != null && (aggregate || groupBy != null))
+            throw new IllegalArgumentException("A sample can not be aggregated, estimates of every metric are written instead");
+
+        // take only a share of the records, the other shards are assessed by other processes
+        if (cmd.hasOption(SHARD)) {
+            String[] shard = cmd.getOptionValue(SHARD).split("/");
+            if (shard.length != 2)
+                throw new IllegalArgumentException("A shard is given as its number and the number of shards, like 2/8");
+            this.shard = Integer.parseInt(shard[0].trim());
+            this.shards = Integer.parseInt(shard[1].trim());
+        } else {
+            this.shard = 1;
+            this.shards = 1;
+        }
+        this.shardField = cmd.hasOption(SHARD_BY) ? getPath(cmd.getOptionValue(SHARD_BY)) : null;
+        if (shards > 1 && serve)
+            throw new IllegalArgumentException("Records posted to the server can not be sharded");
+        if (shards > 1 && shardField == null && cmd.hasOption(SPLIT_FLAG))
+            throw new IllegalArgumentException("Split input can only be sharded by a field, the parts depend on the number of threads");
+
+        // keep the worst records of every metric, identified by the extracted fields
+        this.worst = cmd.hasOption(WORST) ? newWorstRecords(cmd) : null;
+        this.worstFile = cmd.getOptionValue(WORST_FILE,
+                outputFile == null ? null : outputFile + ".worst." + (CSV.equals(outFormat) ? CSV : JSON));
+        if (worst != null && worstFile == null)
+            throw new IllegalArgumentException("The worst records are written next to the output file, or to --worstFile");
+        if (worst != null && (serve || sample != null))
+            throw new IllegalArgumentException("The worst records are only kept of all records of the input files");
+        if (worst != null && cmd.hasOption(SPLIT_FLAG))
+            throw new IllegalArgumentException("The worst records are numbered by their position in the input, which the parts of split input do not know");
+
+        // follow the input like tail -F, measuring the records appended to it
+        this.follow = cmd.hasOption(FOLLOW_FLAG);
+        if (follow && (serve || outputPerFile || cmd.hasOption(SPLIT_FLAG) || recordAddress != null || outputFile == null || compressOutput || !ordered))
+            throw new IllegalArgumentException("Following needs a single CSV or new line delimited JSON input and an uncompressed output file, written in input order");
+        if (follow && (aggregate || groupBy != null || sample != null || shards > 1 || worst != null || !profiles.isEmpty()
+                || cmd.hasOption(CHECKPOINT) || cmd.hasOption(RESUME_FLAG)))
+            throw new IllegalArgumentException("A followed input is written a result per record, and continues from its own checkpoint");
+        long followFlush = Long.parseLong(cmd.getOptionValue(FOLLOW_FLUSH, "1000"));
+        Checkpoint followFrom = follow && Files.exists(Checkpoint.getPath(outputFile))
+                ? Checkpoint.load(Checkpoint.getPath(outputFile))
+                : null;
+        if (followFrom != null && followFrom.getInputPosition() == null)
+            throw new IllegalArgumentException("The checkpoint of the output was not saved while following, resume it with --resume");
+        FollowRecordReader<?> followReader = null;
+
+        // initialize input
+        InputFiles inputFiles = serve ? null : InputFiles.resolve(cmd.getOptionValues(INPUT_FILE));
+        if (follow && !inputFiles.isSingleFile())
+            throw new IllegalArgumentException("Only a single input file can be followed");
+        if (serve) {
+            // records are posted to the server
+            this.inputFiles = null;
+            this.splitReaders = null;
+            this.inputReader = null;
+        } else if (!inputFiles.isSingleFile() || outputPerFile) {
+            // many files are assessed in parallel, rather than the records of one file
+            if (cmd.hasOption(SPLIT_FLAG))
+                throw new IllegalArgumentException("Only a single input file can be split");
+            this.inputFiles = inputFiles;
+            this.splitReaders = null;
+            this.inputReader = null;
+        } else if (cmd.hasOption(SPLIT_FLAG)) {
+            if (recordAddress != null)
+                throw new IllegalArgumentException("Only uncompressed CSV and new line delimited JSON input can be split");
+            String inputFile = inputFiles.getFiles().get(0).toString();
+            List<RecordReader<?>> readers = RecordFactory.getSplitRecordReaders(inputFile, calculator, threads, readerOptions);
+            readers.replaceAll(reader -> wrap(reader, inputFile));
+            this.inputFiles = null;
+            this.splitReaders = readers;
+            this.inputReader = null;
+        } else if (follow) {
+            String inputFile = inputFiles.getFiles().get(0).toString();
+            followReader = RecordFactory.getFollowRecordReader(inputFile, calculator,
+                    followFrom == null ? null : followFrom.getInputPosition(), followFlush);
+            this.inputFiles = null;
+            this.splitReaders = null;
+            this.inputReader = wrap(followReader, inputFile);
+        } else {
+            String inputFile = inputFiles.getFiles().get(0).toString();
+            this.inputFiles = null;
+            this.splitReaders = null;
+            RecordReader<?> reader = wrap(RecordFactory.getRecordReader(inputFile, calculator, cmd.hasOption(GZIP_FLAG), recordAddress, readerOptions), inputFile);
+            this.inputReader = sample != null ? sample(reader, cmd) : reader;
+        }
+        if (sample != null && inputReader == null)
+            throw new IllegalArgumentException("Only a single input file, which is not split, can be sampled");
+
+        // initialize output
+        boolean checkpoints = cmd.hasOption(CHECKPOINT) || cmd.hasOption(RESUME_FLAG);
+        if (checkpoints && (outputFile == null || compressOutput || inputReader == null || sample != null || !ordered))
+            throw new IllegalArgumentException("Checkpoints need a single input file and an uncompressed output file, written in input order");
+        if (checkpoints && groupBy != null)
+            throw new IllegalArgumentException("Statistics grouped by a field can not be checkpointed");
+        if (checkpoints && worst != null)
+            throw new IllegalArgumentException("The worst records can not be checkpointed");
+        if (checkpoints && !profiles.isEmpty())
+            throw new IllegalArgumentException("Profiles can not be checkpointed");
+        if (outputPerFile || serve) {
+            this.resumeFrom = null;
+            this.outputWriter = null;
+            return;
+        }
+
+        this.resumeFrom = follow ? followFrom
+                        : cmd.hasOption(RESUME_FLAG) && Files.exists(Checkpoint.getPath(outputFile))
+                        ? Checkpoint.load(Checkpoint.getPath(outputFile))
+                        : null;
+        if (resumeFrom != null && resumeFrom.getInputPosition() != null && !follow)
+            throw new IllegalArgumentException("The checkpoint of the output was saved while following, continue with --follow");
+        BufferedWriter output = resumeFrom != null
+                              ? RecordFactory.getOutputWriter(outputFile, resumeFrom.getOutputLength(), outputBufferSize)
+                              : RecordFactory.getOutputWriter(outputFile, compressOutput, outputBufferSize);
+        ResultWriter resultWriter = sample != null
+                ? new MeteredResultWriter(new SampleResultWriter(output, CSV.equals(outFormat), sample, cmd.hasOption(SAMPLE_BY)), metrics)
+                : newResultWriter(outFormat, output);
+        if (!profiles.isEmpty()) {
+            List<ResultWriter> profileWriters = new ArrayList<>();
+            List<List<String>> profileHeaders = new ArrayList<>();
+            for (Profile profile : profiles) {
+                profileWriters.add(getResultWriter(outFormat,
+                        RecordFactory.getOutputWriter(profile.getOutputFile(), compressOutput, outputBufferSize)));
+                profileHeaders.add(getHeader(profile.newCalculator()));
+            }
+            resultWriter = new ProfileResultWriter(resultWriter, profileWriters, profileHeaders);
+        }
+        // the results are written on their own thread
+        if (cmd.hasOption(ASYNC_OUTPUT_FLAG))
+            resultWriter = AsyncResultWriter.of(resultWriter,
+                    Integer.parseInt(cmd.getOptionValue(ASYNC_BUFFER, String.valueOf(AsyncResultWriter.BATCH_SIZE * AsyncResultWriter.BATCHES))));
+        if (checkpoints)
+            resultWriter = new CheckpointResultWriter(resultWriter, outputFile,
+                    Long.parseLong(cmd.getOptionValue(CHECKPOINT, "100000")),
+                    Long.parseLong(cmd.getOptionValue(CHECKPOINT_SECONDS, "300")),
+                    resumeFrom);
+        if (follow)
+            resultWriter = new FollowResultWriter(resultWriter, outputFile, followReader::takePosition, followFlush, resumeFrom);
+        this.outputWriter = resultWriter;
+    }
+
+    private <T> RecordReader<?> wrap(RecordReader<T> reader, String inputFile) {
+        if (entryColumn && !(reader instanceof ArchiveRecordReader))
+            throw new IllegalArgumentException("Only the records of an archive have an entry: " + inputFile);
+        byte[] readerFingerprint = cache == null ? null : fingerprint(reader);
+        // the worst records are numbered by their position in the input, so before the records of a shard are taken
+        if (worst != null)
+            return meter(WorstRecordReader.of(
+                    decorate(NumberedRecordReader.of(reader), inputFile, readerFingerprint), worst, inputFile));
+        return meter(decorate(reader, inputFile, readerFingerprint));
+    }
+
+    /**
+     * Count reading the records, and measuring them unless they are measured beneath a result cache.
+     */
+    private <T> RecordReader<T> meter(RecordReader<T> reader) {
+        return cache == null ? MeteredRecordReader.of(reader, metrics) : MeteredRecordReader.reading(reader, metrics);
+    }
+
+    /**
+     * Look up the results of records in the cache before measuring them, so only records measured count as such.
+     */
+    private <T> RecordReader<T> cached(RecordReader<T> reader, byte[] readerFingerprint) {
+        return CachingRecordReader.of(MeteredRecordReader.measuring(reader, metrics), cache, readerFingerprint, metrics.getCache());
+    }
+
+    private <T> RecordReader<T> decorate(RecordReader<T> reader, String inputFile, byte[] readerFingerprint) {
+        if (shards > 1)
+            reader = ShardRecordReader.of(reader, shard, shards, shardField);
+        if (cache != null)
+            reader = cached(reader, readerFingerprint);
+        if (sourceColumn)
+            reader = SourceRecordReader.of(reader, inputFile);
+        if (!profiles.isEmpty()) {
+            List<Supplier<CalculatorFacade>> calculators = new ArrayList<>();
+            for (Profile profile : profiles)
+                calculators.add(profile::newCalculator);
+            reader = ProfileRecordReader.of(reader, calculators, profileExecutor);
+        }
+        return reader;
+    }
+
+    /**
+     * The worst records of the columns given, or of every metric, identified by the extractable fields.
+     */
+    private WorstRecords newWorstRecords(CommandLine cmd) {
+        List<String> header = getHeader();
+        List<String> ids = new ArrayList<>(schema.getExtractableFields().keySet());
+        List<String> columns = new ArrayList<>();
+        if (cmd.hasOption(WORST_COLUMNS)) {
+            columns.addAll(Arrays.asList(cmd.getOptionValues(WORST_COLUMNS)));
+        } else {
+            for (String column : header)
+                if (!column.equals(SourceRecordReader.HEADER) && !column.equals(ArchiveRecordReader.HEADER)
+                        && ids.stream().noneMatch(id -> column.equals(id) || column.endsWith(":" + id)))
+                    columns.add(column);
+        }
+        return new WorstRecords(header, columns, ids, Integer.parseInt(cmd.getOptionValue(WORST)));
+    }
+
+    /**
+     * Sample the records of an input, at a rate if the sample is below 1, else a number of records.
+     */
+    private <T> RecordReader<?> sample(RecordReader<T> reader, CommandLine cmd) {
+        String field = cmd.hasOption(SAMPLE_BY) ? getPath(cmd.getOptionValue(SAMPLE_BY)) : null;
+        Random random = cmd.hasOption(SAMPLE_SEED) ? new Random(Long.parseLong(cmd.getOptionValue(SAMPLE_SEED))) : new Random();
+
+        double size = Double.parseDouble(cmd.getOptionValue(SAMPLE));
+        if (size > 0 && size < 1)
+            return SamplingRecordReader.ofRate(reader, sample, field, size, random);
+        if (size < 1 || size > Integer.MAX_VALUE || size != Math.floor(size))
+            throw new IllegalArgumentException("A sample is a number of records, or a share of the records below 1: " + size);
+        // a reservoir is only drawn after reading the whole input
+        if (cmd.hasOption(SAMPLE_WIDTH))
+            throw new IllegalArgumentException("Only a sample at a rate can stop early");
+        return SamplingRecordReader.ofSize(reader, sample, field, (int) size, random);
+    }
+
+    /**
+     * The path of a field of the schema, to read it from records before they are measured.
+     */
+    /**
+     * The version of the metadata-qa-api library, from its manifest or from the Maven metadata that is also kept in
+     * the shaded jar.
+     */
+    private static String getLibraryVersion() throws IOException {
+        String version = CalculatorFacade.class.getPackage().getImplementationVersion();
+        if (version != null)
+            return version;
+        try (InputStream in = CalculatorFacade.class.getResourceAsStream("/META-INF/maven/de.gwdg.metadataqa/metadata-qa-api/pom.properties")) {
+            if (in == null)
+                return null;
+            Properties properties = new Properties();
+            properties.load(in);
+            return properties.getProperty("version");
+        }
+    }
+
+    private String getPath(String label) {
+        if (schema.getPathByLabel(label) == null)
+            throw new IllegalArgumentException("Field not found in the schema: " + label);
+        return schema.getPathByLabel(label).getJsonPath();
+    }
+
+    private RecordReader<?> openInput(Path inputFile, CalculatorFacade calculator) throws IOException, CsvValidationException {
+        return wrap(RecordFactory.getRecordReader(inputFile.toString(), calculator, false, recordAddress, readerOptions), inputFile.toString());
+    }
+
+    private RecordReader<?> openRequest(BufferedReader input, CalculatorFacade calculator) throws IOException, CsvValidationException {
+        RecordReader<?> reader = RecordFactory.getRecordReader(input, calculator, recordAddress, readerOptions);
+        if (cache != null)
+            reader = cached(reader, fingerprint(reader));
+        return meter(reader);
+    }
+
+    /**
+     * The fingerprint of the results of the records of a reader. The values of CSV records are taken by the
+     * position of their column, so the header of the file is part of it.
+     */
+    private byte[] fingerprint(RecordReader<?> reader) {
+        List<String> header = null;
+        if (reader instanceof CSVRecordReader)
+            header = ((CSVRecordReader) reader).getHeader();
+        else if (reader instanceof FollowRecordReader)
+            header = ((FollowRecordReader<?>) reader).getHeader();
+        return header == null ? fingerprint : ResultCache.fingerprint(fingerprint, header.toArray(new String[0]));
+    }
+
+    private ResultWriter openResponse(String format, BufferedWriter output) {
+        return newResultWriter(format, output);
+    }
+
+    /**
+     * A writer of the results of every record, or of the statistics of all records or of every group.
+     */
+    private ResultWriter newResultWriter(String format, BufferedWriter output) {
+        return new MeteredResultWriter(getResultWriter(format, output), metrics);
+    }
+
+    private ResultWriter getResultWriter(String format, BufferedWriter output) {
+        return groupBy != null
+                ? RecordFactory.getGroupWriter(format, output, groupBy, groupLimit)
+                : aggregate
+                ? RecordFactory.getAggregateWriter(format, output)
+                : RecordFactory.getResultWriter(format, output);
+    }
+
+    /**
+     * Open the output of an input file, at the same relative path in the output directory.
+     */
+    private ResultWriter openOutput(Path inputFile) throws IOException {
+        Path relative = inputFiles.getRelativePath(inputFile);
+        String name = FilenameUtils.removeExtension(relative.getFileName().toString().replaceFirst("\\.(gz|bz2)$", ""));
+        String extension = aggregate ? (CSV.equals(outFormat) ? CSV : JSON)
+                         : groupBy != null ? (CSV.equals(outFormat) ? CSV : NDJSON)
+                         : CSVJSON.equals(outFormat) ? CSV
+                         : outFormat;
+        Path output = Paths.get(outputFile).resolve(relative).resolveSibling(name + "." + extension + (compressOutput ? ".gz" : ""));
+        if (Files.exists(output) && Files.isSameFile(output, inputFile))
+            throw new IOException("Output would overwrite the input file: " + inputFile);
+        Files.createDirectories(output.toAbsolutePath().getParent());
+
+        BufferedWriter writer = RecordFactory.getOutputWriter(output.toString(), compressOutput, outputBufferSize);
+        return newResultWriter(outFormat, writer);
+    }
+
+    private List<String> getHeader() {
+        return getHeader(calculator);
+    }
+
+    private List<String> getHeader(CalculatorFacade calculator) {
+        List<String> header = new ArrayList<>(calculator.getHeader());
+        if (entryColumn)
+            header.add(0, ArchiveRecordReader.HEADER);
+        if (sourceColumn)
+            header.add(0, SourceRecordReader.HEADER);
+        return header;
+    }
+
+    /**
+     * Read a schema, with the fields given by the command line as extractable fields.
+     */
+    private Schema readSchema(String schemaFile, CommandLine cmd) throws IOException {
+        Schema schema;
         String schemaFormat = cmd.getOptionValue(SCHEMA_FORMAT, FilenameUtils.getExtension(schemaFile));
         switch (schemaFormat) {
             case YAML:
-                this.schema = ConfigurationReader.readSchemaYaml(schemaFile).asSchema();
+                schema = ConfigurationReader.readSchemaYaml(schemaFile).asSchema();
                 break;
             case JSON:
             default:
-                this.schema = ConfigurationReader.readSchemaJson(schemaFile).asSchema();
+                schema = ConfigurationReader.readSchemaJson(schemaFile).asSchema();
         }
 
         // Set the fields supplied by the command line to extractable fields
         if (cmd.hasOption(HEADERS_CONFIG)) {
             String[] headers = cmd.getOptionValues(HEADERS_CONFIG);
             for (String h : headers) {
-                this.schema.addExtractableField(h, this.schema.getPathByLabel(h).getJsonPath());
+                schema.addExtractableField(h, schema.getPathByLabel(h).getJsonPath());
             }
         }
+        // the field to group by is read from the results, so it has to be extracted
+        if (groupBy != null && !schema.getExtractableFields().containsKey(groupBy)) {
+            if (schema.getPathByLabel(groupBy) == null)
+                throw new IllegalArgumentException("Field not found in the schema: " + groupBy);
+            schema.addExtractableField(groupBy, schema.getPathByLabel(groupBy).getJsonPath());
+        }
+        return schema;
+    }
 
-        // initialize config
-        MeasurementConfiguration measurementConfig = new MeasurementConfiguration();
-        if (cmd.hasOption(MEASUREMENTS_CONFIG)) {
-            String measurementFile = cmd.getOptionValue(MEASUREMENTS_CONFIG);
-            String measurementFormat = cmd.getOptionValue(MEASUREMENTS_FORMAT, FilenameUtils.getExtension(measurementFile));
-            switch (measurementFormat) {
-                case YAML:
-                    measurementConfig = ConfigurationReader.readMeasurementYaml(measurementFile);
-                    break;
-                case JSON:
-                default:
-                    measurementConfig = ConfigurationReader.readMeasurementJson(measurementFile);
-            }
+    private static MeasurementConfiguration readMeasurements(String measurementFile, CommandLine cmd) throws IOException {
+        String measurementFormat = cmd.getOptionValue(MEASUREMENTS_FORMAT, FilenameUtils.getExtension(measurementFile));
+        switch (measurementFormat) {
+            case YAML:
+                return ConfigurationReader.readMeasurementYaml(measurementFile);
+            case JSON:
+            default:
+                return ConfigurationReader.readMeasurementJson(measurementFile);
         }
+    }
 
-        // initialize calculator
-        this.calculator = new CalculatorFacade(measurementConfig);
+    private CalculatorFacade newCalculator() {
+        CalculatorFacade calculator = new CalculatorFacade(measurementConfig);
         // set the schema which describes the source
         calculator.setSchema(schema);
-
-        // initialize input
-        String inputFile = cmd.getOptionValue(INPUT_FILE);
-        this.inputReader = RecordFactory.getRecordReader(inputFile, calculator, cmd.hasOption(GZIP_FLAG));
-
-        // initialize output
-        String outFormat = cmd.getOptionValue(OUTPUT_FORMAT, NDJSON);
-        // write to std out if no file was given
-        this.outputWriter = cmd.hasOption(OUTPUT_FILE)
-                          ? RecordFactory.getResultWriter(outFormat, cmd.getOptionValue(OUTPUT_FILE))
-                          : RecordFactory.getResultWriter(outFormat);
-
-        this.recordAddress = (cmd.hasOption(RECORD_ADDRESS) && StringUtils.isNotBlank(cmd.getOptionValue(RECORD_ADDRESS)))
-                           ? cmd.getOptionValue(RECORD_ADDRESS)
-                           : null;
-        if (inputReader instanceof XMLRecordReader && recordAddress != null)
-            ((XMLRecordReader)inputReader).setRecordAddress(this.recordAddress);
+        return calculator;
     }
 
     public static void main(String[] args) {
+        if (args.length > 0 && Merge.COMMAND.equals(args[0])) {
+            Merge.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && Diff.COMMAND.equals(args[0])) {
+            Diff.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
 
         // Take input file
         final Options options = new Options();
 
         Option inputOption = Option.builder("i")
-                .numberOfArgs(1)
-                .required(true)
+                .hasArgs()
+                .required(false)
                 .longOpt(INPUT_FILE)
-                .desc("Input file.")
+                .desc("Input file, directory or glob pattern like 'harvest/*.ndjson.gz'. Several can be given. Directories are read recursively, and many files are assessed in parallel by the threads. ZIP and tar archives, also compressed, are read as a record per file. Required unless serving.")
                 .build();
 
         Option outputOption = Option.builder("o")
                 .numberOfArgs(1)
                 .required(false)
                 .longOpt(OUTPUT_FILE)
-                .desc("Output file.")
+                .desc("Output file. One for every schema or measurements when several are given.")
                 .build();
 
         Option outputFormatOption = Option.builder("f")
                 .numberOfArgs(1)
                 .required(false)
                 .longOpt(OUTPUT_FORMAT)
-                .desc("Format of the output: json, ndjson (new line delimited JSON), csv, csvjson (json encoded in csv; useful for RDB bulk loading). Default: ndjson.")
+                .desc("Format of the output: json (a JSON array), ndjson (new line delimited JSON), csv, csvjson (json encoded in csv; useful for RDB bulk loading). Default: ndjson.")
                 .build();
 
         Option schemaConfigOption = Option.builder("s")
                 .numberOfArgs(1)
                 .required(true)
                 .longOpt(SCHEMA_CONFIG)
-                .desc("Schema file to run assessment against.")
+                .desc("Schema file to run assessment against. Several can be given, to assess every record against every schema in a single pass, each written to the output given in the same position.")
                 .build();
 
         Option schemaFormatOption = Option.builder("v")
@@ -152,7 +666,7 @@ public class App {
                 .numberOfArgs(1)
                 .required(true)
                 .longOpt(MEASUREMENTS_CONFIG)
-                .desc("Config file for measurements.")
+                .desc("Config file for measurements. Several can be given, one per schema, or one per profile of a single schema.")
                 .build();
 
         Option measurementsFormatOption = Option.builder("w")
@@ -173,14 +687,245 @@ public class App {
                 .numberOfArgs(0)
                 .required(false)
                 .longOpt(GZIP_FLAG)
-                .desc("Flag to indicate that input is gzipped.")
+                .desc("Flag to indicate that input is gzipped. Deprecated: gzip and bzip2 input are detected.")
                 .build();
 
         Option recordAddressOption = Option.builder("r")
                 .numberOfArgs(1)
                 .required(false)
                 .longOpt(RECORD_ADDRESS)
-                .desc("An XPath or JSONPath expression to separate individual records in an XML or JSON files.")
+                .desc("An XPath or JSONPath expression to separate individual records in an XML or JSON files. Simple XML paths like /root/record or //mods:mods are read as a stream. JSON is read as a stream with JSONPaths like $.results[*], else as new line delimited JSON.")
+                .build();
+
+        Option threadsOption = Option.builder("t")
+                .numberOfArgs(1)
+                .required(false)
+                .longOpt(THREADS)
+                .desc("Number of threads measuring records. Reading and writing run on their own thread when more than 1. Default: 1.")
+                .build();
+
+        Option unorderedOption = Option.builder("u")
+                .numberOfArgs(0)
+                .required(false)
+                .longOpt(UNORDERED_FLAG)
+                .desc("Flag to allow results to be written in a different order than the input when using multiple threads.")
+                .build();
+
+        Option aggregateOption = Option.builder("a")
+                .numberOfArgs(0)
+                .required(false)
+                .longOpt(AGGREGATE_FLAG)
+                .desc("Flag to write summary statistics of every metric (count, sum, min, max, mean, variance, histogram) instead of a result per record. Written as csv if the output format is csv, else as json.")
+                .build();
+
+        Option groupByOption = Option.builder()
+                .numberOfArgs(1)
+                .required(false)
+                .longOpt(GROUP_BY)
+                .desc("Field of the schema to group the records by, like cp_id. Summary statistics of every metric (count, mean, min, max, histogram) are written for every value of the field instead of a result per record, a row per value as csv if the output format is csv, else a line of json per value.")
+                .build();
+
+        Option groupLimitOption = Option.builder()
+                .numberOfArgs(1)
+                .required(false)
+                .longOpt(GROUP_LIMIT)
+                .desc("Number of groups kept in memory, more groups are spilled to temporary files and merged at the end. Default: 10000.")
+                .build();
+
+        Option splitOption = Option.builder("p")
+                .numberOfArgs(0)
+                .required(false)
+                .longOpt(SPLIT_FLAG)
+                .desc("Flag to split uncompressed CSV or new line delimited JSON input in as many parts as threads, which are read in parallel through memory mapping. Results are written in the order they are measured.")
+                .build();
+
+        Option compressOutputOption = Option.builder("c")
+                .numberOfArgs(0)
+                .required(false)
+                .longOpt(COMPRESS_OUTPUT_FLAG)
+                .desc("Flag to gzip the output, on a separate thread.")
+                .build();
+
+        Option checkpointOption = Option.builder("k")
+                .numberOfArgs(1)
+                .required(false)
+                .longOpt(CHECKPOINT)
+                .desc("Save a checkpoint next to the output file every number of records, to resume a failed assessment. Default: 100000 when resuming.")
+                .build();
+
+        Option checkpointSecondsOption = Option.builder()
+                .numberOfArgs(1)
+                .required(false)
+                .longOpt(CHECKPOINT_SECONDS)
+                .desc("Save a checkpoint at least every number of seconds. Default: 300.")
+                .build();
+
+        Option resumeOption = Option.builder()
+                .numberOfArgs(0)
+                .required(false)
+                .longOpt(RESUME_FLAG)
+                .desc("Flag to resume from the last checkpoint of the output file: the output is truncated to the checkpoint and the records before it are skipped.")
+                .build();
+
+        Option cacheOption = Option.builder()
+                .numberOfArgs(1)
+                .required(false)
+                .longOpt(CACHE_DIR)
+                .desc("Directory of a cache of results, to reuse the results of records measured in earlier runs with the same schema and measurements. Results not used in the last " + CACHE_MAX_AGE + " runs are evicted. A cache is used by one assessment at a time.")
+                .build();
+
+        Option cacheSizeOption = Option.builder()
+                .numberOfArgs(1)
+                .required(false)
+                .longOpt(CACHE_SIZE)
+                .desc("Maximum number of results in the cache. Default: 10000000.")
+                .build();
+
+        Option outputPerFileOption = Option.builder()
+                .numberOfArgs(0)
+                .required(false)
+                .longOpt(OUTPUT_PER_FILE_FLAG)
+                .desc("Flag to write the results of every input file to its own output file, at the same relative path in the output directory.")
+                .build();
+
+        Option sourceColumnOption = Option.builder()
+                .numberOfArgs(0)
+                .required(false)
+                .longOpt(SOURCE_COLUMN_FLAG)
+                .desc("Flag to add the input file of every record as the first column, source:file.")
+                .build();
+
+        Option entryColumnOption = Option.builder()
+                .numberOfArgs(0)
+                .required(false)
+                .longOpt(ENTRY_COLUMN_FLAG)
+                .desc("Flag to add the name of the file in a ZIP or tar archive every record was read from as a column, archive:entry, after the source file. Only for archive input.")
+                .build();
+
+        Option serveOption = Option.builder()
+                .numberOfArgs(1)
+                .required(false)
+                .longOpt(SERVE_PORT)
+                .desc("Serve assessments on a local port instead of reading an input: records posted to /assess are measured by the threads, and their results returned in the output format, or the format given as parameter like /assess?format=csv.")
+                .build();
+
+        Option metricsFileOption = Option.builder()
+                .numberOfArgs(1)
+                .required(false)
+                .longOpt(METRICS_FILE)
+                .desc("JSON file to write throughput and latency metrics of every stage (read, decompress, measure, cache, write) to while running. The metrics are also available through JMX.")
+                .build();
+
+        Option metricsSecondsOption = Option.builder()
+                .numberOfArgs(1)
+                .required(false)
+                .longOpt(METRICS_SECONDS)
+                .desc("Write the metrics file every number of seconds. Default: 10.")
+                .build();
+
+        Option asyncOutputOption = Option.builder()
+                .numberOfArgs(0)
+                .required(false)
+                .longOpt(ASYNC_OUTPUT_FLAG)
+                .desc("Flag to write the results on their own thread, so slow output like a network file system or a pipe does not stall measuring.")
+                .build();
+
+        Option asyncBufferOption = Option.builder()
+                .numberOfArgs(1)
+                .required(false)
+                .longOpt(ASYNC_BUFFER)
+                .desc("Number of results that can wait to be written with --" + ASYNC_OUTPUT_FLAG + ", handed over in batches of up to " + AsyncResultWriter.BATCH_SIZE + ". Default: " + AsyncResultWriter.BATCH_SIZE * AsyncResultWriter.BATCHES + ".")
+                .build();
+
+        Option outputBufferSizeOption = Option.builder()
+                .numberOfArgs(1)
+                .required(false)
+                .longOpt(OUTPUT_BUFFER_SIZE)
+                .desc("Number of characters of output buffered before they are written. Default: 65536.")
+                .build();
+
+        Option sampleOption = Option.builder()
+                .numberOfArgs(1)
+                .required(false)
+                .longOpt(SAMPLE)
+                .desc("Measure only a random sample of the records: a share of them when below 1, like 0.01, else a number of records. Estimates of the mean of every metric with a 95% confidence interval are written instead of a result per record, as csv if the output format is csv, else as json.")
+                .build();
+
+        Option sampleByOption = Option.builder()
+                .numberOfArgs(1)
+                .required(false)
+                .longOpt(SAMPLE_BY)
+                .desc("Field of the schema to stratify the sample by, like cp_id. A number of records is then sampled from every value of the field, and estimates weigh every value by its number of records.")
+                .build();
+
+        Option sampleWidthOption = Option.builder()
+                .numberOfArgs(1)
+                .required(false)
+                .longOpt(SAMPLE_WIDTH)
+                .desc("Stop reading once the confidence interval of every metric is narrower than this width, like 0.02. Only for a sample at a rate, of an input that is not ordered by quality.")
+                .build();
+
+        Option sampleSeedOption = Option.builder()
+                .numberOfArgs(1)
+                .required(false)
+                .longOpt(SAMPLE_SEED)
+                .desc("Seed of the random sample, to draw the same sample again.")
+                .build();
+
+        Option fastCsvOption = Option.builder()
+                .numberOfArgs(0)
+                .required(false)
+                .longOpt(FAST_CSV_FLAG)
+                .desc("Flag to split CSV records with the built-in tokenizer instead of OpenCSV, which is faster on wide records and long multi-line fields. Records are split the same way.")
+                .build();
+
+        Option shardOption = Option.builder()
+                .numberOfArgs(1)
+                .required(false)
+                .longOpt(SHARD)
+                .desc("Assess only one shard of the records, given as its number and the number of shards like 2/8, so processes on several machines can each take one. Records are taken by their index in the input file, or by a hash of the field given by --shardBy. The outputs are combined with 'mqa merge'.")
+                .build();
+
+        Option shardByOption = Option.builder()
+                .numberOfArgs(1)
+                .required(false)
+                .longOpt(SHARD_BY)
+                .desc("Field of the schema whose value decides the shard of a record, like an identifier, instead of its index.")
+                .build();
+
+        Option worstOption = Option.builder()
+                .numberOfArgs(1)
+                .required(false)
+                .longOpt(WORST)
+                .desc("Keep the number of records with the lowest value of every metric, identified by the extractable fields and their number in the input, and write them as a report at the end, as csv if the output format is csv, else as json.")
+                .build();
+
+        Option worstColumnsOption = Option.builder()
+                .hasArgs()
+                .required(false)
+                .longOpt(WORST_COLUMNS)
+                .desc("Columns of the output to keep the worst records of, like completeness:TOTAL. Default: every metric.")
+                .build();
+
+        Option worstFileOption = Option.builder()
+                .numberOfArgs(1)
+                .required(false)
+                .longOpt(WORST_FILE)
+                .desc("File of the worst records. Default: the output file followed by .worst.csv or .worst.json.")
+                .build();
+
+        Option followOption = Option.builder()
+                .numberOfArgs(0)
+                .required(false)
+                .longOpt(FOLLOW_FLAG)
+                .desc("Flag to follow the input file like tail -F: records appended to it are measured as they are written, also after the file was rotated, and their results flushed every interval. The position after the last result is saved next to the output file, so following again continues where it stopped. Only CSV and new line delimited JSON can be followed.")
+                .build();
+
+        Option followFlushOption = Option.builder()
+                .numberOfArgs(1)
+                .required(false)
+                .longOpt(FOLLOW_FLUSH)
+                .desc("Milliseconds between flushes of the results of a followed input. Changes to the input are noticed through file notifications, or else by polling at the same interval. Default: 1000.")
                 .build();
 
         options.addOption(inputOption);
@@ -193,6 +938,39 @@ public class App {
         options.addOption(headersOption);
         options.addOption(gzipOption);
         options.addOption(recordAddressOption);
+        options.addOption(threadsOption);
+        options.addOption(unorderedOption);
+        options.addOption(aggregateOption);
+        options.addOption(groupByOption);
+        options.addOption(groupLimitOption);
+        options.addOption(splitOption);
+        options.addOption(compressOutputOption);
+        options.addOption(checkpointOption);
+        options.addOption(checkpointSecondsOption);
+        options.addOption(resumeOption);
+        options.addOption(cacheOption);
+        options.addOption(cacheSizeOption);
+        options.addOption(outputPerFileOption);
+        options.addOption(sourceColumnOption);
+        options.addOption(entryColumnOption);
+        options.addOption(serveOption);
+        options.addOption(metricsFileOption);
+        options.addOption(metricsSecondsOption);
+        options.addOption(asyncOutputOption);
+        options.addOption(asyncBufferOption);
+        options.addOption(outputBufferSizeOption);
+        options.addOption(sampleOption);
+        options.addOption(sampleByOption);
+        options.addOption(sampleWidthOption);
+        options.addOption(sampleSeedOption);
+        options.addOption(fastCsvOption);
+        options.addOption(shardOption);
+        options.addOption(shardByOption);
+        options.addOption(worstOption);
+        options.addOption(worstColumnsOption);
+        options.addOption(worstFileOption);
+        options.addOption(followOption);
+        options.addOption(followFlushOption);
 
         // create the parser
         CommandLineParser parser = new DefaultParser();
@@ -203,7 +981,11 @@ public class App {
         try {
             // parse the command line arguments
             CommandLine cmd = parser.parse(options, args);
-            new App(cmd).run();
+            App app = new App(cmd);
+            if (cmd.hasOption(SERVE_PORT))
+                app.serve(Integer.parseInt(cmd.getOptionValue(SERVE_PORT)));
+            else if (!app.run())
+                System.exit(1);
         } catch (MissingOptionException ex) {
             formatter.printHelp(appName, appHeader, options, "Options missing: " + ex.getMissingOptions().toString(), true);
             System.exit(1);
@@ -217,29 +999,132 @@ public class App {
         }
     }
 
-    private void run() {
+    private void serve(int port) throws IOException {
+        AssessmentServer server = new AssessmentServer(port, this::openRequest, this::openResponse, outFormat,
+                calculator.getHeader(), this::newCalculator, threads);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            try {
+                if (cache != null)
+                    cache.close();
+                if (metricsReporter != null)
+                    metricsReporter.close();
+            } catch (IOException e) {
+                logger.severe(e.getMessage());
+            }
+        }));
+        server.start();
+    }
+
+    /**
+     * A followed input never ends, so the output is flushed and the position saved when the process is stopped.
+     */
+    private void stopFollowingOnShutdown() {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                outputWriter.close();
+                if (cache != null)
+                    cache.close();
+                if (metricsReporter != null)
+                    metricsReporter.close();
+            } catch (IOException e) {
+                logger.severe(e.getMessage());
+            }
+        }));
+    }
+
+    /**
+     * @return whether the assessment succeeded
+     */
+    private boolean run() {
         long counter = 0;
+        boolean outputClosed = false;
         try {
             // print header
-            List<String> header = calculator.getHeader();
-            outputWriter.writeHeader(header);
+            List<String> header = getHeader();
+            if (outputWriter != null)
+                outputWriter.writeHeader(header);
+
+            if (resumeFrom != null && follow) {
+                // the followed input continues at the position after the last record written
+                counter = resumeFrom.getRecords();
+                logger.info(String.format("Following after %s records. ", counter));
+            } else if (resumeFrom != null) {
+                // skip the records that are already in the output, without measuring them
+                for (long i = 0; i < resumeFrom.getRecords() && inputReader.hasNext(); i++)
+                    inputReader.read();
+                counter = resumeFrom.getRecords();
+                logger.info(String.format("Resuming after %s records. ", counter));
+            }
+
+            if (follow)
+                stopFollowingOnShutdown();
 
-            while (inputReader.hasNext()) {
+            if (inputFiles != null) {
+                FilePipeline pipeline = new FilePipeline(inputFiles.getFiles(), this::openInput, this::newCalculator, threads);
+                counter = outputWriter != null
+                        ? pipeline.run(outputWriter)
+                        : pipeline.run(this::openOutput, header);
+            } else if (splitReaders != null) {
+                counter = new SplitPipeline(splitReaders, this::newCalculator, outputWriter).run();
+            } else if (threads > 1) {
+                counter += MeasurementPipeline.of(inputReader, this::newCalculator, outputWriter, threads, ordered).run();
+            } else {
+                while (inputReader.hasNext()) {
 
-                Map<String, List<MetricResult>> measurement = inputReader.next();
-                outputWriter.writeResult(measurement);
+                    Map<String, List<MetricResult>> measurement = inputReader.next();
+                    outputWriter.writeResult(measurement);
 
-                // update process
-                counter++;
-                if (counter % 50 == 0) {
-                    logger.info(String.format("Processed %s records. ", counter));
+                    // update process
+                    counter++;
+                    if (counter % 50 == 0) {
+                        logger.info(String.format("Processed %s records. ", counter));
+                    }
                 }
             }
             logger.info(String.format("Assessment completed successfully with %s records. ", counter));
-            outputWriter.close();
+            if (outputWriter != null)
+                outputWriter.close();
+            outputClosed = true;
+            if (worst != null)
+                try (BufferedWriter output = RecordFactory.getOutputWriter(worstFile, false)) {
+                    WorstRecordsWriter.write(worst, output, CSV.equals(outFormat));
+                }
+            return true;
         } catch (IOException e) {
             logger.severe(String.format("Assessment failed with %s records. ", counter));
             logger.severe(e.getMessage());
+            return false;
+        } finally {
+            // when the assessment failed the results written so far are kept, without completing the output
+            if (!outputClosed && outputWriter != null)
+                abort(outputWriter);
+            close(cache, metricsReporter);
+            if (profileExecutor != null)
+                profileExecutor.shutdownNow();
+        }
+    }
+
+    private static void abort(ResultWriter writer) {
+        try {
+            writer.abort();
+        } catch (IOException e) {
+            logger.severe(e.getMessage());
+        }
+    }
+
+    /**
+     * Close what is open, continuing with the rest when closing one fails.
+     */
+    private static void close(Closeable... closeables) {
+        for (Closeable closeable : closeables) {
+            if (closeable == null)
+                continue;
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                logger.severe(e.getMessage());
+            }
         }
     }
 }
@@ -0,0 +1,494 @@
+package be.meemoo;
+
+import be.meemoo.pipeline.ExternalSort;
+import be.meemoo.reader.CSVTokenizer;
+import be.meemoo.stats.Statistics;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.opencsv.CSVWriter;
+import org.apache.commons.cli.*;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+/**
+ * Compares two outputs of assessments of the same records, like those of two months, by the value of an id column.
+ * Both outputs are sorted by id with bounded memory, on all cores, and then joined in a single pass. Only records
+ * that changed, were added or were removed are written, with the change of every metric, and the number of records
+ * that got better or worse in every metric is summarized.
+ */
+public class Diff {
+
+    private static final Logger logger = Logger.getLogger(Diff.class.getCanonicalName());
+
+    public static final String COMMAND = "diff";
+
+    private static final String appName = "mqa diff";
+    private static final String appHeader = "Compare the results of two assessments record by record.";
+
+    public static final String CHANGED = "changed";
+    public static final String ADDED = "added";
+    public static final String REMOVED = "removed";
+
+    // Arguments
+    private static final String INPUT_FILE = "input";
+    private static final String ID_COLUMN = "id";
+    private static final String OUTPUT_FILE = "output";
+    private static final String OUTPUT_FORMAT = "outputFormat";
+    private static final String SUMMARY_FILE = "summary";
+    private static final String THREADS = "threads";
+    private static final String CHUNK_MEMORY = "chunkMemory";
+    private static final String COMPRESS_OUTPUT_FLAG = "compressOutput";
+
+    private final String oldFile;
+    private final String newFile;
+    private final String idColumn;
+    private final String outputFile;
+    private final String summaryFile;
+    private final boolean csv;
+    private final int threads;
+    private final long chunkBytes;
+    private final boolean compressOutput;
+
+    private final Map<String, Long> counts = new LinkedHashMap<>();
+    // the columns in both outputs, with the number of records that got better or worse in them
+    private List<String> columns = List.of();
+    private long[] better;
+    private long[] worse;
+
+    public Diff(CommandLine cmd) {
+        String[] inputFiles = cmd.getOptionValues(INPUT_FILE);
+        if (inputFiles.length != 2)
+            throw new IllegalArgumentException("Two outputs are compared, the old and the new one");
+        this.oldFile = inputFiles[0];
+        this.newFile = inputFiles[1];
+        this.idColumn = cmd.getOptionValue(ID_COLUMN);
+        this.outputFile = cmd.getOptionValue(OUTPUT_FILE);
+        this.summaryFile = cmd.getOptionValue(SUMMARY_FILE);
+        String outFormat = cmd.getOptionValue(OUTPUT_FORMAT, App.NDJSON);
+        if (!App.CSV.equals(outFormat) && !App.NDJSON.equals(outFormat))
+            throw new IllegalArgumentException("Only csv and ndjson outputs can be compared");
+        this.csv = App.CSV.equals(outFormat);
+        this.threads = Integer.parseInt(cmd.getOptionValue(THREADS, String.valueOf(Runtime.getRuntime().availableProcessors())));
+        this.compressOutput = cmd.hasOption(COMPRESS_OUTPUT_FLAG);
+        if (threads < 1)
+            throw new IllegalArgumentException("Number of threads should be at least 1");
+        // both outputs keep a chunk per thread waiting to be sorted besides the one being filled, in half of the heap
+        this.chunkBytes = cmd.hasOption(CHUNK_MEMORY)
+                        ? Long.parseLong(cmd.getOptionValue(CHUNK_MEMORY)) << 20
+                        : Math.max(1 << 20, Runtime.getRuntime().maxMemory() / 2 / (2L * (threads + 1)));
+        if (chunkBytes < 1)
+            throw new IllegalArgumentException("Chunks should hold at least a megabyte");
+        for (String count : List.of("old", "new", "unchanged", CHANGED, ADDED, REMOVED))
+            counts.put(count, 0L);
+    }
+
+    public static void main(String[] args) {
+        final Options options = getOptions();
+        CommandLineParser parser = new DefaultParser();
+        HelpFormatter formatter = new HelpFormatter();
+
+        try {
+            CommandLine cmd = parser.parse(options, args);
+            Diff diff = new Diff(cmd);
+            diff.run();
+            logger.info(String.format("Diff completed successfully: %s", diff.getCounts()));
+        } catch (MissingOptionException ex) {
+            formatter.printHelp(appName, appHeader, options, "Options missing: " + ex.getMissingOptions().toString(), true);
+            System.exit(1);
+        } catch (MissingArgumentException ex) {
+            formatter.printHelp(appName, appHeader, options, "Arguments missing: " + ex.getOption().getArgName(), true);
+            System.exit(1);
+        } catch (Exception ex) {
+            formatter.printHelp(appName, appHeader, options, "Error: " + ex.getMessage(), true);
+            ex.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    static Options getOptions() {
+        final Options options = new Options();
+
+        Option inputOption = Option.builder("i")
+                .hasArgs()
+                .required(true)
+                .longOpt(INPUT_FILE)
+                .desc("The old and the new output to compare. Compressed outputs are detected.")
+                .build();
+
+        Option idOption = Option.builder()
+                .numberOfArgs(1)
+                .required(true)
+                .longOpt(ID_COLUMN)
+                .desc("Column identifying a record in both outputs, like an extracted field: pid, or extractable_pid in csv.")
+                .build();
+
+        Option outputOption = Option.builder("o")
+                .numberOfArgs(1)
+                .required(false)
+                .longOpt(OUTPUT_FILE)
+                .desc("Output file.")
+                .build();
+
+        Option outputFormatOption = Option.builder("f")
+                .numberOfArgs(1)
+                .required(false)
+                .longOpt(OUTPUT_FORMAT)
+                .desc("Format of both outputs, and of the differences: ndjson, csv. Default: ndjson.")
+                .build();
+
+        Option summaryOption = Option.builder()
+                .numberOfArgs(1)
+                .required(false)
+                .longOpt(SUMMARY_FILE)
+                .desc("File to write the summary to as json: the number of records that changed, were added or removed, and of those better or worse in every metric. The summary is logged as well.")
+                .build();
+
+        Option threadsOption = Option.builder("t")
+                .numberOfArgs(1)
+                .required(false)
+                .longOpt(THREADS)
+                .desc("Number of threads sorting chunks. Default: the number of processors.")
+                .build();
+
+        Option chunkMemoryOption = Option.builder()
+                .numberOfArgs(1)
+                .required(false)
+                .longOpt(CHUNK_MEMORY)
+                .desc("Megabytes of records sorted in memory at a time, per thread and output. Default: as many as keep the chunks of both outputs in half of the maximum heap.")
+                .build();
+
+        Option compressOutputOption = Option.builder("c")
+                .numberOfArgs(0)
+                .required(false)
+                .longOpt(COMPRESS_OUTPUT_FLAG)
+                .desc("Flag to gzip the output, on a separate thread.")
+                .build();
+
+        options.addOption(inputOption);
+        options.addOption(idOption);
+        options.addOption(outputOption);
+        options.addOption(outputFormatOption);
+        options.addOption(summaryOption);
+        options.addOption(threadsOption);
+        options.addOption(chunkMemoryOption);
+        options.addOption(compressOutputOption);
+        return options;
+    }
+
+    public void run() throws IOException {
+        ExecutorService sorters = Executors.newFixedThreadPool(threads);
+        // both outputs are read at the same time, on threads of their own so they never wait for a sorter
+        ExecutorService readers = Executors.newFixedThreadPool(2);
+        try (ExternalSort oldRows = new ExternalSort(sorters, threads, chunkBytes);
+             ExternalSort newRows = new ExternalSort(sorters, threads, chunkBytes)) {
+            Future<List<String>> oldColumns = readers.submit(() -> read(oldFile, oldRows));
+            Future<List<String>> newColumns = readers.submit(() -> read(newFile, newRows));
+            try (BufferedWriter output = RecordFactory.getOutputWriter(outputFile, compressOutput)) {
+                join(get(oldColumns), oldRows.sorted(), get(newColumns), newRows.sorted(), output);
+            }
+        } finally {
+            readers.shutdownNow();
+            sorters.shutdownNow();
+        }
+        if (summaryFile != null)
+            try (BufferedWriter summary = RecordFactory.getOutputWriter(summaryFile, false)) {
+                writeSummary(summary);
+            }
+    }
+
+    private static <T> T get(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Diff interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Read the results of an output into a sort by id.
+     *
+     * @return the columns of the output
+     */
+    private List<String> read(String inputFile, ExternalSort rows) throws IOException {
+        try (BufferedReader input = new BufferedReader(new InputStreamReader(RecordFactory.openInputStream(inputFile), StandardCharsets.UTF_8))) {
+            return csv ? readCsv(inputFile, input, rows) : readJson(inputFile, input, rows);
+        }
+    }
+
+    private List<String> readCsv(String inputFile, BufferedReader input, ExternalSort rows) throws IOException {
+        CSVTokenizer tokenizer = new CSVTokenizer(input);
+        String[] header = tokenizer.readNext();
+        if (header == null)
+            return List.of();
+        List<String> columns = Arrays.asList(header);
+        int id = indexOf(columns, inputFile, "_");
+        String[] record;
+        while ((record = tokenizer.readNext()) != null)
+            rows.add(new ExternalSort.Row(id < record.length ? record[id] : null, record));
+        return columns;
+    }
+
+    /**
+     * Read the results of new line delimited json, as the values of their leaves. The columns are the paths of the
+     * leaves of the first result, like completeness:completeness:TOTAL.
+     */
+    private List<String> readJson(String inputFile, BufferedReader input, ExternalSort rows) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        List<String> columns = null;
+        Map<String, Integer> index = null;
+        int id = -1;
+        Map<String, String> leaves = new LinkedHashMap<>();
+        String line;
+        while ((line = input.readLine()) != null) {
+            if (line.isBlank())
+                continue;
+            leaves.clear();
+            flatten(mapper.readTree(line), null, leaves);
+            if (columns == null) {
+                columns = new ArrayList<>(leaves.keySet());
+                index = new LinkedHashMap<>();
+                for (int i = 0; i < columns.size(); i++)
+                    index.put(columns.get(i), i);
+                id = indexOf(columns, inputFile, ":");
+            }
+            String[] values = new String[columns.size()];
+            for (Map.Entry<String, String> leaf : leaves.entrySet()) {
+                Integer column = index.get(leaf.getKey());
+                if (column != null)
+                    values[column] = leaf.getValue();
+            }
+            rows.add(new ExternalSort.Row(values[id], values));
+        }
+        return columns == null ? List.of() : columns;
+    }
+
+    private static void flatten(JsonNode node, String path, Map<String, String> leaves) {
+        if (node.isObject()) {
+            node.fields().forEachRemaining(field ->
+                    flatten(field.getValue(), path == null ? field.getKey() : path + ":" + field.getKey(), leaves));
+        } else if (path != null) {
+            leaves.put(path, node.isNull() ? null : node.isValueNode() ? node.asText() : node.toString());
+        }
+    }
+
+    /**
+     * The id column, by its name or its name after those of its calculator.
+     */
+    private int indexOf(List<String> columns, String inputFile, String separator) throws IOException {
+        for (int i = 0; i < columns.size(); i++)
+            if (columns.get(i).equals(idColumn) || columns.get(i).endsWith(separator + idColumn))
+                return i;
+        throw new IOException("Id column not found in " + inputFile + ": " + idColumn);
+    }
+
+    /**
+     * Join the rows of both outputs by id, in a single pass over both. Rows with the same id in one output are paired
+     * with those of the other in order.
+     */
+    private void join(List<String> oldColumns, Iterator<ExternalSort.Row> oldRows,
+                      List<String> newColumns, Iterator<ExternalSort.Row> newRows, BufferedWriter output) throws IOException {
+        // the columns of the new output that are in the old one as well, besides the id
+        List<String> columns = new ArrayList<>();
+        List<int[]> pairs = new ArrayList<>();
+        int id = newColumns.isEmpty() ? -1 : indexOf(newColumns, newFile, csv ? "_" : ":");
+        for (int i = 0; i < newColumns.size(); i++) {
+            int old = oldColumns.indexOf(newColumns.get(i));
+            if (old >= 0 && i != id) {
+                columns.add(newColumns.get(i));
+                pairs.add(new int[]{old, i});
+            }
+        }
+        this.better = new long[columns.size()];
+        this.worse = new long[columns.size()];
+
+        DiffWriter writer = csv ? new CsvDiffWriter(output, columns) : new JsonDiffWriter(output, columns);
+        double[] deltas = new double[columns.size()];
+        boolean[] changed = new boolean[columns.size()];
+        ExternalSort.Row oldRow = oldRows.hasNext() ? oldRows.next() : null;
+        ExternalSort.Row newRow = newRows.hasNext() ? newRows.next() : null;
+        while (oldRow != null || newRow != null) {
+            int order = oldRow == null ? 1 : newRow == null ? -1 : oldRow.getId().compareTo(newRow.getId());
+            if (order < 0) {
+                count("old");
+                count(REMOVED);
+                writer.write(oldRow.getId(), REMOVED, null, null);
+                oldRow = oldRows.hasNext() ? oldRows.next() : null;
+                continue;
+            }
+            if (order > 0) {
+                count("new");
+                count(ADDED);
+                writer.write(newRow.getId(), ADDED, null, null);
+                newRow = newRows.hasNext() ? newRows.next() : null;
+                continue;
+            }
+
+            count("old");
+            count("new");
+            boolean any = false;
+            for (int i = 0; i < pairs.size(); i++) {
+                String[] oldValues = oldRow.getValues();
+                String[] newValues = newRow.getValues();
+                double before = Statistics.parse(pairs.get(i)[0] < oldValues.length ? oldValues[pairs.get(i)[0]] : null);
+                double after = Statistics.parse(pairs.get(i)[1] < newValues.length ? newValues[pairs.get(i)[1]] : null);
+                // a value that appeared or disappeared is a change without a delta
+                changed[i] = Double.compare(before, after) != 0;
+                deltas[i] = after - before;
+                if (deltas[i] > 0)
+                    better[i]++;
+                else if (deltas[i] < 0)
+                    worse[i]++;
+                any |= changed[i];
+            }
+            if (any) {
+                count(CHANGED);
+                writer.write(newRow.getId(), CHANGED, deltas, changed);
+            } else {
+                count("unchanged");
+            }
+            oldRow = oldRows.hasNext() ? oldRows.next() : null;
+            newRow = newRows.hasNext() ? newRows.next() : null;
+        }
+        writer.flush();
+        this.columns = columns;
+    }
+
+    private void count(String name) {
+        counts.merge(name, 1L, Long::sum);
+    }
+
+    private void writeSummary(BufferedWriter output) throws IOException {
+        JsonGenerator generator = new ObjectMapper().getFactory().createGenerator(output);
+        generator.writeStartObject();
+        for (Map.Entry<String, Long> count : counts.entrySet())
+            generator.writeNumberField(count.getKey(), count.getValue());
+        generator.writeObjectFieldStart("columns");
+        for (int i = 0; i < columns.size(); i++) {
+            if (better[i] == 0 && worse[i] == 0)
+                continue;
+            generator.writeObjectFieldStart(columns.get(i));
+            generator.writeNumberField("better", better[i]);
+            generator.writeNumberField("worse", worse[i]);
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+        generator.writeEndObject();
+        generator.flush();
+        output.newLine();
+    }
+
+    public Map<String, Long> getCounts() {
+        return counts;
+    }
+
+    private interface DiffWriter {
+        /**
+         * @param deltas the change of every column, or null for a record that was added or removed
+         * @param changed whether the value of a column changed
+         */
+        void write(String id, String change, double[] deltas, boolean[] changed) throws IOException;
+
+        void flush() throws IOException;
+    }
+
+    /**
+     * Writes a row per record with the delta of every column that changed, NA when a value appeared or disappeared.
+     */
+    private class CsvDiffWriter implements DiffWriter {
+        private final CSVWriter csvWriter;
+        private final String[] row;
+
+        private CsvDiffWriter(BufferedWriter output, List<String> columns) {
+            this.csvWriter = new CSVWriter(output);
+            this.row = new String[columns.size() + 2];
+            row[0] = idColumn;
+            row[1] = "change";
+            for (int i = 0; i < columns.size(); i++)
+                row[i + 2] = columns.get(i);
+            csvWriter.writeNext(row);
+        }
+
+        @Override
+        public void write(String id, String change, double[] deltas, boolean[] changed) {
+            row[0] = id;
+            row[1] = change;
+            for (int i = 2; i < row.length; i++)
+                row[i] = deltas == null || !changed[i - 2] ? "" : format(deltas[i - 2]);
+            csvWriter.writeNext(row);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            csvWriter.flush();
+        }
+    }
+
+    /**
+     * Writes a line of json per record with the deltas of the columns that changed, null when a value appeared or
+     * disappeared.
+     */
+    private class JsonDiffWriter implements DiffWriter {
+        private final BufferedWriter output;
+        private final JsonGenerator generator;
+        private final List<String> columns;
+
+        private JsonDiffWriter(BufferedWriter output, List<String> columns) throws IOException {
+            this.output = output;
+            this.generator = new ObjectMapper().getFactory().createGenerator(output);
+            this.generator.setRootValueSeparator(null);
+            this.columns = columns;
+        }
+
+        @Override
+        public void write(String id, String change, double[] deltas, boolean[] changed) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField(idColumn, id);
+            generator.writeStringField("change", change);
+            if (deltas != null) {
+                generator.writeObjectFieldStart("deltas");
+                for (int i = 0; i < deltas.length; i++) {
+                    if (!changed[i])
+                        continue;
+                    if (Double.isNaN(deltas[i]))
+                        generator.writeNullField(columns.get(i));
+                    else
+                        generator.writeNumberField(columns.get(i), deltas[i]);
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndObject();
+            generator.flush();
+            output.newLine();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            generator.flush();
+        }
+    }
+
+    private static String format(double value) {
+        return Double.isNaN(value) ? "NA" : String.valueOf(value);
+    }
+}
@@ -0,0 +1,252 @@
+package be.meemoo;
+
+import be.meemoo.stats.Statistics;
+import be.meemoo.writer.AggregateResultWriter;
+import org.apache.commons.cli.*;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Combines the outputs of shards, assessed by processes started with --shard, into a single output. Results are
+ * concatenated in the order of the shards, or interleaved back into the order of the input when the shards took the
+ * records by index. Aggregate reports are combined into the statistics of all records. The results are copied as
+ * they were written, so the output is the same as that of a single process.
+ */
+public class Merge {
+
+    private static final Logger logger = Logger.getLogger(Merge.class.getCanonicalName());
+
+    public static final String COMMAND = "merge";
+
+    private static final String appName = "mqa merge";
+    private static final String appHeader = "Merge the outputs of shards assessed with --shard into one output.";
+
+    // Arguments
+    private static final String INPUT_FILE = "input";
+    private static final String OUTPUT_FILE = "output";
+    private static final String OUTPUT_FORMAT = "outputFormat";
+    private static final String AGGREGATE_FLAG = "aggregate";
+    private static final String ORDERED_FLAG = "ordered";
+    private static final String COMPRESS_OUTPUT_FLAG = "compressOutput";
+
+    private final List<String> inputFiles;
+    private final String outputFile;
+    private final String outFormat;
+    private final boolean aggregate;
+    private final boolean ordered;
+    private final boolean compressOutput;
+
+    public Merge(CommandLine cmd) {
+        this.inputFiles = Arrays.asList(cmd.getOptionValues(INPUT_FILE));
+        this.outputFile = cmd.getOptionValue(OUTPUT_FILE);
+        this.outFormat = cmd.getOptionValue(OUTPUT_FORMAT, App.NDJSON);
+        this.aggregate = cmd.hasOption(AGGREGATE_FLAG);
+        this.ordered = cmd.hasOption(ORDERED_FLAG);
+        this.compressOutput = cmd.hasOption(COMPRESS_OUTPUT_FLAG);
+        if (aggregate && ordered)
+            throw new IllegalArgumentException("Aggregate statistics have no order");
+    }
+
+    public static void main(String[] args) {
+        final Options options = new Options();
+
+        Option inputOption = Option.builder("i")
+                .hasArgs()
+                .required(true)
+                .longOpt(INPUT_FILE)
+                .desc("Outputs of the shards, in the order of the shards. Compressed outputs are detected.")
+                .build();
+
+        Option outputOption = Option.builder("o")
+                .numberOfArgs(1)
+                .required(false)
+                .longOpt(OUTPUT_FILE)
+                .desc("Output file.")
+                .build();
+
+        Option outputFormatOption = Option.builder("f")
+                .numberOfArgs(1)
+                .required(false)
+                .longOpt(OUTPUT_FORMAT)
+                .desc("Format of the outputs of the shards: json, ndjson, csv, csvjson. Default: ndjson.")
+                .build();
+
+        Option aggregateOption = Option.builder("a")
+                .numberOfArgs(0)
+                .required(false)
+                .longOpt(AGGREGATE_FLAG)
+                .desc("Flag to merge the summary statistics written by --aggregate, as csv if the output format is csv, else as json.")
+                .build();
+
+        Option orderedOption = Option.builder()
+                .numberOfArgs(0)
+                .required(false)
+                .longOpt(ORDERED_FLAG)
+                .desc("Flag to write the results in the order of the input, for shards taken by record index and written in input order. Else the outputs are concatenated.")
+                .build();
+
+        Option compressOutputOption = Option.builder("c")
+                .numberOfArgs(0)
+                .required(false)
+                .longOpt(COMPRESS_OUTPUT_FLAG)
+                .desc("Flag to gzip the output, on a separate thread.")
+                .build();
+
+        options.addOption(inputOption);
+        options.addOption(outputOption);
+        options.addOption(outputFormatOption);
+        options.addOption(aggregateOption);
+        options.addOption(orderedOption);
+        options.addOption(compressOutputOption);
+
+        CommandLineParser parser = new DefaultParser();
+        HelpFormatter formatter = new HelpFormatter();
+
+        try {
+            CommandLine cmd = parser.parse(options, args);
+            long counter = new Merge(cmd).run();
+            logger.info(String.format("Merge completed successfully with %s results. ", counter));
+        } catch (MissingOptionException ex) {
+            formatter.printHelp(appName, appHeader, options, "Options missing: " + ex.getMissingOptions().toString(), true);
+            System.exit(1);
+        } catch (MissingArgumentException ex) {
+            formatter.printHelp(appName, appHeader, options, "Arguments missing: " + ex.getOption().getArgName(), true);
+            System.exit(1);
+        } catch (Exception ex) {
+            formatter.printHelp(appName, appHeader, options, "Error: " + ex.getMessage(), true);
+            ex.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @return the number of results, or of shards when merging aggregate statistics
+     */
+    public long run() throws IOException {
+        List<BufferedReader> inputs = new ArrayList<>();
+        try (BufferedWriter output = RecordFactory.getOutputWriter(outputFile, compressOutput)) {
+            for (String inputFile : inputFiles)
+                inputs.add(new BufferedReader(new InputStreamReader(RecordFactory.openInputStream(inputFile), StandardCharsets.UTF_8)));
+            return aggregate ? mergeStatistics(inputs, output) : mergeResults(inputs, output);
+        } finally {
+            for (BufferedReader input : inputs)
+                input.close();
+        }
+    }
+
+    private long mergeStatistics(List<BufferedReader> inputs, BufferedWriter output) throws IOException {
+        boolean csv = App.CSV.equals(outFormat);
+        AggregateResultWriter writer = new AggregateResultWriter(output, csv);
+        for (int i = 0; i < inputs.size(); i++) {
+            Statistics statistics = AggregateResultWriter.read(inputs.get(i), csv);
+            if (i == 0)
+                writer.writeHeader(statistics.getColumns());
+            if (!writer.getStatistics().getColumns().equals(statistics.getColumns()))
+                throw new IOException("Shard has other columns than the first: " + inputFiles.get(i));
+            writer.getStatistics().merge(statistics);
+        }
+        writer.close();
+        return inputs.size();
+    }
+
+    private long mergeResults(List<BufferedReader> inputs, BufferedWriter output) throws IOException {
+        boolean csv = App.CSV.equals(outFormat) || App.CSVJSON.equals(outFormat);
+        boolean array = App.JSON.equals(outFormat);
+        if (csv) {
+            String header = null;
+            for (int i = 0; i < inputs.size(); i++) {
+                String shardHeader = readResult(inputs.get(i));
+                if (header != null && shardHeader != null && !header.equals(shardHeader))
+                    throw new IOException("Shard has another header than the first: " + inputFiles.get(i));
+                if (header == null)
+                    header = shardHeader;
+            }
+            if (header != null) {
+                output.write(header);
+                output.write('\n');
+            }
+        }
+        if (array)
+            output.write('[');
+
+        long counter = 0;
+        if (ordered) {
+            // shard i holds the records i, i + n, i + 2n... so they are taken from the shards in turn
+            int shard = 0;
+            String result;
+            while ((result = readResult(inputs.get(shard))) != null) {
+                write(output, result, array, counter++);
+                shard = (shard + 1) % inputs.size();
+            }
+            for (int i = 0; i < inputs.size(); i++)
+                if (readResult(inputs.get(i)) != null)
+                    throw new IOException("Shards do not hold the records by index, so their order can not be restored: " + inputFiles.get(i));
+        } else {
+            for (BufferedReader input : inputs) {
+                String result;
+                while ((result = readResult(input)) != null)
+                    write(output, result, array, counter++);
+            }
+        }
+
+        if (array)
+            output.write(counter == 0 ? "]\n" : "\n]\n");
+        return counter;
+    }
+
+    private static void write(BufferedWriter output, String result, boolean array, long index) throws IOException {
+        if (array)
+            output.write(index == 0 ? "\n" : ",\n");
+        output.write(result);
+        if (!array)
+            output.write('\n');
+    }
+
+    /**
+     * Read the next result of a shard as it was written, without its line end, or null at the end of the shard.
+     */
+    private String readResult(BufferedReader input) throws IOException {
+        if (App.CSV.equals(outFormat) || App.CSVJSON.equals(outFormat))
+            return readCsvRecord(input);
+
+        String line;
+        while ((line = input.readLine()) != null) {
+            if (App.JSON.equals(outFormat)) {
+                // the elements of an array are written one per line, between lines with its brackets
+                if (line.equals("[") || line.equals("]") || line.equals("[]"))
+                    continue;
+                if (line.endsWith(","))
+                    line = line.substring(0, line.length() - 1);
+            }
+            if (!line.isEmpty())
+                return line;
+        }
+        return null;
+    }
+
+    /**
+     * Read a CSV record, which continues over new lines inside quoted fields. Quotes in fields are doubled, so the
+     * record ends at the first new line after an even number of quotes.
+     */
+    private static String readCsvRecord(BufferedReader input) throws IOException {
+        StringBuilder record = new StringBuilder();
+        boolean quoted = false;
+        int c;
+        while ((c = input.read()) >= 0) {
+            if (c == '\n' && !quoted)
+                return record.toString();
+            if (c == '"')
+                quoted = !quoted;
+            record.append((char) c);
+        }
+        return record.length() > 0 ? record.toString() : null;
+    }
+}
@@ -0,0 +1,35 @@
+package be.meemoo;
+
+import de.gwdg.metadataqa.api.calculator.CalculatorFacade;
+import de.gwdg.metadataqa.api.configuration.MeasurementConfiguration;
+import de.gwdg.metadataqa.api.schema.Schema;
+
+/**
+ * Another schema and measurements to assess the same records against, written to an output of its own.
+ */
+public class Profile {
+
+    private final Schema schema;
+    private final MeasurementConfiguration measurementConfig;
+    private final String outputFile;
+
+    public Profile(Schema schema, MeasurementConfiguration measurementConfig, String outputFile) {
+        this.schema = schema;
+        this.measurementConfig = measurementConfig;
+        this.outputFile = outputFile;
+    }
+
+    public CalculatorFacade newCalculator() {
+        CalculatorFacade calculator = new CalculatorFacade(measurementConfig);
+        calculator.setSchema(schema);
+        return calculator;
+    }
+
+    public Schema getSchema() {
+        return schema;
+    }
+
+    public String getOutputFile() {
+        return outputFile;
+    }
+}
@@ -1,56 +1,250 @@
 package be.meemoo;
 
+import be.meemoo.metrics.AssessmentMetrics;
+import be.meemoo.reader.ArchiveRecordReader;
 import be.meemoo.reader.CSVRecordReader;
+import be.meemoo.reader.FileFollower;
+import be.meemoo.reader.FileSplitter;
+import be.meemoo.reader.FollowRecordReader;
+import be.meemoo.reader.MappedInputStream;
+import be.meemoo.reader.MeteredInputStream;
+import be.meemoo.reader.ReadAheadInputStream;
+import be.meemoo.reader.ReaderOptions;
 import be.meemoo.reader.JSONRecordReader;
 import be.meemoo.reader.RecordReader;
+import be.meemoo.reader.SharedChannel;
+import be.meemoo.reader.StreamingJSONRecordReader;
+import be.meemoo.reader.StreamingXMLRecordReader;
 import be.meemoo.reader.XMLRecordReader;
+import be.meemoo.writer.AggregateResultWriter;
 import be.meemoo.writer.CSVJSONResultWriter;
 import be.meemoo.writer.CSVResultWriter;
+import be.meemoo.writer.GroupResultWriter;
 import be.meemoo.writer.JSONResultWriter;
 import be.meemoo.writer.ResultWriter;
+import be.meemoo.writer.WriteBehindOutputStream;
 import com.opencsv.exceptions.CsvValidationException;
 import de.gwdg.metadataqa.api.calculator.CalculatorFacade;
+import de.gwdg.metadataqa.api.schema.Format;
 import de.gwdg.metadataqa.api.schema.Schema;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
-import java.io.FileInputStream;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Logger;
-import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 public class RecordFactory {
 
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final String GZIP = "gzip";
+    private static final String BZIP2 = "bzip2";
+    private static final String ZIP = "zip";
+    private static final String NONE = "none";
+
     private static Logger logger;
 
-    public static RecordReader getRecordReader(String inputFile, CalculatorFacade calculator, boolean gzip) throws CsvValidationException, IOException {
-        final Schema schema = calculator.getSchema();
+    public static RecordReader<?> getRecordReader(String inputFile, CalculatorFacade calculator, boolean gzip) throws CsvValidationException, IOException {
+        return getRecordReader(inputFile, calculator, gzip, null, ReaderOptions.DEFAULT);
+    }
 
-        BufferedReader inputReader;
-        if (gzip) {
-            FileInputStream fis = new FileInputStream(inputFile);
-            GZIPInputStream gis = new GZIPInputStream(fis);
-            InputStreamReader inputStreamReader = new InputStreamReader(gis, "UTF-8");
-            inputReader = new BufferedReader(inputStreamReader);
-        } else {
-            Path inputPath = Paths.get(inputFile);
-            inputReader = Files.newBufferedReader(inputPath);
+    /**
+     * Read the records of an input file. A ZIP or tar archive, also compressed, is read as a stream of files which are
+     * a record each.
+     */
+    public static RecordReader<?> getRecordReader(String inputFile, CalculatorFacade calculator, boolean gzip, String recordAddress, ReaderOptions options) throws CsvValidationException, IOException {
+        InputStream in = openInputStream(inputFile);
+        if (!in.markSupported())
+            in = new BufferedInputStream(in, BUFFER_SIZE);
+        boolean zip = detectCompression(in).equals(ZIP);
+        if (zip || ArchiveRecordReader.isTar(in)) {
+            if (recordAddress != null)
+                throw new IllegalArgumentException("Every file in an archive is a record, a record address can not be used");
+            if (!zip)
+                return ArchiveRecordReader.ofTar(in, calculator, options.isEntryColumn());
+            in.close();
+            return ArchiveRecordReader.ofZip(Paths.get(inputFile), calculator, options.isEntryColumn());
         }
+        BufferedReader inputReader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        return getRecordReader(inputReader, calculator, recordAddress, options);
+    }
+
+    public static RecordReader<?> getRecordReader(BufferedReader inputReader, CalculatorFacade calculator, String recordAddress, ReaderOptions options) throws CsvValidationException, IOException {
+        final Schema schema = calculator.getSchema();
 
         switch (schema.getFormat()) {
             case CSV:
-                return new CSVRecordReader(inputReader, calculator);
+                return new CSVRecordReader(inputReader, calculator, null, options.isCsvTokenizer());
             case JSON:
-                return new JSONRecordReader(inputReader, calculator);
+                // without a record address the input is new line delimited JSON
+                if (recordAddress == null)
+                    return new JSONRecordReader(inputReader, calculator);
+                return new StreamingJSONRecordReader(inputReader, calculator, recordAddress);
             case XML:
+                // only fall back to a DOM when the record address needs the full XPath language
+                if (StreamingXMLRecordReader.isStreamable(recordAddress))
+                    return new StreamingXMLRecordReader(inputReader, calculator, recordAddress);
                 XMLRecordReader reader = new XMLRecordReader(inputReader, calculator);
+                if (recordAddress != null)
+                    reader.setRecordAddress(recordAddress);
                 return reader;
         }
-        return new CSVRecordReader(inputReader, calculator);
+        return new CSVRecordReader(inputReader, calculator, null, options.isCsvTokenizer());
+    }
+
+    /**
+     * Open an input file. Compressed input is detected by its magic bytes (the gzip flag is no longer needed), and
+     * decompressed on a read ahead thread. Concatenated gzip members, as in BGZF files, are all read.
+     */
+    public static InputStream openInputStream(String inputFile) throws IOException {
+        AssessmentMetrics metrics = AssessmentMetrics.get();
+        InputStream in = new BufferedInputStream(new MeteredInputStream(Files.newInputStream(Paths.get(inputFile)), metrics.getRead(), false), BUFFER_SIZE);
+        switch (detectCompression(in)) {
+            case GZIP:
+                return new ReadAheadInputStream(new MeteredInputStream(new GzipCompressorInputStream(in, true), metrics.getDecompress(), true));
+            case BZIP2:
+                return new ReadAheadInputStream(new MeteredInputStream(new BZip2CompressorInputStream(in, true), metrics.getDecompress(), true));
+            default:
+                return in;
+        }
+    }
+
+    private static String detectCompression(InputStream in) throws IOException {
+        byte[] magic = new byte[4];
+        in.mark(magic.length);
+        int length = IOUtils.read(in, magic);
+        in.reset();
+
+        if (length >= 2 && (magic[0] & 0xff) == 0x1f && (magic[1] & 0xff) == 0x8b)
+            return GZIP;
+        if (length >= 3 && magic[0] == 'B' && magic[1] == 'Z' && magic[2] == 'h')
+            return BZIP2;
+        if (length == 4 && magic[0] == 'P' && magic[1] == 'K' && magic[2] == 3 && magic[3] == 4)
+            return ZIP;
+        return NONE;
+    }
+
+    /**
+     * Open the output, standard out if no file is given. Compressed output is gzipped on a background thread.
+     */
+    public static BufferedWriter getOutputWriter(String outputFile, boolean compress) throws IOException {
+        return getOutputWriter(outputFile, compress, BUFFER_SIZE);
+    }
+
+    /**
+     * @param bufferSize the number of characters buffered before they are written
+     */
+    public static BufferedWriter getOutputWriter(String outputFile, boolean compress, int bufferSize) throws IOException {
+        OutputStream out = outputFile == null ? System.out : Files.newOutputStream(Paths.get(outputFile));
+        if (compress)
+            out = new WriteBehindOutputStream(new GZIPOutputStream(out, BUFFER_SIZE));
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), bufferSize);
+    }
+
+    /**
+     * Open an output file to continue writing after the first bytes, which were written before.
+     */
+    public static BufferedWriter getOutputWriter(String outputFile, long truncateTo) throws IOException {
+        return getOutputWriter(outputFile, truncateTo, BUFFER_SIZE);
+    }
+
+    public static BufferedWriter getOutputWriter(String outputFile, long truncateTo, int bufferSize) throws IOException {
+        Path outputPath = Paths.get(outputFile);
+        try (FileChannel channel = FileChannel.open(outputPath, StandardOpenOption.WRITE)) {
+            if (channel.size() < truncateTo)
+                throw new IOException("Output is shorter than the checkpoint: " + outputFile);
+            channel.truncate(truncateTo);
+        }
+        OutputStream out = Files.newOutputStream(outputPath, StandardOpenOption.APPEND);
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), bufferSize);
+    }
+
+    /**
+     * Split an uncompressed CSV or new line delimited JSON file in parts that can be read in parallel. The file is
+     * read through memory mappings, and the CSV header is shared by all parts.
+     */
+    public static List<RecordReader<?>> getSplitRecordReaders(String inputFile, CalculatorFacade calculator, int parts, ReaderOptions options) throws CsvValidationException, IOException {
+        final Schema schema = calculator.getSchema();
+        if (schema.getFormat() != Format.CSV && schema.getFormat() != Format.JSON)
+            throw new IllegalArgumentException("Only CSV and new line delimited JSON input can be split");
+
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(Paths.get(inputFile)))) {
+            if (!detectCompression(in).equals(NONE) || ArchiveRecordReader.isTar(in))
+                throw new IllegalArgumentException("Compressed input and archives can not be split");
+        }
+
+        SharedChannel channel = new SharedChannel(FileChannel.open(Paths.get(inputFile), StandardOpenOption.READ));
+        List<RecordReader<?>> readers = new ArrayList<>();
+        try {
+            FileSplitter splitter = new FileSplitter(channel.get());
+            if (schema.getFormat() == Format.CSV) {
+                long[] boundaries = splitter.splitCsv(parts);
+                List<String> header;
+                try (CSVRecordReader headerReader = new CSVRecordReader(getRangeReader(channel, 0, boundaries[0]), calculator, null, options.isCsvTokenizer())) {
+                    header = headerReader.getHeader();
+                }
+                for (int i = 0; i < parts; i++)
+                    readers.add(new CSVRecordReader(getRangeReader(channel, boundaries[i], boundaries[i + 1]), calculator, header, options.isCsvTokenizer()));
+            } else {
+                long[] boundaries = splitter.splitLines(parts);
+                for (int i = 0; i < parts; i++)
+                    readers.add(new JSONRecordReader(getRangeReader(channel, boundaries[i], boundaries[i + 1]), calculator));
+            }
+        } catch (IOException | CsvValidationException | RuntimeException e) {
+            for (RecordReader<?> reader : readers)
+                reader.close();
+            // also when a reader failed before it could be closed
+            channel.get().close();
+            throw e;
+        } finally {
+            // the channel is closed once the readers of all parts are closed
+            channel.release();
+        }
+        return readers;
+    }
+
+    /**
+     * Follow an uncompressed CSV or new line delimited JSON file as records are appended to it.
+     *
+     * @param start the position to continue from, or null to read the file from its start
+     */
+    public static FollowRecordReader<?> getFollowRecordReader(String inputFile, CalculatorFacade calculator, FileFollower.Position start, long pollMillis) throws CsvValidationException, IOException {
+        final Schema schema = calculator.getSchema();
+        if (schema.getFormat() != Format.CSV && schema.getFormat() != Format.JSON)
+            throw new IllegalArgumentException("Only CSV and new line delimited JSON input can be followed");
+        if (Files.exists(Paths.get(inputFile)))
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(Paths.get(inputFile)))) {
+                if (!detectCompression(in).equals(NONE) || ArchiveRecordReader.isTar(in))
+                    throw new IllegalArgumentException("Compressed input and archives can not be followed");
+            }
+
+        FileFollower follower = new FileFollower(Paths.get(inputFile), start, pollMillis);
+        if (schema.getFormat() == Format.CSV)
+            return FollowRecordReader.ofCsv(follower, calculator);
+        return FollowRecordReader.ofJson(follower, calculator);
+    }
+
+    private static BufferedReader getRangeReader(SharedChannel channel, long start, long end) throws IOException {
+        InputStream in = new MeteredInputStream(new MappedInputStream(channel, start, end), AssessmentMetrics.get().getRead(), false);
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
     }
 
     public static ResultWriter getResultWriter(String outputFormat, String outputFile) throws IOException {
@@ -63,6 +257,7 @@ public class RecordFactory {
             case App.CSV:
                 return new CSVResultWriter(outputFile);
             case App.JSON:
+                return new JSONResultWriter(outputFile, true);
             case App.NDJSON:
                 return new JSONResultWriter(outputFile);
             case App.CSVJSON:
@@ -72,10 +267,26 @@ public class RecordFactory {
         return new CSVResultWriter(outputFile);
     }
 
+    public static ResultWriter getResultWriter(String outputFormat, BufferedWriter outputWriter) {
+        switch (outputFormat) {
+            case App.CSV:
+                return new CSVResultWriter(outputWriter);
+            case App.JSON:
+                return new JSONResultWriter(outputWriter, true);
+            case App.NDJSON:
+                return new JSONResultWriter(outputWriter);
+            case App.CSVJSON:
+                return new CSVJSONResultWriter(outputWriter);
+        }
+        return new CSVResultWriter(outputWriter);
+    }
+
     public static ResultWriter getResultWriter(String outputFormat) throws IOException {
         switch (outputFormat) {
             case App.CSV:
                 return new CSVResultWriter();
+            case App.JSON:
+                return new JSONResultWriter(true);
             case App.NDJSON:
                 return new JSONResultWriter();
             case App.CSVJSON:
@@ -83,4 +294,23 @@ public class RecordFactory {
         }
         return new CSVResultWriter();
     }
+
+    public static ResultWriter getAggregateWriter(String outputFormat, String outputFile) throws IOException {
+        if (outputFormat == null) {
+            outputFormat = FilenameUtils.getExtension(outputFile);
+        }
+        return new AggregateResultWriter(outputFile, App.CSV.equals(outputFormat));
+    }
+
+    public static ResultWriter getAggregateWriter(String outputFormat) {
+        return new AggregateResultWriter(App.CSV.equals(outputFormat));
+    }
+
+    public static ResultWriter getAggregateWriter(String outputFormat, BufferedWriter outputWriter) {
+        return new AggregateResultWriter(outputWriter, App.CSV.equals(outputFormat));
+    }
+
+    public static ResultWriter getGroupWriter(String outputFormat, BufferedWriter outputWriter, String field, int maxGroups) {
+        return new GroupResultWriter(outputWriter, App.CSV.equals(outputFormat), field, maxGroups);
+    }
 }
@@ -0,0 +1,473 @@
+package be.meemoo.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+
+/**
+ * A persistent cache of measurement results, keyed by a hash of the record content and a fingerprint of the schema and
+ * measurement configuration.
+ *
+ * The cache directory holds a hash table of fixed capacity, memory mapped so it does not take heap, and an append-only
+ * file with the serialized results. Every run of the application is a generation, and entries remember the last
+ * generation that used them. Entries not used for a number of runs are evicted when the cache is opened; when the
+ * table fills up the least recently used generations are evicted, and if only entries of the current run remain new
+ * results are no longer cached.
+ *
+ * A cache directory is used by one process at a time, it is locked while the cache is open. Every result in the data
+ * file is preceded by its key and length, which are checked when it is read, so an index that does not match the data
+ * file, e.g. after the process was killed, gives misses rather than the results of other records.
+ */
+public class ResultCache implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(ResultCache.class.getCanonicalName());
+
+    // slot: key (16 bytes), data offset (8 bytes, 0 when empty), data length (4 bytes), generation (4 bytes)
+    private static final int SLOT = 32;
+    private static final int KEY_LOW = 8;
+    private static final int OFFSET = 16;
+    private static final int LENGTH = 24;
+    private static final int GENERATION = 28;
+    private static final int SEGMENT_BITS = 25;
+    private static final long SLOTS_PER_SEGMENT = 1L << SEGMENT_BITS;
+    private static final double MAX_LOAD = 0.75;
+    // data offsets start after a header, so 0 marks an empty slot
+    private static final long DATA_START = 8;
+    private static final byte[] MAGIC = "MQACACH2".getBytes(StandardCharsets.US_ASCII);
+    // record: key (16 bytes), value length (4 bytes), value
+    private static final int RECORD_HEADER = 20;
+
+    private static final String CAPACITY = "capacity";
+    private static final String GENERATION_PROPERTY = "generation";
+
+    private static final ThreadLocal<MessageDigest> digest = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final Path directory;
+    private final long capacity;
+    private final long maxEntries;
+    private final int generation;
+    private final FileChannel lock;
+    private FileChannel data;
+    private long dataEnd;
+    private MappedByteBuffer[] segments;
+    private long count;
+    private long liveBytes;
+    private boolean full = false;
+    private boolean closed = false;
+    private long hits = 0;
+    private long misses = 0;
+
+    private ResultCache(Path directory, FileChannel lock, long capacity, long maxEntries, int generation) throws IOException {
+        this.directory = directory;
+        this.lock = lock;
+        this.capacity = capacity;
+        this.maxEntries = maxEntries;
+        this.generation = generation;
+        this.data = FileChannel.open(directory.resolve("data.bin"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (data.size() < DATA_START)
+            data.write(ByteBuffer.wrap(MAGIC), 0);
+        this.dataEnd = data.size();
+    }
+
+    /**
+     * Open a cache directory, creating it if needed.
+     *
+     * @param size the maximum number of entries
+     * @param maxAge the number of runs after which unused entries are evicted
+     */
+    public static ResultCache open(Path directory, long size, int maxAge) throws IOException {
+        Files.createDirectories(directory);
+        FileChannel lock = lock(directory);
+        try {
+            return open(directory, lock, size, maxAge);
+        } catch (IOException | RuntimeException e) {
+            lock.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Lock the cache directory, which is released when the process ends, also when it is killed.
+     */
+    private static FileChannel lock(Path directory) throws IOException {
+        FileChannel channel = FileChannel.open(directory.resolve("cache.lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // locked by this process
+            lock = null;
+        }
+        if (lock == null) {
+            channel.close();
+            throw new IllegalStateException("The result cache is used by another assessment: " + directory);
+        }
+        return channel;
+    }
+
+    private static ResultCache open(Path directory, FileChannel lock, long size, int maxAge) throws IOException {
+        if (!hasMagic(directory.resolve("data.bin"))) {
+            // results cached in another format are dropped
+            Files.deleteIfExists(directory.resolve("data.bin"));
+            Files.deleteIfExists(directory.resolve("index.bin"));
+        }
+        Properties properties = new Properties();
+        Path propertiesFile = directory.resolve("cache.properties");
+        if (Files.exists(propertiesFile))
+            try (Reader reader = Files.newBufferedReader(propertiesFile, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+
+        // a power of two, so the hash can be masked to a slot
+        long capacity = Long.highestOneBit(Math.max(16, (long) (size / MAX_LOAD) + 1) - 1) << 1;
+        int generation = Integer.parseInt(properties.getProperty(GENERATION_PROPERTY, "0")) + 1;
+        ResultCache cache = new ResultCache(directory, lock, capacity, size, generation);
+
+        Path index = directory.resolve("index.bin");
+        long oldCapacity = Long.parseLong(properties.getProperty(CAPACITY, "0"));
+        if (Files.exists(index) && oldCapacity > 0) {
+            cache.rebuild(oldCapacity, generation - maxAge);
+        } else {
+            Files.deleteIfExists(index);
+            cache.segments = map(index, capacity, true);
+        }
+        cache.saveProperties();
+        return cache;
+    }
+
+    private static boolean hasMagic(Path dataFile) throws IOException {
+        if (!Files.exists(dataFile))
+            return true;
+        ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+        try (FileChannel channel = FileChannel.open(dataFile, StandardOpenOption.READ)) {
+            while (magic.hasRemaining() && channel.read(magic) >= 0)
+                ;
+        }
+        return !magic.hasRemaining() && ByteBuffer.wrap(MAGIC).equals(magic.flip());
+    }
+
+    private void saveProperties() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(CAPACITY, String.valueOf(capacity));
+        properties.setProperty(GENERATION_PROPERTY, String.valueOf(generation));
+        try (Writer writer = Files.newBufferedWriter(directory.resolve("cache.properties"), StandardCharsets.UTF_8)) {
+            properties.store(writer, null);
+        }
+    }
+
+    public static byte[] fingerprint(String... parts) {
+        return fingerprint(new byte[0], parts);
+    }
+
+    /**
+     * A fingerprint extended with more parts, like the header of a CSV file whose columns are taken by position.
+     */
+    public static byte[] fingerprint(byte[] fingerprint, String... parts) {
+        MessageDigest md = digest.get();
+        md.update(fingerprint);
+        for (String part : parts) {
+            byte[] bytes = part == null ? new byte[0] : part.getBytes(StandardCharsets.UTF_8);
+            md.update(ByteBuffer.allocate(4).putInt(bytes.length).array());
+            md.update(bytes);
+        }
+        return md.digest();
+    }
+
+    public static Key key(byte[] fingerprint, String content) {
+        MessageDigest md = digest.get();
+        md.update(fingerprint);
+        ByteBuffer hash = ByteBuffer.wrap(md.digest(content.getBytes(StandardCharsets.UTF_8)));
+        return new Key(hash.getLong(), hash.getLong());
+    }
+
+    public synchronized byte[] get(Key key) throws IOException {
+        long slot = find(key);
+        if (getLong(slot, OFFSET) == 0) {
+            misses++;
+            return null;
+        }
+
+        int length = getInt(slot, LENGTH);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + length);
+        long position = getLong(slot, OFFSET);
+        while (record.hasRemaining())
+            if (data.read(record, position + record.position()) < 0)
+                break;
+        record.flip();
+        if (record.remaining() < RECORD_HEADER + length
+                || record.getLong() != key.high || record.getLong() != key.low || record.getInt() != length) {
+            // the index does not match the data file, the result is measured and added again
+            logger.warning("Result cache entry does not match its key, it is measured again: " + directory);
+            misses++;
+            return null;
+        }
+        hits++;
+        putInt(slot, GENERATION, generation);
+        byte[] value = new byte[length];
+        record.get(value);
+        return value;
+    }
+
+    public synchronized void put(Key key, byte[] value) throws IOException {
+        if (full)
+            return;
+        if (count >= maxEntries) {
+            evict();
+            if (full)
+                return;
+        }
+
+        long slot = find(key);
+        if (getLong(slot, OFFSET) == 0)
+            count++;
+        else
+            liveBytes -= RECORD_HEADER + getInt(slot, LENGTH);
+
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + value.length);
+        record.putLong(key.high).putLong(key.low).putInt(value.length).put(value).flip();
+        while (record.hasRemaining())
+            data.write(record, dataEnd + record.position());
+        setSlot(slot, key.high, key.low, dataEnd, value.length, generation);
+        dataEnd += RECORD_HEADER + value.length;
+        liveBytes += RECORD_HEADER + value.length;
+    }
+
+    /**
+     * @return the slot holding the key, or the empty slot where it should be added
+     */
+    private long find(Key key) {
+        long mask = capacity - 1;
+        for (long slot = key.high & mask; ; slot = (slot + 1) & mask) {
+            if (getLong(slot, OFFSET) == 0)
+                return slot;
+            if (getLong(slot, 0) == key.high && getLong(slot, KEY_LOW) == key.low)
+                return slot;
+        }
+    }
+
+    /**
+     * Evict the oldest generations until the cache is half full, without evicting results of the current run.
+     */
+    private void evict() throws IOException {
+        TreeMap<Integer, Long> generations = new TreeMap<>();
+        for (long slot = 0; slot < capacity; slot++)
+            if (getLong(slot, OFFSET) != 0)
+                generations.merge(getInt(slot, GENERATION), 1L, Long::sum);
+
+        long remaining = count;
+        int minGeneration = generation;
+        for (var entry : generations.entrySet()) {
+            if (remaining <= maxEntries / 2 || entry.getKey() >= generation) {
+                minGeneration = entry.getKey();
+                break;
+            }
+            remaining -= entry.getValue();
+        }
+
+        if (remaining >= maxEntries) {
+            full = true;
+            logger.warning(String.format("Result cache is full with %s entries of this run, new results are not cached. ", remaining));
+            return;
+        }
+        rebuild(capacity, minGeneration);
+    }
+
+    /**
+     * Rebuild the table from the current index file, keeping the entries of at least a generation.
+     */
+    private void rebuild(long oldCapacity, int minGeneration) throws IOException {
+        Path index = directory.resolve("index.bin");
+        Path old = directory.resolve("index.old");
+        Files.move(index, old, StandardCopyOption.REPLACE_EXISTING);
+        MappedByteBuffer[] oldSegments = map(old, oldCapacity, false);
+
+        segments = map(index, capacity, true);
+        count = 0;
+        liveBytes = 0;
+        for (long slot = 0; slot < oldCapacity && count < maxEntries; slot++) {
+            MappedByteBuffer segment = oldSegments[(int) (slot >>> SEGMENT_BITS)];
+            int position = (int) ((slot & (SLOTS_PER_SEGMENT - 1)) * SLOT);
+            long offset = segment.getLong(position + OFFSET);
+            int entryGeneration = segment.getInt(position + GENERATION);
+            if (offset == 0 || entryGeneration < minGeneration)
+                continue;
+
+            Key key = new Key(segment.getLong(position), segment.getLong(position + KEY_LOW));
+            int length = segment.getInt(position + LENGTH);
+            setSlot(find(key), key.high, key.low, offset, length, entryGeneration);
+            count++;
+            liveBytes += RECORD_HEADER + length;
+        }
+        Files.delete(old);
+    }
+
+    private static MappedByteBuffer[] map(Path file, long capacity, boolean create) throws IOException {
+        int n = (int) Math.max(1, capacity >>> SEGMENT_BITS);
+        MappedByteBuffer[] segments = new MappedByteBuffer[n];
+        FileChannel.MapMode mode = create ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+        try (FileChannel channel = create
+                ? FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(file, StandardOpenOption.READ)) {
+            long segmentSize = Math.min(capacity, SLOTS_PER_SEGMENT) * SLOT;
+            for (int i = 0; i < n; i++)
+                segments[i] = channel.map(mode, i * segmentSize, segmentSize);
+        }
+        return segments;
+    }
+
+    private long getLong(long slot, int field) {
+        return getLong(segments, slot, field);
+    }
+
+    private int getInt(long slot, int field) {
+        return getInt(segments, slot, field);
+    }
+
+    private static long getLong(MappedByteBuffer[] segments, long slot, int field) {
+        return segments[(int) (slot >>> SEGMENT_BITS)].getLong((int) ((slot & (SLOTS_PER_SEGMENT - 1)) * SLOT) + field);
+    }
+
+    private static int getInt(MappedByteBuffer[] segments, long slot, int field) {
+        return segments[(int) (slot >>> SEGMENT_BITS)].getInt((int) ((slot & (SLOTS_PER_SEGMENT - 1)) * SLOT) + field);
+    }
+
+    private void putInt(long slot, int field, int value) {
+        segments[(int) (slot >>> SEGMENT_BITS)].putInt((int) ((slot & (SLOTS_PER_SEGMENT - 1)) * SLOT) + field, value);
+    }
+
+    private void setSlot(long slot, long high, long low, long offset, int length, int entryGeneration) {
+        MappedByteBuffer segment = segments[(int) (slot >>> SEGMENT_BITS)];
+        int position = (int) ((slot & (SLOTS_PER_SEGMENT - 1)) * SLOT);
+        segment.putLong(position, high);
+        segment.putLong(position + KEY_LOW, low);
+        segment.putLong(position + OFFSET, offset);
+        segment.putInt(position + LENGTH, length);
+        segment.putInt(position + GENERATION, entryGeneration);
+    }
+
+    /**
+     * Copy the results still in the table to a new data file, with a new index pointing into it, when most of the
+     * data file is no longer used. Both are complete before they replace the old files by renames. When the process
+     * stops between the renames, the records of the data file do not match the index, and are measured again.
+     */
+    synchronized void compact() throws IOException {
+        Path compactedData = directory.resolve("data.new");
+        Path compactedIndex = directory.resolve("index.new");
+        Files.deleteIfExists(compactedIndex);
+        MappedByteBuffer[] oldSegments = segments;
+        FileChannel out = FileChannel.open(compactedData,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        long end = DATA_START;
+        try {
+            out.write(ByteBuffer.wrap(MAGIC), 0);
+            segments = map(compactedIndex, capacity, true);
+            count = 0;
+            liveBytes = 0;
+            long dataSize = data.size();
+            for (long slot = 0; slot < capacity; slot++) {
+                long offset = getLong(oldSegments, slot, OFFSET);
+                int length = getInt(oldSegments, slot, LENGTH);
+                // a record beyond the end of the data file was lost, e.g. when the system crashed
+                if (offset == 0 || offset + RECORD_HEADER + length > dataSize)
+                    continue;
+                long copied = 0;
+                while (copied < RECORD_HEADER + length)
+                    copied += data.transferTo(offset + copied, RECORD_HEADER + length - copied, out.position(end + copied));
+                Key key = new Key(getLong(oldSegments, slot, 0), getLong(oldSegments, slot, KEY_LOW));
+                setSlot(find(key), key.high, key.low, end, length, getInt(oldSegments, slot, GENERATION));
+                count++;
+                liveBytes += RECORD_HEADER + length;
+                end += RECORD_HEADER + length;
+            }
+            out.force(true);
+            for (MappedByteBuffer segment : segments)
+                segment.force();
+        } catch (IOException | RuntimeException e) {
+            segments = oldSegments;
+            out.close();
+            throw e;
+        }
+
+        Files.move(compactedData, directory.resolve("data.bin"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.move(compactedIndex, directory.resolve("index.bin"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        data.close();
+        data = out;
+        dataEnd = end;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        // closed when the assessment ends, and again when the process is stopped while following
+        if (closed)
+            return;
+        closed = true;
+        try {
+            for (MappedByteBuffer segment : segments)
+                segment.force();
+            if (dataEnd - DATA_START > 2 * liveBytes + (64 << 20))
+                compact();
+        } finally {
+            data.close();
+            lock.close();
+        }
+        logger.info(String.format("Result cache: %s hits, %s misses, %s entries. ", hits, misses, count));
+    }
+
+    public static byte[] serialize(Object value) throws NotSerializableException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        } catch (NotSerializableException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static Object deserialize(byte[] value) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(value))) {
+            return in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Invalid cache entry", e);
+        }
+    }
+
+    public static final class Key {
+        private final long high;
+        private final long low;
+
+        public Key(long high, long low) {
+            this.high = high;
+            this.low = low;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package be.meemoo.metrics;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Throughput and latency of every stage of the assessments in this process. Registered as MBeans under
+ * be.meemoo.mqa, and written as JSON by a {@link MetricsReporter}.
+ */
+public class AssessmentMetrics implements AssessmentMetricsMBean {
+
+    private static final Logger logger = Logger.getLogger(AssessmentMetrics.class.getCanonicalName());
+
+    private static final String DOMAIN = "be.meemoo.mqa";
+    private static final AssessmentMetrics instance = new AssessmentMetrics();
+
+    // reading records from the input, the bytes are those of the input files
+    private final Stage read = new Stage("read");
+    // decompressing the input, counted per block on the read ahead thread
+    private final Stage decompress = new Stage("decompress");
+    private final Stage measure = new Stage("measure");
+    // results of records found in the result cache, which are not measured
+    private final Stage cache = new Stage("cache");
+    private final Stage write = new Stage("write");
+
+    private final long start = System.nanoTime();
+    private boolean registered = false;
+
+    public static AssessmentMetrics get() {
+        return instance;
+    }
+
+    public Stage getRead() {
+        return read;
+    }
+
+    public Stage getDecompress() {
+        return decompress;
+    }
+
+    public Stage getMeasure() {
+        return measure;
+    }
+
+    public Stage getCache() {
+        return cache;
+    }
+
+    public Stage getWrite() {
+        return write;
+    }
+
+    public List<Stage> getStages() {
+        return List.of(read, decompress, measure, cache, write);
+    }
+
+    public synchronized void register() {
+        if (registered)
+            return;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(this, new ObjectName(DOMAIN + ":type=Assessment"));
+            for (Stage stage : getStages())
+                server.registerMBean(stage, new ObjectName(DOMAIN + ":type=Stage,name=" + stage.getName()));
+            registered = true;
+        } catch (JMException e) {
+            logger.warning("Metrics are not available through JMX: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public long getRecords() {
+        return write.getCount();
+    }
+
+    @Override
+    public double getRecordsPerSecond() {
+        double elapsed = getElapsedSeconds();
+        return elapsed == 0 ? 0 : getRecords() / elapsed;
+    }
+
+    @Override
+    public long getBytesRead() {
+        return read.getBytes();
+    }
+
+    @Override
+    public double getElapsedSeconds() {
+        return (System.nanoTime() - start) / 1e9;
+    }
+
+    public void writeJson(Writer writer) throws IOException {
+        JsonGenerator generator = new JsonFactory().createGenerator(writer);
+        generator.writeStartObject();
+        generator.writeStringField("timestamp", Instant.now().toString());
+        generator.writeNumberField("elapsedSeconds", getElapsedSeconds());
+        generator.writeNumberField("records", getRecords());
+        generator.writeNumberField("recordsPerSecond", getRecordsPerSecond());
+        generator.writeNumberField("bytesRead", getBytesRead());
+        generator.writeObjectFieldStart("stages");
+        for (Stage stage : getStages()) {
+            generator.writeObjectFieldStart(stage.getName());
+            generator.writeNumberField("count", stage.getCount());
+            generator.writeNumberField("totalSeconds", stage.getTotalSeconds());
+            generator.writeNumberField("meanMicros", stage.getMeanMicros());
+            generator.writeNumberField("p50Micros", stage.getP50Micros());
+            generator.writeNumberField("p99Micros", stage.getP99Micros());
+            generator.writeNumberField("maxMicros", stage.getMaxMicros());
+            generator.writeNumberField("bytes", stage.getBytes());
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+        generator.writeEndObject();
+        generator.flush();
+    }
+}
@@ -0,0 +1,12 @@
+package be.meemoo.metrics;
+
+public interface AssessmentMetricsMBean {
+
+    long getRecords();
+
+    double getRecordsPerSecond();
+
+    long getBytesRead();
+
+    double getElapsedSeconds();
+}
@@ -0,0 +1,73 @@
+package be.meemoo.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts durations in nanoseconds in log-linear buckets: 8 buckets per power of two, so percentiles are estimated
+ * within 12.5%. Recording is lock free and allocation free.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // values below this are counted exactly
+    private static final int LINEAR = 2 * SUB_BUCKETS;
+    private static final int BUCKETS = LINEAR + (63 - 4) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    public void record(long nanos) {
+        counts.incrementAndGet(getBucket(Math.max(0, nanos)));
+    }
+
+    static int getBucket(long value) {
+        if (value < LINEAR)
+            return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR + (exponent - 4) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return the highest value counted in a bucket
+     */
+    static long getUpperBound(int bucket) {
+        if (bucket < LINEAR)
+            return bucket;
+        int exponent = (bucket - LINEAR) / SUB_BUCKETS + 4;
+        long subBucket = (bucket - LINEAR) % SUB_BUCKETS;
+        return ((SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++)
+            count += counts.get(i);
+        return count;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the upper bound of the bucket holding the percentile, or 0 when nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        long count = getCount();
+        if (count == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank)
+                return getUpperBound(i);
+        }
+        return getUpperBound(BUCKETS - 1);
+    }
+
+    public long getMax() {
+        for (int i = BUCKETS - 1; i >= 0; i--)
+            if (counts.get(i) > 0)
+                return getUpperBound(i);
+        return 0;
+    }
+}
@@ -0,0 +1,60 @@
+package be.meemoo.metrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Writes the metrics to a JSON file every number of seconds, and once more when closed. The file is replaced
+ * atomically, so it can be read at any time.
+ */
+public class MetricsReporter implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(MetricsReporter.class.getCanonicalName());
+
+    private final AssessmentMetrics metrics;
+    private final Path file;
+    private final ScheduledExecutorService scheduler;
+
+    public MetricsReporter(AssessmentMetrics metrics, Path file, long seconds) {
+        this.metrics = metrics;
+        this.file = file;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "mqa-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::report, seconds, seconds, TimeUnit.SECONDS);
+    }
+
+    private void report() {
+        try {
+            write();
+        } catch (IOException e) {
+            logger.warning("Metrics could not be written: " + e.getMessage());
+        }
+    }
+
+    private synchronized void write() throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            metrics.writeJson(writer);
+            writer.write('\n');
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        scheduler.shutdownNow();
+        write();
+    }
+}
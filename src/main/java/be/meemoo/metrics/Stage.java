@@ -0,0 +1,73 @@
+package be.meemoo.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Time and bytes spent in one stage of an assessment, like reading or measuring records.
+ */
+public class Stage implements StageMBean {
+
+    private final String name;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    public Stage(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Count a call of the stage that started at a {@link System#nanoTime()}.
+     */
+    public void record(long start) {
+        long elapsed = System.nanoTime() - start;
+        count.increment();
+        nanos.add(elapsed);
+        histogram.record(elapsed);
+    }
+
+    public void addBytes(long n) {
+        bytes.add(n);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public double getTotalSeconds() {
+        return nanos.sum() / 1e9;
+    }
+
+    @Override
+    public double getMeanMicros() {
+        long count = getCount();
+        return count == 0 ? 0 : nanos.sum() / 1e3 / count;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return histogram.getPercentile(50) / 1e3;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return histogram.getPercentile(99) / 1e3;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return histogram.getMax() / 1e3;
+    }
+
+    @Override
+    public long getBytes() {
+        return bytes.sum();
+    }
+}
@@ -0,0 +1,18 @@
+package be.meemoo.metrics;
+
+public interface StageMBean {
+
+    long getCount();
+
+    double getTotalSeconds();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP99Micros();
+
+    double getMaxMicros();
+
+    long getBytes();
+}
@@ -0,0 +1,249 @@
+package be.meemoo.pipeline;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Sorts rows by their id with bounded memory. The rows are cut in chunks of an estimated number of bytes, which are
+ * sorted on a pool of threads and written to temporary files as sorted runs, and the runs are merged as they are read
+ * back. At most a chunk per thread is waiting to be sorted, besides the chunk being filled. Rows with the same id keep
+ * their order.
+ */
+public class ExternalSort implements Closeable {
+
+    private static final Comparator<Row> BY_ID = Comparator.comparing(Row::getId);
+
+    private final ExecutorService executor;
+    private final long chunkBytes;
+    // bounds the chunks in memory that are not yet written
+    private final Semaphore chunks;
+
+    private List<Row> chunk = new ArrayList<>();
+    private long bytes;
+    private final List<Future<Path>> runs = new ArrayList<>();
+    private final List<RunReader> readers = new ArrayList<>();
+    private Path directory;
+
+    /**
+     * @param chunkBytes the estimated size in memory of the rows of a chunk. A chunk holds at least one row.
+     */
+    public ExternalSort(ExecutorService executor, int threads, long chunkBytes) {
+        if (chunkBytes < 1)
+            throw new IllegalArgumentException("A chunk should hold at least a byte: " + chunkBytes);
+        this.executor = executor;
+        this.chunkBytes = chunkBytes;
+        this.chunks = new Semaphore(threads);
+    }
+
+    public void add(Row row) throws IOException {
+        chunk.add(row);
+        bytes += row.size();
+        if (bytes >= chunkBytes)
+            spill();
+    }
+
+    /**
+     * Sort the current chunk on the pool and write it as a run, once there is room for another chunk.
+     */
+    private void spill() throws IOException {
+        if (directory == null)
+            directory = Files.createTempDirectory("mqa-sort");
+        try {
+            chunks.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Sort interrupted", e);
+        }
+        List<Row> rows = chunk;
+        Path path = directory.resolve(String.valueOf(runs.size()));
+        chunk = new ArrayList<>();
+        bytes = 0;
+        runs.add(executor.submit(() -> {
+            try {
+                rows.sort(BY_ID);
+                writeRun(rows, path);
+                return path;
+            } finally {
+                chunks.release();
+            }
+        }));
+    }
+
+    /**
+     * @return the rows added, ordered by id. The rows of a single chunk are sorted in memory.
+     */
+    public Iterator<Row> sorted() throws IOException {
+        if (runs.isEmpty()) {
+            chunk.sort(BY_ID);
+            return chunk.iterator();
+        }
+        if (!chunk.isEmpty())
+            spill();
+        chunk = null;
+
+        PriorityQueue<RunReader> queue = new PriorityQueue<>(
+                Comparator.comparing((RunReader reader) -> reader.row.getId()).thenComparingInt(reader -> reader.run));
+        for (int i = 0; i < runs.size(); i++) {
+            RunReader reader = new RunReader(getRun(i), i);
+            readers.add(reader);
+            if (reader.advance())
+                queue.add(reader);
+        }
+
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !queue.isEmpty();
+            }
+
+            @Override
+            public Row next() {
+                RunReader reader = queue.poll();
+                if (reader == null)
+                    throw new NoSuchElementException();
+                Row row = reader.row;
+                try {
+                    if (reader.advance())
+                        queue.add(reader);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Failed reading a sorted run", e);
+                }
+                return row;
+            }
+        };
+    }
+
+    private Path getRun(int run) throws IOException {
+        try {
+            return runs.get(run).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Sort interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed sorting a chunk", e.getCause());
+        }
+    }
+
+    private static void writeRun(List<Row> rows, Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+            for (Row row : rows) {
+                out.writeInt(row.values.length);
+                writeString(out, row.id);
+                for (String value : row.values)
+                    writeString(out, value);
+            }
+        }
+    }
+
+    // strings are written as their length in bytes, unlike writeUTF not limited to 64K
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0)
+            return null;
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (RunReader reader : readers)
+            reader.in.close();
+        if (directory == null)
+            return;
+        for (int i = 0; i < runs.size(); i++)
+            Files.deleteIfExists(getRun(i));
+        Files.delete(directory);
+    }
+
+    /**
+     * A row of values with the id it is sorted by.
+     */
+    public static class Row {
+        private final String id;
+        private final String[] values;
+
+        public Row(String id, String[] values) {
+            this.id = id == null ? "" : id;
+            this.values = values;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String[] getValues() {
+            return values;
+        }
+
+        /**
+         * The estimated size in memory: the row, its array and its strings, and a reference in the chunk.
+         */
+        long size() {
+            long size = 24 + 16 + 4L * values.length + size(id) + 4;
+            for (String value : values)
+                size += size(value);
+            return size;
+        }
+
+        private static long size(String value) {
+            // a string and its array, with a byte per character for most results
+            return value == null ? 0 : 40 + value.length();
+        }
+    }
+
+    private static class RunReader {
+        private final DataInputStream in;
+        private final int run;
+        private Row row;
+
+        private RunReader(Path path, int run) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16));
+            this.run = run;
+        }
+
+        private boolean advance() throws IOException {
+            int size;
+            try {
+                size = in.readInt();
+            } catch (EOFException e) {
+                row = null;
+                return false;
+            }
+            String id = readString(in);
+            String[] values = new String[size];
+            for (int i = 0; i < size; i++)
+                values[i] = readString(in);
+            row = new Row(id, values);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package be.meemoo.pipeline;
+
+import be.meemoo.reader.RecordReader;
+import be.meemoo.writer.ResultWriter;
+import com.opencsv.exceptions.CsvValidationException;
+import de.gwdg.metadataqa.api.calculator.CalculatorFacade;
+import de.gwdg.metadataqa.api.interfaces.MetricResult;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Assesses many input files on a pool of workers, each reading and measuring one file at a time with its own
+ * calculator. The results are either written by the calling thread to one output, in the order they are measured,
+ * or by the workers to an output per file.
+ */
+public class FilePipeline {
+
+    private static final Logger logger = Logger.getLogger(FilePipeline.class.getCanonicalName());
+
+    private static final int RECORDS_PER_WORKER = 256;
+    // workers that write their own output report their progress per number of records
+    private static final int PROGRESS_RECORDS = 1000;
+
+    public interface ReaderFactory {
+        RecordReader<?> open(Path file, CalculatorFacade calculator) throws IOException, CsvValidationException;
+    }
+
+    public interface WriterFactory {
+        ResultWriter open(Path file) throws IOException;
+    }
+
+    private final List<Path> files;
+    private final ReaderFactory readerFactory;
+    private final Supplier<CalculatorFacade> calculatorFactory;
+    private final int threads;
+
+    private final AtomicInteger nextFile = new AtomicInteger();
+    private final AtomicInteger finishedFiles = new AtomicInteger();
+    private final BlockingQueue<Result> results;
+    private final List<Thread> workers = new ArrayList<>();
+
+    public FilePipeline(List<Path> files, ReaderFactory readerFactory, Supplier<CalculatorFacade> calculatorFactory, int threads) {
+        this.files = files;
+        this.readerFactory = readerFactory;
+        this.calculatorFactory = calculatorFactory;
+        this.threads = Math.min(threads, files.size());
+        this.results = new ArrayBlockingQueue<>(this.threads * RECORDS_PER_WORKER);
+    }
+
+    /**
+     * Run the pipeline until all files are assessed, writing all results to one output.
+     *
+     * @return the number of records written
+     */
+    public long run(ResultWriter writer) throws IOException {
+        return assess(file -> null, writer);
+    }
+
+    /**
+     * Run the pipeline until all files are assessed, writing the results of every file to its own output.
+     *
+     * @return the number of records written
+     */
+    public long run(WriterFactory writerFactory, List<String> header) throws IOException {
+        return assess(file -> {
+            ResultWriter writer = writerFactory.open(file);
+            writer.writeHeader(header);
+            return writer;
+        }, null);
+    }
+
+    private long assess(WriterFactory writerFactory, ResultWriter writer) throws IOException {
+        for (int i = 0; i < threads; i++) {
+            CalculatorFacade calculator = calculatorFactory.get();
+            workers.add(new Thread(() -> assessFiles(calculator, writerFactory), "mqa-files-" + i));
+        }
+        workers.forEach(Thread::start);
+
+        try {
+            return collectResults(writer);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Assessment interrupted", e);
+        } finally {
+            workers.forEach(Thread::interrupt);
+        }
+    }
+
+    private void assessFiles(CalculatorFacade calculator, WriterFactory writerFactory) {
+        try {
+            for (int i = nextFile.getAndIncrement(); i < files.size(); i = nextFile.getAndIncrement()) {
+                Path file = files.get(i);
+                try (RecordReader<?> reader = readerFactory.open(file, calculator)) {
+                    ResultWriter writer = writerFactory.open(file);
+                    long records = writer == null
+                                 ? measureRecords(reader, calculator)
+                                 : writeRecords(reader, calculator, writer);
+                    logger.info(String.format("Assessed %s records of %s (%s of %s files). ",
+                            records, file, finishedFiles.incrementAndGet(), files.size()));
+                } catch (IOException | CsvValidationException e) {
+                    throw new IllegalStateException("Assessment of " + file + " failed", e);
+                }
+            }
+            results.put(Result.DONE);
+        } catch (InterruptedException e) {
+            // the pipeline was stopped
+        } catch (RuntimeException e) {
+            try {
+                results.put(new Result(null, 0, e));
+            } catch (InterruptedException ignored) {
+                // the pipeline was already stopped
+            }
+        }
+    }
+
+    private <T> long measureRecords(RecordReader<T> reader, CalculatorFacade calculator) throws InterruptedException {
+        reader.configure(calculator);
+        long records = 0;
+        while (reader.hasNext()) {
+            results.put(new Result(reader.measure(calculator, reader.read()), 1, null));
+            records++;
+        }
+        return records;
+    }
+
+    private <T> long writeRecords(RecordReader<T> reader, CalculatorFacade calculator, ResultWriter writer) throws IOException, InterruptedException {
+        reader.configure(calculator);
+        long records = 0;
+        boolean completed = false;
+        try {
+            while (reader.hasNext()) {
+                writer.writeResult(reader.measure(calculator, reader.read()));
+                records++;
+                if (records % PROGRESS_RECORDS == 0)
+                    results.put(new Result(null, PROGRESS_RECORDS, null));
+            }
+            completed = true;
+        } finally {
+            // the output of a file whose assessment failed is not completed
+            if (completed)
+                writer.close();
+            else
+                writer.abort();
+        }
+        if (records % PROGRESS_RECORDS > 0)
+            results.put(new Result(null, records % PROGRESS_RECORDS, null));
+        return records;
+    }
+
+    /**
+     * Write the results measured by the workers, or only count them when the workers write them.
+     */
+    private long collectResults(ResultWriter writer) throws IOException, InterruptedException {
+        long written = 0;
+        long logged = 0;
+        int finishedWorkers = 0;
+        while (finishedWorkers < threads) {
+            Result result = results.take();
+            if (result.failure != null)
+                throw new IOException("Measurement failed after " + written + " records", result.failure);
+            if (result == Result.DONE) {
+                finishedWorkers++;
+                continue;
+            }
+
+            if (result.measurement != null)
+                writer.writeResult(result.measurement);
+            written += result.records;
+            if (written - logged >= 50) {
+                logged = written - written % 50;
+                logger.info(String.format("Processed %s records. ", written));
+            }
+        }
+        return written;
+    }
+
+    private static class Result {
+        // marks that a worker has no more files to assess
+        private static final Result DONE = new Result(null, 0, null);
+
+        private final Map<String, List<MetricResult>> measurement;
+        private final long records;
+        private final RuntimeException failure;
+
+        private Result(Map<String, List<MetricResult>> measurement, long records, RuntimeException failure) {
+            this.measurement = measurement;
+            this.records = records;
+            this.failure = failure;
+        }
+    }
+}
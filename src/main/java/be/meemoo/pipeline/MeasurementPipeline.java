@@ -0,0 +1,193 @@
+package be.meemoo.pipeline;
+
+import be.meemoo.reader.RecordReader;
+import be.meemoo.writer.ResultWriter;
+import de.gwdg.metadataqa.api.calculator.CalculatorFacade;
+import de.gwdg.metadataqa.api.interfaces.MetricResult;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Runs an assessment as three stages: one thread reading records, a pool of workers measuring them, and the
+ * calling thread writing the results. Every worker measures with its own calculator.
+ */
+public class MeasurementPipeline<T> {
+
+    private static final Logger logger = Logger.getLogger(MeasurementPipeline.class.getCanonicalName());
+
+    // number of records that can be in flight per worker
+    private static final int RECORDS_PER_WORKER = 256;
+
+    private final RecordReader<T> reader;
+    private final Supplier<CalculatorFacade> calculatorFactory;
+    private final ResultWriter writer;
+    private final int threads;
+    private final boolean ordered;
+
+    private final BlockingQueue<Task<T>> tasks;
+    private final BlockingQueue<Task<T>> results;
+    // bounds the records read but not yet written, including the ones waiting to be reordered
+    private final Semaphore inFlight;
+    private final List<Thread> stages = new ArrayList<>();
+
+    public MeasurementPipeline(RecordReader<T> reader, Supplier<CalculatorFacade> calculatorFactory,
+                               ResultWriter writer, int threads, boolean ordered) {
+        this.reader = reader;
+        this.calculatorFactory = calculatorFactory;
+        this.writer = writer;
+        this.threads = threads;
+        this.ordered = ordered;
+
+        int capacity = threads * RECORDS_PER_WORKER;
+        this.tasks = new ArrayBlockingQueue<>(capacity);
+        this.results = new ArrayBlockingQueue<>(capacity);
+        this.inFlight = new Semaphore(capacity);
+    }
+
+    public static <T> MeasurementPipeline<T> of(RecordReader<T> reader, Supplier<CalculatorFacade> calculatorFactory,
+                                                ResultWriter writer, int threads, boolean ordered) {
+        return new MeasurementPipeline<>(reader, calculatorFactory, writer, threads, ordered);
+    }
+
+    /**
+     * Run the pipeline until the input is exhausted.
+     *
+     * @return the number of records written
+     */
+    public long run() throws IOException {
+        stages.add(new Thread(this::readRecords, "mqa-reader"));
+        for (int i = 0; i < threads; i++) {
+            // calculators are created up front, so configuration errors surface before reading starts
+            CalculatorFacade calculator = reader.configure(calculatorFactory.get());
+            stages.add(new Thread(() -> measureRecords(calculator), "mqa-worker-" + i));
+        }
+        stages.forEach(Thread::start);
+
+        try {
+            return writeResults();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Assessment interrupted", e);
+        } finally {
+            stages.forEach(Thread::interrupt);
+        }
+    }
+
+    private void readRecords() {
+        long sequence = 0;
+        try {
+            while (reader.hasNext()) {
+                inFlight.acquire();
+                tasks.put(new Task<>(sequence++, reader.read()));
+            }
+            for (int i = 0; i < threads; i++)
+                tasks.put(Task.end());
+        } catch (InterruptedException e) {
+            // the writer stopped the pipeline
+        } catch (Throwable e) {
+            // errors too, or the writer would wait for the stage forever
+            fail(e);
+        }
+    }
+
+    private void measureRecords(CalculatorFacade calculator) {
+        try {
+            while (true) {
+                Task<T> task = tasks.take();
+                if (task.isEnd()) {
+                    results.put(task);
+                    return;
+                }
+                task.result = reader.measure(calculator, task.record);
+                task.record = null;
+                results.put(task);
+            }
+        } catch (InterruptedException e) {
+            // the writer stopped the pipeline
+        } catch (Throwable e) {
+            // errors too, or the writer would wait for the stage forever
+            fail(e);
+        }
+    }
+
+    private void fail(Throwable e) {
+        try {
+            results.put(Task.failed(e));
+        } catch (InterruptedException ignored) {
+            // the writer already stopped the pipeline
+        }
+    }
+
+    private long writeResults() throws IOException, InterruptedException {
+        Map<Long, Task<T>> pending = new HashMap<>();
+        long written = 0;
+        int finishedWorkers = 0;
+
+        while (finishedWorkers < threads) {
+            Task<T> task = results.take();
+            if (task.failure instanceof Error)
+                throw (Error) task.failure;
+            if (task.failure != null)
+                throw new IOException("Measurement failed after " + written + " records", task.failure);
+            if (task.isEnd()) {
+                finishedWorkers++;
+                continue;
+            }
+
+            if (!ordered) {
+                write(task, ++written);
+                continue;
+            }
+
+            // hold back results until all records before them are written
+            pending.put(task.sequence, task);
+            while ((task = pending.remove(written)) != null)
+                write(task, ++written);
+        }
+        return written;
+    }
+
+    private void write(Task<T> task, long counter) throws IOException {
+        writer.writeResult(task.result);
+        inFlight.release();
+
+        if (counter % 50 == 0) {
+            logger.info(String.format("Processed %s records. ", counter));
+        }
+    }
+
+    private static class Task<T> {
+        private final long sequence;
+        private T record;
+        private Map<String, List<MetricResult>> result;
+        private Throwable failure;
+
+        private Task(long sequence, T record) {
+            this.sequence = sequence;
+            this.record = record;
+        }
+
+        private static <T> Task<T> end() {
+            return new Task<>(-1, null);
+        }
+
+        private static <T> Task<T> failed(Throwable failure) {
+            Task<T> task = new Task<>(-1, null);
+            task.failure = failure;
+            return task;
+        }
+
+        private boolean isEnd() {
+            return sequence == -1 && failure == null;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package be.meemoo.pipeline;
+
+import be.meemoo.reader.RecordReader;
+import be.meemoo.writer.ResultWriter;
+import de.gwdg.metadataqa.api.calculator.CalculatorFacade;
+import de.gwdg.metadataqa.api.interfaces.MetricResult;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Reads and measures every part of a split input on its own thread, while the calling thread writes the results in
+ * the order they are measured.
+ */
+public class SplitPipeline {
+
+    private static final Logger logger = Logger.getLogger(SplitPipeline.class.getCanonicalName());
+
+    private static final int RECORDS_PER_WORKER = 256;
+
+    private final List<? extends RecordReader<?>> readers;
+    private final Supplier<CalculatorFacade> calculatorFactory;
+    private final ResultWriter writer;
+
+    private final BlockingQueue<Result> results;
+    private final List<Thread> workers = new ArrayList<>();
+
+    public SplitPipeline(List<? extends RecordReader<?>> readers, Supplier<CalculatorFacade> calculatorFactory, ResultWriter writer) {
+        this.readers = readers;
+        this.calculatorFactory = calculatorFactory;
+        this.writer = writer;
+        this.results = new ArrayBlockingQueue<>(readers.size() * RECORDS_PER_WORKER);
+    }
+
+    /**
+     * Run the pipeline until all parts are exhausted.
+     *
+     * @return the number of records written
+     */
+    public long run() throws IOException {
+        for (int i = 0; i < readers.size(); i++) {
+            RecordReader<?> reader = readers.get(i);
+            CalculatorFacade calculator = reader.configure(calculatorFactory.get());
+            workers.add(new Thread(() -> measureRecords(reader, calculator), "mqa-split-" + i));
+        }
+        workers.forEach(Thread::start);
+
+        try {
+            return writeResults();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Assessment interrupted", e);
+        } finally {
+            workers.forEach(Thread::interrupt);
+        }
+    }
+
+    private <T> void measureRecords(RecordReader<T> reader, CalculatorFacade calculator) {
+        // the part is closed once it is read, so the file is closed with the last part
+        try (reader) {
+            while (reader.hasNext())
+                results.put(new Result(reader.measure(calculator, reader.read()), null));
+            results.put(new Result(null, null));
+        } catch (InterruptedException e) {
+            // the writer stopped the pipeline
+        } catch (IOException | RuntimeException e) {
+            try {
+                results.put(new Result(null, e instanceof IOException ? new UncheckedIOException((IOException) e) : (RuntimeException) e));
+            } catch (InterruptedException ignored) {
+                // the writer already stopped the pipeline
+            }
+        }
+    }
+
+    private long writeResults() throws IOException, InterruptedException {
+        long written = 0;
+        int finishedWorkers = 0;
+        while (finishedWorkers < readers.size()) {
+            Result result = results.take();
+            if (result.failure != null)
+                throw new IOException("Measurement failed after " + written + " records", result.failure);
+            if (result.measurement == null) {
+                finishedWorkers++;
+                continue;
+            }
+
+            writer.writeResult(result.measurement);
+            written++;
+            if (written % 50 == 0) {
+                logger.info(String.format("Processed %s records. ", written));
+            }
+        }
+        return written;
+    }
+
+    private static class Result {
+        private final Map<String, List<MetricResult>> measurement;
+        private final RuntimeException failure;
+
+        private Result(Map<String, List<MetricResult>> measurement, RuntimeException failure) {
+            this.measurement = measurement;
+            this.failure = failure;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package be.meemoo.reader;
+
+import de.gwdg.metadataqa.api.calculator.CalculatorFacade;
+import de.gwdg.metadataqa.api.interfaces.MetricResult;
+import de.gwdg.metadataqa.api.schema.Format;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.io.IOUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Reads a ZIP or tar archive of JSON or XML files as records, one record per file, without extracting it. The reader
+ * only takes the entries from the archive, their content is decoded once when a record is measured, on the thread
+ * measuring it. The entries of a ZIP file are also decompressed there, as the file is read at random.
+ */
+public class ArchiveRecordReader extends RecordReader<ArchiveRecordReader.Entry> {
+
+    public static final String ARCHIVE = "archive";
+    public static final String ENTRY = "entry";
+    public static final String HEADER = ARCHIVE + ":" + ENTRY;
+
+    private final Entries entries;
+    private final Function<String, Function<String, String>> fields;
+    private final boolean entryColumn;
+
+    private Entry next;
+
+    private ArchiveRecordReader(Entries entries, CalculatorFacade calculator, boolean entryColumn) {
+        super(null, calculator);
+        this.entries = entries;
+        this.entryColumn = entryColumn;
+        if (calculator.getSchema().getFormat() == Format.XML)
+            this.fields = path -> RecordFields.xpath(path, calculator.getSchema().getNamespaces());
+        else if (calculator.getSchema().getFormat() == Format.JSON)
+            this.fields = RecordFields::jsonPath;
+        else
+            throw new IllegalArgumentException("Only archives of JSON or XML files can be read, a record per file");
+    }
+
+    /**
+     * @param entryColumn whether to add the name of the entry of every record as the first column, archive:entry
+     */
+    public static ArchiveRecordReader ofZip(Path file, CalculatorFacade calculator, boolean entryColumn) throws IOException {
+        ZipFile zip = new ZipFile(file.toFile());
+        Enumeration<? extends ZipEntry> zipEntries = zip.entries();
+        return new ArchiveRecordReader(new Entries() {
+            @Override
+            public Entry next() {
+                while (zipEntries.hasMoreElements()) {
+                    ZipEntry entry = zipEntries.nextElement();
+                    if (isRecord(entry.getName(), entry.isDirectory()))
+                        return new Entry(entry.getName(), () -> {
+                            try (InputStream in = zip.getInputStream(entry)) {
+                                return IOUtils.toByteArray(in);
+                            }
+                        });
+                }
+                return null;
+            }
+
+            @Override
+            public void close() throws IOException {
+                zip.close();
+            }
+        }, calculator, entryColumn);
+    }
+
+    /**
+     * @param in a tar archive, decompressed if it was compressed
+     */
+    public static ArchiveRecordReader ofTar(InputStream in, CalculatorFacade calculator, boolean entryColumn) {
+        TarArchiveInputStream tar = new TarArchiveInputStream(in);
+        return new ArchiveRecordReader(new Entries() {
+            @Override
+            public Entry next() throws IOException {
+                TarArchiveEntry entry;
+                while ((entry = tar.getNextEntry()) != null) {
+                    if (entry.isFile() && isRecord(entry.getName(), false)) {
+                        byte[] content = IOUtils.toByteArray(tar);
+                        return new Entry(entry.getName(), () -> content);
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public void close() throws IOException {
+                tar.close();
+            }
+        }, calculator, entryColumn);
+    }
+
+    /**
+     * Whether an entry is a record, rather than a directory or the metadata macOS adds to archives.
+     */
+    private static boolean isRecord(String name, boolean directory) {
+        String fileName = name.substring(name.lastIndexOf('/') + 1);
+        return !directory && !("/" + name).contains("/__MACOSX/") && !fileName.startsWith("._") && !fileName.isEmpty();
+    }
+
+    /**
+     * Whether the start of a stream, without compression, is a tar archive. The stream is reset afterwards.
+     */
+    public static boolean isTar(InputStream in) throws IOException {
+        // a header block holds the magic and version of every tar format
+        byte[] header = new byte[512];
+        in.mark(header.length);
+        int length = IOUtils.read(in, header);
+        in.reset();
+        return length == header.length && TarArchiveInputStream.matches(header, length);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            try {
+                next = entries.next();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public Entry read() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        Entry entry = next;
+        next = null;
+        return entry;
+    }
+
+    @Override
+    public String asString(Entry record) {
+        // with the entry column the results differ by entry, not only by content
+        return entryColumn ? record.getName() + '\n' + record.getContent() : record.getContent();
+    }
+
+    @Override
+    public Function<Entry, String> getField(String path) {
+        Function<String, String> field = fields.apply(path);
+        return record -> field.apply(record.getContent());
+    }
+
+    @Override
+    public Map<String, List<MetricResult>> measure(CalculatorFacade calculator, Entry record) {
+        Map<String, List<MetricResult>> measurement = calculator.measureAsMetricResult(record.getContent());
+        if (!entryColumn)
+            return measurement;
+        Map<String, List<MetricResult>> result = new LinkedHashMap<>();
+        result.put(ARCHIVE, List.of(new ColumnResult(ARCHIVE, ENTRY, record.getName())));
+        result.putAll(measurement);
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        entries.close();
+    }
+
+    /**
+     * A file in an archive, whose content is read and decoded once, when it is first needed. The bytes are released
+     * after decoding them.
+     */
+    public static class Entry {
+        private final String name;
+        private Content content;
+        private String text;
+
+        private Entry(String name, Content content) {
+            this.name = name;
+            this.content = content;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public synchronized String getContent() {
+            if (text == null) {
+                try {
+                    String decoded = new String(content.read(), StandardCharsets.UTF_8);
+                    // a byte order mark is not part of the record
+                    text = decoded.startsWith("\uFEFF") ? decoded.substring(1) : decoded;
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed reading " + name, e);
+                }
+                content = null;
+            }
+            return text;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private interface Content {
+        byte[] read() throws IOException;
+    }
+
+    private interface Entries extends Closeable {
+        Entry next() throws IOException;
+    }
+}
@@ -12,23 +12,52 @@ import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
-public class CSVRecordReader extends RecordReader {
+public class CSVRecordReader extends RecordReader<List<String>> {
 
-    private final CSVReader csvReader;
     private final Iterator<String[]> csvIterator;
+    private final List<String> header;
 
     public CSVRecordReader(BufferedReader inputReader, CalculatorFacade calculator) throws IOException, CsvValidationException {
-        super(inputReader, calculator);
+        this(inputReader, calculator, null);
+    }
 
-        this.csvReader = new CSVReader(this.inputReader);
-        this.csvIterator = csvReader.iterator();
+    /**
+     * Read CSV records without a header line, e.g. a part of a larger file, using the header that was given.
+     */
+    public CSVRecordReader(BufferedReader inputReader, CalculatorFacade calculator, List<String> header) throws IOException, CsvValidationException {
+        this(inputReader, calculator, header, false);
+    }
+
+    /**
+     * @param tokenize whether to split the records with the built-in tokenizer instead of OpenCSV
+     */
+    public CSVRecordReader(BufferedReader inputReader, CalculatorFacade calculator, List<String> header, boolean tokenize) throws IOException, CsvValidationException {
+        super(inputReader, calculator);
 
         // read header
-        final List<String> header = Arrays.asList(csvReader.readNext());
+        if (tokenize) {
+            CSVTokenizer tokenizer = new CSVTokenizer(this.inputReader);
+            this.header = header != null ? header : Arrays.asList(tokenizer.readNext());
+            this.csvIterator = tokenizer;
+        } else {
+            CSVReader csvReader = new CSVReader(this.inputReader);
+            this.header = header != null ? header : Arrays.asList(csvReader.readNext());
+            this.csvIterator = csvReader.iterator();
+        }
 
+        configure(this.calculator);
+    }
+
+    public List<String> getHeader() {
+        return header;
+    }
+
+    @Override
+    public CalculatorFacade configure(CalculatorFacade calculator) {
         // right now it is a CSV source, so we set how to parse it
-        this.calculator.setCsvReader(
+        return calculator.setCsvReader(
                 new CsvReader().setHeader(header));
     }
 
@@ -38,10 +67,32 @@ public class CSVRecordReader extends RecordReader {
     }
 
     @Override
-    public Map<String, List<MetricResult>> next() {
+    public List<String> read() {
         String[] record = csvIterator.next();
-        final List<String> strings = Arrays.asList(record);
-        return calculator.measureAsMetricResult(strings);
+        return Arrays.asList(record);
+    }
+
+    @Override
+    public String asString(List<String> record) {
+        // length prefixed, so fields containing separators can not be confused
+        StringBuilder sb = new StringBuilder();
+        for (String field : record)
+            sb.append(field.length()).append(':').append(field);
+        return sb.toString();
+    }
+
+    @Override
+    public Function<List<String>, String> getField(String path) {
+        // the path of a CSV field is its column
+        int column = header.indexOf(path);
+        if (column < 0)
+            throw new IllegalArgumentException("Column not found: " + path);
+        return record -> column < record.size() ? record.get(column) : null;
+    }
+
+    @Override
+    public Map<String, List<MetricResult>> measure(CalculatorFacade calculator, List<String> record) {
+        return calculator.measureAsMetricResult(record);
     }
 
 }
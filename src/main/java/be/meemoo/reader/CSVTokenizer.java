@@ -0,0 +1,233 @@
+package be.meemoo.reader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Splits CSV input into records exactly like the default OpenCSV reader, including its quirks: backslashes escape
+ * quotes and backslashes and are otherwise dropped, quotes inside a field are kept, and the lines of a quoted field
+ * are joined by new lines. The input is scanned once in a large buffer instead of line by line, and a field that is
+ * a single run of characters is copied straight from the buffer into its string.
+ */
+public class CSVTokenizer implements Iterator<String[]> {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final char SEPARATOR = ',';
+    private static final char QUOTE = '"';
+    private static final char ESCAPE = '\\';
+
+    private final Reader reader;
+    private char[] buffer;
+    private int position = 0;
+    private int limit = 0;
+    private boolean eof = false;
+
+    // the fields of the current record, reused between records
+    private String[] fields = new String[16];
+    private int count = 0;
+    // the current field, kept as a slice of the buffer until anything else is added to it
+    private final StringBuilder field = new StringBuilder();
+    private int sliceStart = -1;
+    private int sliceEnd;
+    // whether the parser of OpenCSV considers itself inside a field, which decides how quotes are handled
+    private boolean inField;
+
+    private String[] next;
+
+    public CSVTokenizer(Reader reader) {
+        this(reader, BUFFER_SIZE);
+    }
+
+    CSVTokenizer(Reader reader, int bufferSize) {
+        this.reader = reader;
+        this.buffer = new char[bufferSize];
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            try {
+                next = readNext();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public String[] next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        String[] record = next;
+        next = null;
+        return record;
+    }
+
+    /**
+     * @return the fields of the next record, or null at the end of the input
+     */
+    public String[] readNext() throws IOException {
+        count = 0;
+        clearField();
+        inField = false;
+        boolean inQuotes = false;
+        while (true) {
+            int end = findLineEnd();
+            if (end < 0) {
+                if (inQuotes)
+                    throw new IOException("Unterminated quoted field at end of CSV input");
+                return null;
+            }
+            inQuotes = parseLine(position, end, inQuotes);
+            skipLineEnd(end);
+            if (!inQuotes) {
+                addField();
+                return Arrays.copyOf(fields, count);
+            }
+            // the quoted field continues on the next line
+            append('\n');
+        }
+    }
+
+    /**
+     * Parse the fields of a line, continuing a quoted field of the line before if asked.
+     *
+     * @return whether the line ends inside a quoted field
+     */
+    private boolean parseLine(int start, int end, boolean inQuotes) {
+        int i = start;
+        while (i < end) {
+            char c = buffer[i++];
+            if (c == ESCAPE) {
+                inField = true;
+                if (i < end && (buffer[i] == QUOTE || buffer[i] == ESCAPE))
+                    append(buffer[i++]);
+            } else if (c == QUOTE) {
+                if ((inQuotes || inField) && i < end && buffer[i] == QUOTE) {
+                    // a doubled quote
+                    append(buffer[i++]);
+                } else {
+                    inQuotes = !inQuotes;
+                    // a quote that is not next to a separator is part of the field, unless only white space is before it
+                    if (i - start > 2 && buffer[i - 2] != SEPARATOR && i < end && buffer[i] != SEPARATOR) {
+                        if (isWhitespace())
+                            clearField();
+                        else
+                            append(QUOTE);
+                    }
+                }
+                inField = !inField;
+            } else if (c == SEPARATOR && !inQuotes) {
+                addField();
+                inField = false;
+            } else {
+                // copy a run of plain characters at once
+                int run = i - 1;
+                while (i < end && buffer[i] != ESCAPE && buffer[i] != QUOTE && (inQuotes || buffer[i] != SEPARATOR))
+                    i++;
+                append(run, i);
+                inField = true;
+            }
+        }
+        if (!inQuotes)
+            inField = false;
+        return inQuotes;
+    }
+
+    /**
+     * The end of the line at the position, which is either a new line, a carriage return, or the end of the input.
+     * Reads more input until the line and the character after it are in the buffer.
+     *
+     * @return the index of the end of the line, or -1 at the end of the input
+     */
+    private int findLineEnd() throws IOException {
+        int scanned = 0;
+        while (true) {
+            for (int i = position + scanned; i < limit; i++) {
+                char c = buffer[i];
+                // a carriage return is only the end when the character after it is known
+                if (c == '\n' || (c == '\r' && (i + 1 < limit || eof)))
+                    return i;
+            }
+            if (eof)
+                return position < limit ? limit : -1;
+            scanned = Math.max(0, limit - position - 1);
+            fill();
+        }
+    }
+
+    private void skipLineEnd(int end) {
+        if (end == limit)
+            position = limit;
+        else if (buffer[end] == '\r' && end + 1 < limit && buffer[end + 1] == '\n')
+            position = end + 2;
+        else
+            position = end + 1;
+    }
+
+    private void fill() throws IOException {
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+        }
+        // lines longer than the buffer grow it
+        if (limit == buffer.length)
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        int read = reader.read(buffer, limit, buffer.length - limit);
+        if (read < 0)
+            eof = true;
+        else
+            limit += read;
+    }
+
+    private void append(char c) {
+        copySlice();
+        field.append(c);
+    }
+
+    private void append(int start, int end) {
+        if (sliceStart < 0 && field.length() == 0) {
+            sliceStart = start;
+            sliceEnd = end;
+        } else {
+            copySlice();
+            field.append(buffer, start, end - start);
+        }
+    }
+
+    private void copySlice() {
+        if (sliceStart >= 0) {
+            field.append(buffer, sliceStart, sliceEnd - sliceStart);
+            sliceStart = -1;
+        }
+    }
+
+    private void clearField() {
+        field.setLength(0);
+        sliceStart = -1;
+    }
+
+    private boolean isWhitespace() {
+        copySlice();
+        if (field.length() == 0)
+            return false;
+        for (int i = 0; i < field.length(); i++)
+            if (!Character.isWhitespace(field.charAt(i)))
+                return false;
+        return true;
+    }
+
+    private void addField() {
+        if (count == fields.length)
+            fields = Arrays.copyOf(fields, count * 2);
+        fields[count++] = sliceStart >= 0 ? new String(buffer, sliceStart, sliceEnd - sliceStart) : field.toString();
+        clearField();
+    }
+}
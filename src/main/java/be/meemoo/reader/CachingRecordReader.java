@@ -0,0 +1,79 @@
+package be.meemoo.reader;
+
+import be.meemoo.cache.ResultCache;
+import be.meemoo.metrics.Stage;
+import de.gwdg.metadataqa.api.calculator.CalculatorFacade;
+import de.gwdg.metadataqa.api.interfaces.MetricResult;
+
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Reuses the results of records that were measured before, looking them up in a result cache by their content. The
+ * results found in the cache are counted in a stage of their own.
+ */
+public class CachingRecordReader<T> extends ForwardingRecordReader<T> {
+
+    private static final Logger logger = Logger.getLogger(CachingRecordReader.class.getCanonicalName());
+
+    private final ResultCache cache;
+    private final byte[] fingerprint;
+    private final Stage hits;
+    private volatile boolean serializable = true;
+
+    /**
+     * @param fingerprint identifies the schema and measurement configuration, see {@link ResultCache#fingerprint}
+     * @param hits the stage counting the results found in the cache
+     */
+    public CachingRecordReader(RecordReader<T> reader, ResultCache cache, byte[] fingerprint, Stage hits) {
+        super(reader);
+        this.cache = cache;
+        this.fingerprint = fingerprint;
+        this.hits = hits;
+    }
+
+    public static <T> CachingRecordReader<T> of(RecordReader<T> reader, ResultCache cache, byte[] fingerprint, Stage hits) {
+        return new CachingRecordReader<>(reader, cache, fingerprint, hits);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<String, List<MetricResult>> measure(CalculatorFacade calculator, T record) {
+        long start = System.nanoTime();
+        ResultCache.Key key = ResultCache.key(fingerprint, reader.asString(record));
+        byte[] cached;
+        try {
+            cached = cache.get(key);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (cached != null) {
+            try {
+                Map<String, List<MetricResult>> result = (Map<String, List<MetricResult>>) ResultCache.deserialize(cached);
+                hits.record(start);
+                return result;
+            } catch (IOException e) {
+                // e.g. cached by an incompatible version of the classes of the results, it is measured again
+                logger.fine("Cached result can not be read, it is measured again: " + e.getMessage());
+            }
+        }
+
+        Map<String, List<MetricResult>> result = reader.measure(calculator, record);
+        if (serializable) {
+            try {
+                cache.put(key, ResultCache.serialize(new LinkedHashMap<>(result)));
+            } catch (NotSerializableException e) {
+                serializable = false;
+                logger.warning("Results can not be serialized, they are not cached: " + e.getMessage());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return result;
+    }
+}
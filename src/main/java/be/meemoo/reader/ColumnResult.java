@@ -0,0 +1,44 @@
+package be.meemoo.reader;
+
+import de.gwdg.metadataqa.api.interfaces.MetricResult;
+import de.gwdg.metadataqa.api.util.CompressionLevel;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A single value added to the results of a record as a column, like the file it was read from. It is serializable,
+ * so the results it is part of can be cached.
+ */
+class ColumnResult implements MetricResult, Serializable {
+    private final String name;
+    private final String field;
+    private final String value;
+
+    ColumnResult(String name, String field, String value) {
+        this.name = name;
+        this.field = field;
+        this.value = value;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Map<String, String> getResultMap() {
+        return Map.of(field, value);
+    }
+
+    @Override
+    public List<String> getList(boolean withLabel, CompressionLevel compressionLevel) {
+        return List.of(value);
+    }
+
+    @Override
+    public String getCsv(boolean withLabel, CompressionLevel compressionLevel) {
+        return value;
+    }
+}
@@ -0,0 +1,235 @@
+package be.meemoo.reader;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Reads the complete lines of a file as they are appended, like tail -F. At the end of the file it waits for
+ * changes, notified by a watch service on the directory and at least every poll interval. When the file is
+ * replaced by a new one, e.g. by log rotation, the rest of the old file is read before the new one from its start.
+ * A file truncated in place is read again from its start.
+ */
+public class FileFollower implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(FileFollower.class.getCanonicalName());
+
+    private final Path path;
+    private final long pollMillis;
+    private final WatchService watcher;
+    private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+    // the bytes of a line whose end was not written yet
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+    private FileChannel channel;
+    private String fileKey;
+    private Position start;
+    private long lineStart;
+    private long lastStart = -1;
+    private Position position;
+
+    /**
+     * @param start the position to continue from, or null to read the file from its start. A position in another
+     *              file than the current one, or beyond its end, is ignored.
+     */
+    public FileFollower(Path path, Position start, long pollMillis) throws IOException {
+        this.path = path.toAbsolutePath();
+        this.pollMillis = pollMillis;
+        this.start = start;
+        this.watcher = newWatcher(this.path.getParent());
+    }
+
+    private static WatchService newWatcher(Path directory) {
+        try {
+            WatchService watcher = FileSystems.getDefault().newWatchService();
+            directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            return watcher;
+        } catch (IOException | UnsupportedOperationException e) {
+            // changes are only noticed by polling
+            return null;
+        }
+    }
+
+    /**
+     * Wait for the next complete line, without its line terminator.
+     */
+    public String readLine() throws IOException, InterruptedException {
+        if (channel == null)
+            open();
+        while (true) {
+            for (int i = buffer.position(); i < buffer.limit(); i++) {
+                if (buffer.get(i) != '\n')
+                    continue;
+                int length = i - buffer.position();
+                pending.write(buffer.array(), buffer.position(), length);
+                buffer.position(i + 1);
+                return takeLine(lineStart + pending.size() + 1);
+            }
+            pending.write(buffer.array(), buffer.position(), buffer.remaining());
+            buffer.clear();
+            int read = channel.read(buffer);
+            buffer.flip();
+            if (read <= 0 && !reopened())
+                await();
+        }
+    }
+
+    private String takeLine(long end) {
+        byte[] bytes = pending.toByteArray();
+        int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+        pending.reset();
+        lastStart = lineStart;
+        lineStart = end;
+        position = new Position(fileKey, end);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return whether the last line read is the first line of its file, like the header of a CSV file
+     */
+    public boolean isFirstLine() {
+        return lastStart == 0;
+    }
+
+    /**
+     * The position after the last line read, to continue from.
+     */
+    public Position getPosition() {
+        return position;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * The first line of a file, like the header of a CSV file that is followed from a position after it.
+     */
+    public static String readFirstLine(Path path) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return reader.readLine();
+        }
+    }
+
+    /**
+     * Open the file, once it exists, at the position to start from.
+     */
+    private void open() throws IOException, InterruptedException {
+        while (!Files.exists(path))
+            await();
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        fileKey = getFileKey(path);
+        long offset = 0;
+        if (start != null && start.getOffset() <= channel.size()
+                && (start.getFileKey() == null || start.getFileKey().equals(fileKey)))
+            offset = start.getOffset();
+        else if (start != null)
+            logger.warning(String.format("%s was replaced, reading it from the start. ", path));
+        start = null;
+        channel.position(offset);
+        lineStart = offset;
+        position = new Position(fileKey, offset);
+        buffer.clear().flip();
+    }
+
+    /**
+     * Switch to the new file once the old one was replaced and read to its end, or read the file again from its
+     * start when it was truncated.
+     *
+     * @return whether there might be more to read
+     */
+    private boolean reopened() throws IOException, InterruptedException {
+        String key;
+        try {
+            key = getFileKey(path);
+        } catch (NoSuchFileException e) {
+            // in the middle of a rotation
+            return false;
+        }
+        if (key != null && !key.equals(fileKey)) {
+            if (channel.size() > channel.position())
+                return true;
+            discardPending("replaced");
+            channel.close();
+            open();
+            return true;
+        }
+        if (channel.size() < channel.position()) {
+            discardPending("truncated");
+            channel.position(0);
+            lineStart = 0;
+            buffer.clear().flip();
+            return true;
+        }
+        return false;
+    }
+
+    private void discardPending(String change) {
+        logger.info(String.format("%s was %s, following it from the start. ", path, change));
+        if (pending.size() > 0)
+            logger.warning(String.format("Incomplete last line of %s skipped. ", path));
+        pending.reset();
+    }
+
+    private void await() throws InterruptedException {
+        if (watcher == null) {
+            Thread.sleep(pollMillis);
+            return;
+        }
+        WatchKey key = watcher.poll(pollMillis, TimeUnit.MILLISECONDS);
+        if (key != null) {
+            // any change in the directory is a reason to look again
+            key.pollEvents();
+            key.reset();
+        }
+    }
+
+    private static String getFileKey(Path path) throws IOException {
+        Object key = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+        return key == null ? null : key.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null)
+            channel.close();
+        if (watcher != null)
+            watcher.close();
+    }
+
+    /**
+     * A position in a followed file: the key of the file, which tells whether it was replaced, and an offset in bytes.
+     */
+    public static class Position {
+        private final String fileKey;
+        private final long offset;
+
+        public Position(String fileKey, long offset) {
+            this.fileKey = fileKey;
+            this.offset = offset;
+        }
+
+        public String getFileKey() {
+            return fileKey;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+    }
+}
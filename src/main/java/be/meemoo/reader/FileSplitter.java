@@ -0,0 +1,106 @@
+package be.meemoo.reader;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.stream.IntStream;
+
+/**
+ * Cuts a file in byte ranges that start and end on record boundaries, so every range can be read on its own.
+ */
+public class FileSplitter {
+
+    private final FileChannel channel;
+    private final long size;
+
+    public FileSplitter(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+    }
+
+    /**
+     * Split a file of new line delimited records.
+     *
+     * @return the n + 1 offsets between the ranges, the first one is 0 and the last one the file size
+     */
+    public long[] splitLines(int n) throws IOException {
+        long[] boundaries = new long[n + 1];
+        boundaries[n] = size;
+        for (int i = 1; i < n; i++) {
+            long nominal = size * i / n;
+            // a range starts after the first new line before or at its nominal start
+            boundaries[i] = Math.max(boundaries[i - 1], nextRecord(nominal - 1, false, false));
+        }
+        return boundaries;
+    }
+
+    /**
+     * Split a CSV file where quoted fields can contain new lines. The quote state at the start of every range is
+     * derived from the number of quotes before it, which is counted for all ranges in parallel.
+     *
+     * @return the n + 1 offsets between the ranges, the first one is the end of the header and the last one the
+     * file size
+     */
+    public long[] splitCsv(int n) throws IOException {
+        long[] nominal = new long[n + 1];
+        for (int i = 0; i <= n; i++)
+            nominal[i] = size * i / n;
+
+        long[] quotes;
+        try {
+            quotes = IntStream.range(0, n).parallel()
+                    .mapToLong(i -> countQuotes(nominal[i], nominal[i + 1]))
+                    .toArray();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        long[] boundaries = new long[n + 1];
+        boundaries[0] = nextRecord(0, true, false);
+        boundaries[n] = size;
+        long quotesBefore = 0;
+        for (int i = 1; i < n; i++) {
+            quotesBefore += quotes[i - 1];
+            // an escaped quote is written twice, so only the quotes around fields change the parity
+            boolean inQuotes = quotesBefore % 2 == 1;
+            boundaries[i] = Math.max(boundaries[i - 1], nextRecord(nominal[i], true, inQuotes));
+        }
+        return boundaries;
+    }
+
+    /**
+     * @return the offset after the first new line at or after the position, for CSV the new line should be outside
+     * quotes
+     */
+    private long nextRecord(long position, boolean csv, boolean inQuotes) throws IOException {
+        if (position < 0)
+            return 0;
+        for (long start = position; start < size; start += MappedInputStream.WINDOW) {
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(MappedInputStream.WINDOW, size - start));
+            while (window.hasRemaining()) {
+                byte b = window.get();
+                if (csv && b == '"')
+                    inQuotes = !inQuotes;
+                else if (b == '\n' && !inQuotes)
+                    return start + window.position();
+            }
+        }
+        return size;
+    }
+
+    private long countQuotes(long start, long end) {
+        long count = 0;
+        try {
+            for (long position = start; position < end; position += MappedInputStream.WINDOW) {
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MappedInputStream.WINDOW, end - position));
+                while (window.hasRemaining())
+                    if (window.get() == '"')
+                        count++;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,162 @@
+package be.meemoo.reader;
+
+import com.opencsv.exceptions.CsvValidationException;
+import de.gwdg.metadataqa.api.calculator.CalculatorFacade;
+import de.gwdg.metadataqa.api.interfaces.MetricResult;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+
+/**
+ * Reads the records of a new line delimited JSON or CSV file as they are appended, waiting for more at its end, so
+ * the input never ends. The records are measured like those of a {@link JSONRecordReader} or {@link CSVRecordReader}.
+ * The position after every record is kept until its result is written, so it can be saved to continue from.
+ */
+public class FollowRecordReader<T> extends RecordReader<T> {
+
+    private final FileFollower follower;
+    // reads nothing itself, but measures the records like the reader of the whole file
+    private final RecordReader<T> records;
+    private final Function<String, T> parser;
+    private final List<String> header;
+    private final Queue<FileFollower.Position> positions = new ConcurrentLinkedQueue<>();
+
+    private T next;
+
+    private FollowRecordReader(FileFollower follower, RecordReader<T> records, Function<String, T> parser, List<String> header) {
+        super(records.inputReader, records.calculator);
+        this.follower = follower;
+        this.records = records;
+        this.parser = parser;
+        this.header = header;
+    }
+
+    public static FollowRecordReader<String> ofJson(FileFollower follower, CalculatorFacade calculator) throws IOException {
+        return new FollowRecordReader<>(follower, new JSONRecordReader(empty(), calculator), line -> line, null);
+    }
+
+    /**
+     * The header is read from the first line of the file, which is skipped when it is followed from its start.
+     */
+    public static FollowRecordReader<List<String>> ofCsv(FileFollower follower, CalculatorFacade calculator) throws IOException, CsvValidationException {
+        String line = Files.exists(follower.getPath()) ? FileFollower.readFirstLine(follower.getPath()) : null;
+        if (line == null)
+            throw new IllegalArgumentException("A CSV file can only be followed once it has a header: " + follower.getPath());
+        List<String> header = parseCsv(line);
+        return new FollowRecordReader<>(follower, new CSVRecordReader(empty(), calculator, header, true), FollowRecordReader::parseCsv, header);
+    }
+
+    private static BufferedReader empty() {
+        return new BufferedReader(new StringReader(""));
+    }
+
+    private static List<String> parseCsv(String record) {
+        try {
+            return Arrays.asList(new CSVTokenizer(new StringReader(record)).readNext());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Wait for the next record. Only ends when the thread is interrupted.
+     */
+    @Override
+    public boolean hasNext() {
+        try {
+            while (next == null) {
+                String line = follower.readLine();
+                if (header != null) {
+                    // the header, also of a new file after the old one was replaced
+                    if (follower.isFirstLine()) {
+                        if (!parseCsv(line).equals(header))
+                            throw new IllegalStateException("The header of " + follower.getPath() + " changed");
+                        continue;
+                    }
+                    // a new line in a quoted field continues the record
+                    while (isQuoted(line))
+                        line += "\n" + follower.readLine();
+                }
+                if (line.isBlank())
+                    continue;
+                next = parser.apply(line);
+                positions.add(follower.getPosition());
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (IOException e) {
+            // a channel is closed when its thread is interrupted
+            if (Thread.currentThread().isInterrupted())
+                return false;
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static boolean isQuoted(String line) {
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++)
+            if (line.charAt(i) == '"')
+                quoted = !quoted;
+        return quoted;
+    }
+
+    @Override
+    public T read() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        T record = next;
+        next = null;
+        return record;
+    }
+
+    /**
+     * @return the header of a CSV file, or null
+     */
+    public List<String> getHeader() {
+        return header;
+    }
+
+    /**
+     * The position after the next record whose result is written, as results are written in the order of the input.
+     */
+    public FileFollower.Position takePosition() {
+        return positions.poll();
+    }
+
+    @Override
+    public String asString(T record) {
+        return records.asString(record);
+    }
+
+    @Override
+    public Function<T, String> getField(String path) {
+        return records.getField(path);
+    }
+
+    @Override
+    public CalculatorFacade configure(CalculatorFacade calculator) {
+        return records.configure(calculator);
+    }
+
+    @Override
+    public Map<String, List<MetricResult>> measure(CalculatorFacade calculator, T record) {
+        return records.measure(calculator, record);
+    }
+
+    @Override
+    public void close() throws IOException {
+        follower.close();
+    }
+}
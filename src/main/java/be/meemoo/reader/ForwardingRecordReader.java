@@ -0,0 +1,58 @@
+package be.meemoo.reader;
+
+import de.gwdg.metadataqa.api.calculator.CalculatorFacade;
+import de.gwdg.metadataqa.api.interfaces.MetricResult;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A reader passing everything on to another reader, closing included. Readers adding to another reader extend it,
+ * and override only what they change.
+ */
+public abstract class ForwardingRecordReader<T> extends RecordReader<T> {
+
+    protected final RecordReader<T> reader;
+
+    protected ForwardingRecordReader(RecordReader<T> reader) {
+        super(reader.inputReader, reader.calculator);
+        this.reader = reader;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return reader.hasNext();
+    }
+
+    @Override
+    public T read() {
+        return reader.read();
+    }
+
+    @Override
+    public Map<String, List<MetricResult>> measure(CalculatorFacade calculator, T record) {
+        return reader.measure(calculator, record);
+    }
+
+    @Override
+    public String asString(T record) {
+        return reader.asString(record);
+    }
+
+    @Override
+    public Function<T, String> getField(String path) {
+        return reader.getField(path);
+    }
+
+    @Override
+    public CalculatorFacade configure(CalculatorFacade calculator) {
+        return reader.configure(calculator);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
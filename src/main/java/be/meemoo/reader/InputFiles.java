@@ -0,0 +1,110 @@
+package be.meemoo.reader;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The input files of an assessment, given as files, directories or glob patterns like harvest/2023-*.ndjson.gz.
+ * Directories are read recursively, hidden files are skipped.
+ */
+public class InputFiles {
+
+    // every file, with its path relative to the directory or the base of the pattern it was found in
+    private final Map<Path, Path> files = new LinkedHashMap<>();
+    private boolean expanded = false;
+
+    public static InputFiles resolve(String... inputs) throws IOException {
+        InputFiles inputFiles = new InputFiles();
+        for (String input : inputs)
+            inputFiles.add(input);
+        if (inputFiles.files.isEmpty())
+            throw new IOException("No input files found: " + String.join(", ", inputs));
+        return inputFiles;
+    }
+
+    private void add(String input) throws IOException {
+        Path path = Paths.get(input);
+        if (Files.isRegularFile(path)) {
+            files.put(path, path.getFileName());
+            return;
+        }
+
+        expanded = true;
+        if (Files.isDirectory(path)) {
+            for (Path file : walk(path, file -> true))
+                files.put(path.resolve(file), file);
+            return;
+        }
+
+        // the base is the directory before the first name in the path with a glob character
+        int i = 0;
+        while (i < path.getNameCount() - 1 && !isPattern(path.getName(i).toString()))
+            i++;
+        Path pattern = path.subpath(i, path.getNameCount());
+        if (!isPattern(pattern.toString()))
+            throw new IOException("Input file not found: " + input);
+        Path base = i == 0 ? Paths.get("") : path.subpath(0, i);
+        if (path.getRoot() != null)
+            base = path.getRoot().resolve(base);
+
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+        Path directory = base.toString().isEmpty() ? Paths.get(".") : base;
+        for (Path file : walk(directory, matcher))
+            files.put(base.resolve(file), file);
+    }
+
+    private static boolean isPattern(String name) {
+        return name.matches(".*[*?\\[{].*");
+    }
+
+    /**
+     * @return the paths relative to a directory of the regular files below it that match, sorted
+     */
+    private static List<Path> walk(Path directory, PathMatcher matcher) throws IOException {
+        if (!Files.isDirectory(directory))
+            return List.of();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            return paths
+                    .filter(Files::isRegularFile)
+                    .map(directory::relativize)
+                    .filter(file -> !isHidden(file) && matcher.matches(file))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static boolean isHidden(Path relative) {
+        for (Path name : relative)
+            if (name.toString().startsWith("."))
+                return true;
+        return false;
+    }
+
+    public List<Path> getFiles() {
+        return new ArrayList<>(files.keySet());
+    }
+
+    /**
+     * @return the path of a file relative to the directory or pattern it was found with
+     */
+    public Path getRelativePath(Path file) {
+        return files.get(file);
+    }
+
+    /**
+     * @return whether the input is a single file, rather than the files in directories or matching patterns
+     */
+    public boolean isSingleFile() {
+        return !expanded && files.size() == 1;
+    }
+}
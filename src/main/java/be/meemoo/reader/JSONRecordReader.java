@@ -8,8 +8,9 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
-public class JSONRecordReader extends RecordReader {
+public class JSONRecordReader extends RecordReader<String> {
 
     private final LineIterator jsonIterator;
 
@@ -24,8 +25,17 @@ public class JSONRecordReader extends RecordReader {
     }
 
     @Override
-    public Map<String, List<MetricResult>> next() {
-        String record = jsonIterator.next();
-        return this.calculator.measureAsMetricResult(record);
+    public String read() {
+        return jsonIterator.next();
+    }
+
+    @Override
+    public Function<String, String> getField(String path) {
+        return RecordFields.jsonPath(path);
+    }
+
+    @Override
+    public Map<String, List<MetricResult>> measure(CalculatorFacade calculator, String record) {
+        return calculator.measureAsMetricResult(record);
     }
 }
@@ -0,0 +1,78 @@
+package be.meemoo.reader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a byte range of a file through memory mappings. The range is mapped in windows, as a single mapping can not
+ * be larger than 2 GB. The channel of the file is released when the stream is closed.
+ */
+public class MappedInputStream extends InputStream {
+
+    static final int WINDOW = 1 << 26;
+
+    private final SharedChannel shared;
+    private final FileChannel channel;
+    private final long end;
+    private boolean closed = false;
+    private long windowStart;
+    private MappedByteBuffer window;
+
+    public MappedInputStream(SharedChannel channel, long start, long end) throws IOException {
+        this.shared = channel;
+        this.channel = channel.acquire();
+        this.end = end;
+        try {
+            map(start);
+        } catch (IOException e) {
+            channel.release();
+            throw e;
+        }
+    }
+
+    private void map(long position) throws IOException {
+        this.windowStart = position;
+        this.window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW, end - position));
+    }
+
+    private boolean ensureAvailable() throws IOException {
+        if (window.hasRemaining())
+            return true;
+        long position = windowStart + window.limit();
+        if (position >= end)
+            return false;
+        map(position);
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return ensureAvailable() ? window.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0)
+            return 0;
+        if (!ensureAvailable())
+            return -1;
+        int n = Math.min(len, window.remaining());
+        window.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return window.remaining();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        shared.release();
+    }
+}
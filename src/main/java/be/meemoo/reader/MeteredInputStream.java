@@ -0,0 +1,56 @@
+package be.meemoo.reader;
+
+import be.meemoo.metrics.Stage;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the bytes read from a stream in a stage of the metrics, and optionally the time spent reading them.
+ */
+public class MeteredInputStream extends FilterInputStream {
+
+    private final Stage stage;
+    private final boolean timed;
+
+    public MeteredInputStream(InputStream in, Stage stage, boolean timed) {
+        super(in);
+        this.stage = stage;
+        this.timed = timed;
+    }
+
+    @Override
+    public int read() throws IOException {
+        long start = timed ? System.nanoTime() : 0;
+        int b = in.read();
+        if (timed)
+            stage.record(start);
+        if (b >= 0)
+            stage.addBytes(1);
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        long start = timed ? System.nanoTime() : 0;
+        int n = in.read(b, off, len);
+        if (timed)
+            stage.record(start);
+        if (n > 0)
+            stage.addBytes(n);
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = in.skip(n);
+        stage.addBytes(skipped);
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+}
@@ -0,0 +1,78 @@
+package be.meemoo.reader;
+
+import be.meemoo.metrics.AssessmentMetrics;
+import be.meemoo.metrics.Stage;
+import de.gwdg.metadataqa.api.calculator.CalculatorFacade;
+import de.gwdg.metadataqa.api.interfaces.MetricResult;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts the time spent reading and measuring the records of another reader. Either can be left to another metered
+ * reader, like measuring beneath a result cache so results found in the cache do not count as measured.
+ */
+public class MeteredRecordReader<T> extends ForwardingRecordReader<T> {
+
+    private final Stage read;
+    private final Stage measure;
+    // readers may read ahead when checking for a next record, which is counted as part of reading it
+    private long hasNextNanos;
+
+    public MeteredRecordReader(RecordReader<T> reader, AssessmentMetrics metrics) {
+        this(reader, metrics.getRead(), metrics.getMeasure());
+    }
+
+    /**
+     * @param read the stage counting reading, or null when it is not counted
+     * @param measure the stage counting measuring, or null when it is not counted
+     */
+    public MeteredRecordReader(RecordReader<T> reader, Stage read, Stage measure) {
+        super(reader);
+        this.read = read;
+        this.measure = measure;
+    }
+
+    public static <T> MeteredRecordReader<T> of(RecordReader<T> reader, AssessmentMetrics metrics) {
+        return new MeteredRecordReader<>(reader, metrics);
+    }
+
+    public static <T> MeteredRecordReader<T> reading(RecordReader<T> reader, AssessmentMetrics metrics) {
+        return new MeteredRecordReader<>(reader, metrics.getRead(), null);
+    }
+
+    public static <T> MeteredRecordReader<T> measuring(RecordReader<T> reader, AssessmentMetrics metrics) {
+        return new MeteredRecordReader<>(reader, null, metrics.getMeasure());
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (read == null)
+            return reader.hasNext();
+        long start = System.nanoTime();
+        boolean hasNext = reader.hasNext();
+        hasNextNanos += System.nanoTime() - start;
+        return hasNext;
+    }
+
+    @Override
+    public T read() {
+        if (read == null)
+            return reader.read();
+        long start = System.nanoTime() - hasNextNanos;
+        hasNextNanos = 0;
+        T record = reader.read();
+        read.record(start);
+        return record;
+    }
+
+    @Override
+    public Map<String, List<MetricResult>> measure(CalculatorFacade calculator, T record) {
+        if (measure == null)
+            return reader.measure(calculator, record);
+        long start = System.nanoTime();
+        Map<String, List<MetricResult>> result = reader.measure(calculator, record);
+        measure.record(start);
+        return result;
+    }
+}
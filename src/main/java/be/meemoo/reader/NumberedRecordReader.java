@@ -0,0 +1,82 @@
+package be.meemoo.reader;
+
+import de.gwdg.metadataqa.api.calculator.CalculatorFacade;
+import de.gwdg.metadataqa.api.interfaces.MetricResult;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Numbers the records of another reader as they are read, from 0, so readers added to it know where a record was in
+ * the input.
+ */
+public class NumberedRecordReader<T> extends RecordReader<NumberedRecordReader.Numbered<T>> {
+
+    private final RecordReader<T> reader;
+
+    private long offset = 0;
+
+    public NumberedRecordReader(RecordReader<T> reader) {
+        super(reader.inputReader, reader.calculator);
+        this.reader = reader;
+    }
+
+    public static <T> NumberedRecordReader<T> of(RecordReader<T> reader) {
+        return new NumberedRecordReader<>(reader);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return reader.hasNext();
+    }
+
+    @Override
+    public Numbered<T> read() {
+        return new Numbered<>(reader.read(), offset++);
+    }
+
+    @Override
+    public Map<String, List<MetricResult>> measure(CalculatorFacade calculator, Numbered<T> record) {
+        return reader.measure(calculator, record.record);
+    }
+
+    @Override
+    public String asString(Numbered<T> record) {
+        return reader.asString(record.record);
+    }
+
+    @Override
+    public Function<Numbered<T>, String> getField(String path) {
+        Function<T, String> field = reader.getField(path);
+        return record -> field.apply(record.record);
+    }
+
+    @Override
+    public CalculatorFacade configure(CalculatorFacade calculator) {
+        return reader.configure(calculator);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * A record with its number in the input.
+     */
+    public static class Numbered<T> {
+        private final T record;
+        private final long offset;
+
+        private Numbered(T record, long offset) {
+            this.record = record;
+            this.offset = offset;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+    }
+}
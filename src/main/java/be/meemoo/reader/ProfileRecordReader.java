@@ -0,0 +1,106 @@
+package be.meemoo.reader;
+
+import de.gwdg.metadataqa.api.calculator.CalculatorFacade;
+import de.gwdg.metadataqa.api.interfaces.MetricResult;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Measures every record against more profiles besides the calculator it is given, so records are read and parsed
+ * once for all of them. Every thread measuring records gets calculators of its own for the profiles. The profiles of
+ * a record are measured in turn, or in parallel on an executor when there are fewer threads measuring records than
+ * profiles. The results of the profiles are passed on with those of the calculator, for a writer to split them.
+ */
+public class ProfileRecordReader<T> extends ForwardingRecordReader<T> {
+
+    private final ThreadLocal<List<CalculatorFacade>> calculators;
+    private final int profiles;
+    private final ExecutorService executor;
+
+    /**
+     * @param executor the executor measuring the profiles of a record in parallel, or null to measure them in turn
+     */
+    public ProfileRecordReader(RecordReader<T> reader, List<Supplier<CalculatorFacade>> profiles, ExecutorService executor) {
+        super(reader);
+        this.profiles = profiles.size();
+        this.executor = executor;
+        this.calculators = ThreadLocal.withInitial(() -> {
+            List<CalculatorFacade> calculators = new ArrayList<>();
+            for (Supplier<CalculatorFacade> profile : profiles)
+                calculators.add(reader.configure(profile.get()));
+            return calculators;
+        });
+    }
+
+    public static <T> ProfileRecordReader<T> of(RecordReader<T> reader, List<Supplier<CalculatorFacade>> profiles, ExecutorService executor) {
+        return new ProfileRecordReader<>(reader, profiles, executor);
+    }
+
+    /**
+     * An executor to measure profiles on, with daemon threads, as measuring records never waits for its tasks.
+     */
+    public static ExecutorService newExecutor(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "mqa-profile-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public Map<String, List<MetricResult>> measure(CalculatorFacade calculator, T record) {
+        if (executor == null) {
+            Results results = new Results(reader.measure(calculator, record));
+            for (CalculatorFacade profile : calculators.get())
+                results.profiles.add(reader.measure(profile, record));
+            return results;
+        }
+
+        List<Future<Map<String, List<MetricResult>>>> measured = new ArrayList<>();
+        for (int i = 0; i < profiles; i++) {
+            int profile = i;
+            measured.add(executor.submit(() -> reader.measure(calculators.get().get(profile), record)));
+        }
+        Results results = new Results(reader.measure(calculator, record));
+        try {
+            for (Future<Map<String, List<MetricResult>>> profile : measured)
+                results.profiles.add(profile.get());
+        } catch (InterruptedException e) {
+            measured.forEach(profile -> profile.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Measurement of the profiles interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw new IllegalStateException("Measurement of a profile failed", e.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * The results of a record, with the results of every profile in their order.
+     */
+    public static class Results extends LinkedHashMap<String, List<MetricResult>> {
+        private final List<Map<String, List<MetricResult>>> profiles = new ArrayList<>();
+
+        private Results(Map<String, List<MetricResult>> result) {
+            super(result);
+        }
+
+        public Map<String, List<MetricResult>> getProfile(int profile) {
+            return profiles.get(profile);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package be.meemoo.reader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads an input stream on a background thread into a ring of large buffers, so that e.g. decompression overlaps
+ * with the work of the thread consuming the stream.
+ */
+public class ReadAheadInputStream extends InputStream {
+
+    public static final int BUFFERS = 4;
+    public static final int BUFFER_SIZE = 1 << 20;
+
+    private final InputStream in;
+    private final BlockingQueue<Chunk> free = new ArrayBlockingQueue<>(BUFFERS);
+    private final BlockingQueue<Chunk> filled = new ArrayBlockingQueue<>(BUFFERS + 1);
+    private final Thread reader;
+    private volatile IOException failure;
+
+    private Chunk current;
+    private int position;
+
+    public ReadAheadInputStream(InputStream in) {
+        this.in = in;
+        for (int i = 0; i < BUFFERS; i++)
+            free.add(new Chunk(new byte[BUFFER_SIZE]));
+
+        this.reader = new Thread(this::fill, "mqa-read-ahead");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    private void fill() {
+        try {
+            while (true) {
+                Chunk chunk = free.take();
+                chunk.length = readFully(chunk.data);
+                if (chunk.length > 0)
+                    filled.put(chunk);
+                if (chunk.length < chunk.data.length) {
+                    filled.put(Chunk.END);
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            failure = e;
+            filled.offer(Chunk.END);
+        } catch (InterruptedException e) {
+            // the stream was closed
+        }
+    }
+
+    private int readFully(byte[] data) throws IOException {
+        int length = 0;
+        while (length < data.length) {
+            int n = in.read(data, length, data.length - length);
+            if (n == -1)
+                break;
+            length += n;
+        }
+        return length;
+    }
+
+    private boolean ensureAvailable() throws IOException {
+        if (current == Chunk.END)
+            return false;
+        if (current != null && position < current.length)
+            return true;
+
+        if (current != null)
+            free.add(current);
+        try {
+            current = filled.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        position = 0;
+        if (current == Chunk.END) {
+            if (failure != null)
+                throw failure;
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return ensureAvailable() ? current.data[position++] & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0)
+            return 0;
+        if (!ensureAvailable())
+            return -1;
+        int n = Math.min(len, current.length - position);
+        System.arraycopy(current.data, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.interrupt();
+        in.close();
+    }
+
+    private static class Chunk {
+        private static final Chunk END = new Chunk(new byte[0]);
+
+        private final byte[] data;
+        private int length;
+
+        private Chunk(byte[] data) {
+            this.data = data;
+        }
+    }
+}
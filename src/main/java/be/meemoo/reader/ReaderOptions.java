@@ -0,0 +1,29 @@
+package be.meemoo.reader;
+
+/**
+ * How the records of an input are read, given to the record factory for every reader it creates.
+ */
+public class ReaderOptions {
+
+    public static final ReaderOptions DEFAULT = new ReaderOptions(false, false);
+
+    private final boolean csvTokenizer;
+    private final boolean entryColumn;
+
+    /**
+     * @param csvTokenizer whether to split CSV records by the built-in tokenizer instead of OpenCSV
+     * @param entryColumn  whether to add the name of the archive entry of every record as a column
+     */
+    public ReaderOptions(boolean csvTokenizer, boolean entryColumn) {
+        this.csvTokenizer = csvTokenizer;
+        this.entryColumn = entryColumn;
+    }
+
+    public boolean isCsvTokenizer() {
+        return csvTokenizer;
+    }
+
+    public boolean isEntryColumn() {
+        return entryColumn;
+    }
+}
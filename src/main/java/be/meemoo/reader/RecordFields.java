@@ -0,0 +1,107 @@
+package be.meemoo.reader;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.gwdg.metadataqa.api.xml.XpathEngineFactory;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+
+/**
+ * Reads a single field from JSON and XML records, for decisions that have to be made before a record is measured.
+ * The first value is returned when a path matches many, and null when it matches none.
+ */
+final class RecordFields {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+    // a member like .cp_id or ['dc:title'], or an element like [0] or [*]
+    private static final Pattern STEP = Pattern.compile("\\.([^.\\[]+)|\\.?\\['([^']+)'\\]|\\[(\\d+|\\*)\\]");
+    private static final String ANY = "*";
+
+    private RecordFields() {
+    }
+
+    /**
+     * @param path a JSONPath of members and array elements, like $.cp_id or $['edm:ProvidedCHO'][0]['dc:title']
+     */
+    static Function<String, String> jsonPath(String path) {
+        List<Object> steps = new ArrayList<>();
+        Matcher matcher = STEP.matcher(path);
+        int end = 1;
+        while (path.startsWith("$") && matcher.find(end) && matcher.start() == end) {
+            if (matcher.group(3) != null)
+                steps.add(ANY.equals(matcher.group(3)) ? ANY : (Object) Integer.valueOf(matcher.group(3)));
+            else
+                steps.add(matcher.group(1) != null ? matcher.group(1) : matcher.group(2));
+            end = matcher.end();
+        }
+        if (!path.startsWith("$") || end != path.length())
+            throw new IllegalArgumentException("Only JSONPaths of members and array elements can be read: " + path);
+
+        return record -> {
+            JsonNode node;
+            try {
+                node = mapper.readTree(record);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Invalid JSON record", e);
+            }
+            for (Object step : steps) {
+                if (step instanceof Integer) {
+                    node = node.path((Integer) step);
+                } else {
+                    // arrays of values are read as their first value
+                    if (node.isArray())
+                        node = node.path(0);
+                    if (!ANY.equals(step))
+                        node = node.path((String) step);
+                }
+            }
+            if (node.isArray())
+                node = node.path(0);
+            if (node.isMissingNode() || node.isNull())
+                return null;
+            return node.isValueNode() ? node.asText() : node.toString();
+        };
+    }
+
+    /**
+     * @param path an XPath, using the namespaces of the schema
+     */
+    static Function<String, String> xpath(String path, Map<String, String> namespaces) {
+        // an invalid path fails here rather than when reading the first record
+        compile(path, namespaces);
+        // expressions and parsers are not thread safe, and fields are also read on the threads measuring records
+        ThreadLocal<XPathExpression> expression = ThreadLocal.withInitial(() -> compile(path, namespaces));
+        ThreadLocal<DocumentBuilder> builder = ThreadLocal.withInitial(XMLRecordReader::newDocumentBuilder);
+        return record -> {
+            try {
+                Document document = builder.get().parse(new InputSource(new StringReader(record)));
+                String value = expression.get().evaluate(document);
+                return value.isEmpty() ? null : value;
+            } catch (SAXException | IOException | XPathExpressionException e) {
+                throw new IllegalArgumentException("Invalid XML record", e);
+            }
+        };
+    }
+
+    private static XPathExpression compile(String path, Map<String, String> namespaces) {
+        try {
+            return XpathEngineFactory.initializeEngine(namespaces).compile(path);
+        } catch (XPathExpressionException e) {
+            throw new IllegalArgumentException("Invalid XPath: " + path, e);
+        }
+    }
+}
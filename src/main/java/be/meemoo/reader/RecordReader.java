@@ -4,11 +4,14 @@ import de.gwdg.metadataqa.api.calculator.CalculatorFacade;
 import de.gwdg.metadataqa.api.interfaces.MetricResult;
 
 import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
-public abstract class RecordReader implements Iterator<Map<String, List<MetricResult>>> {
+public abstract class RecordReader<T> implements Iterator<Map<String, List<MetricResult>>>, Closeable {
 
     protected final BufferedReader inputReader;
     protected final CalculatorFacade calculator;
@@ -17,4 +20,50 @@ public abstract class RecordReader implements Iterator<Map<String, List<MetricRe
         this.inputReader = inputReader;
         this.calculator = calculator;
     }
+
+    /**
+     * Read the next record from the input without measuring it.
+     */
+    public abstract T read();
+
+    /**
+     * Measure a record returned by {@link #read()}. Can be called from any thread, as long as every thread uses
+     * its own calculator prepared by {@link #configure(CalculatorFacade)}.
+     */
+    public abstract Map<String, List<MetricResult>> measure(CalculatorFacade calculator, T record);
+
+    /**
+     * The content of a record, which identifies it e.g. in a cache.
+     */
+    public String asString(T record) {
+        return record.toString();
+    }
+
+    /**
+     * A function reading the value of a field from the records of this input, without measuring them.
+     *
+     * @param path the path of the field in the schema, like a column name, JSONPath or XPath
+     */
+    public Function<T, String> getField(String path) {
+        throw new UnsupportedOperationException("Fields can not be read from this input: " + path);
+    }
+
+    /**
+     * Prepare a calculator, built from the same schema and configuration, to measure records of this input.
+     */
+    public CalculatorFacade configure(CalculatorFacade calculator) {
+        return calculator;
+    }
+
+    @Override
+    public Map<String, List<MetricResult>> next() {
+        return measure(this.calculator, read());
+    }
+
+    @Override
+    public void close() throws IOException {
+        // readers of archives read no text themselves
+        if (this.inputReader != null)
+            this.inputReader.close();
+    }
 }
@@ -0,0 +1,136 @@
+package be.meemoo.reader;
+
+import be.meemoo.stats.Sample;
+import de.gwdg.metadataqa.api.calculator.CalculatorFacade;
+import de.gwdg.metadataqa.api.interfaces.MetricResult;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * Passes on only a random sample of the records of another reader, so the others are read but never measured. A
+ * record is sampled with a fixed probability, or drawn into a reservoir of a fixed number of records from every
+ * stratum, which needs the whole input to be read first. The results of sampled records are added to the estimates
+ * of the sample, and sampling at a rate stops reading as soon as the estimates are precise enough.
+ */
+public class SamplingRecordReader<T> extends ForwardingRecordReader<T> {
+
+    // the stratum of records whose field has no value, and of all records when not stratified
+    public static final String NA = "NA";
+
+    private final Sample sample;
+    private final Function<T, String> field;
+    private final double rate;
+    private final int size;
+    private final Random random;
+
+    private T next;
+    private Iterator<T> reservoir;
+
+    private SamplingRecordReader(RecordReader<T> reader, Sample sample, Function<T, String> field, double rate, int size, Random random) {
+        super(reader);
+        this.sample = sample;
+        this.field = field;
+        this.rate = rate;
+        this.size = size;
+        this.random = random;
+    }
+
+    /**
+     * Sample every record with a probability.
+     *
+     * @param field the field to stratify the records by, or null
+     */
+    public static <T> SamplingRecordReader<T> ofRate(RecordReader<T> reader, Sample sample, String field, double rate, Random random) {
+        return new SamplingRecordReader<>(reader, sample, field == null ? null : reader.getField(field), rate, 0, random);
+    }
+
+    /**
+     * Sample a number of records from every stratum.
+     *
+     * @param field the field to stratify the records by, or null
+     */
+    public static <T> SamplingRecordReader<T> ofSize(RecordReader<T> reader, Sample sample, String field, int size, Random random) {
+        return new SamplingRecordReader<>(reader, sample, field == null ? null : reader.getField(field), 0, size, random);
+    }
+
+    private String stratum(T record) {
+        String value = field == null ? null : field.apply(record);
+        return value == null ? NA : value;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (size > 0) {
+            if (reservoir == null)
+                reservoir = fill();
+            return reservoir.hasNext();
+        }
+
+        while (next == null && !sample.isPrecise()) {
+            if (!reader.hasNext()) {
+                sample.readAll();
+                break;
+            }
+            T record = reader.read();
+            sample.count(stratum(record));
+            if (random.nextDouble() < rate)
+                next = record;
+        }
+        return next != null;
+    }
+
+    /**
+     * Read the whole input, replacing the records of a full reservoir with a decreasing probability, so every
+     * record has the same chance to end up in it.
+     */
+    private Iterator<T> fill() {
+        Map<String, List<T>> reservoirs = new LinkedHashMap<>();
+        Map<String, long[]> seen = new LinkedHashMap<>();
+        while (reader.hasNext()) {
+            T record = reader.read();
+            String stratum = stratum(record);
+            sample.count(stratum);
+            List<T> records = reservoirs.computeIfAbsent(stratum, s -> new ArrayList<>());
+            long count = ++seen.computeIfAbsent(stratum, s -> new long[1])[0];
+            if (records.size() < size) {
+                records.add(record);
+            } else {
+                long replaced = (long) (random.nextDouble() * count);
+                if (replaced < size)
+                    records.set((int) replaced, record);
+            }
+        }
+
+        sample.readAll();
+
+        List<T> sampled = new ArrayList<>();
+        reservoirs.values().forEach(sampled::addAll);
+        return sampled.iterator();
+    }
+
+    @Override
+    public T read() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        if (reservoir != null)
+            return reservoir.next();
+        T record = next;
+        next = null;
+        return record;
+    }
+
+    @Override
+    public Map<String, List<MetricResult>> measure(CalculatorFacade calculator, T record) {
+        Map<String, List<MetricResult>> result = reader.measure(calculator, record);
+        // the stratum is taken again rather than kept with the record, so the records are passed on as they are
+        sample.add(stratum(record), result);
+        return result;
+    }
+}
@@ -0,0 +1,79 @@
+package be.meemoo.reader;
+
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * Passes on only the records of one shard of another reader, so processes that each take another shard assess the
+ * whole input together. A record belongs to a shard by its index in the input, or by a hash of the value of a field,
+ * which does not depend on the order of the input. The other records are read but never measured.
+ */
+public class ShardRecordReader<T> extends ForwardingRecordReader<T> {
+
+    private final int shard;
+    private final int shards;
+    private final Function<T, String> field;
+
+    private long index = 0;
+    private T next;
+    private boolean hasNext = false;
+
+    /**
+     * @param shard the shard to read, from 1 to the number of shards
+     * @param field the field to hash, or null to take the records by index
+     */
+    public ShardRecordReader(RecordReader<T> reader, int shard, int shards, String field) {
+        super(reader);
+        if (shards < 1 || shard < 1 || shard > shards)
+            throw new IllegalArgumentException("A shard is a number from 1 to the number of shards: " + shard + "/" + shards);
+        this.shard = shard;
+        this.shards = shards;
+        this.field = field == null ? null : reader.getField(field);
+    }
+
+    public static <T> ShardRecordReader<T> of(RecordReader<T> reader, int shard, int shards, String field) {
+        return new ShardRecordReader<>(reader, shard, shards, field);
+    }
+
+    /**
+     * The shard of a value of the field, the same for every process.
+     */
+    public static int shardOf(String value, int shards) {
+        int hash = (value == null ? "" : value).hashCode();
+        // spread the bits of similar values, like consecutive identifiers
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return Math.floorMod(hash, shards) + 1;
+    }
+
+    private boolean inShard(T record) {
+        if (field != null)
+            return shardOf(field.apply(record), shards) == shard;
+        return index++ % shards == shard - 1;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!hasNext && reader.hasNext()) {
+            T record = reader.read();
+            if (inShard(record)) {
+                next = record;
+                hasNext = true;
+            }
+        }
+        return hasNext;
+    }
+
+    @Override
+    public T read() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        T record = next;
+        next = null;
+        hasNext = false;
+        return record;
+    }
+}
@@ -0,0 +1,36 @@
+package be.meemoo.reader;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * A file channel shared by the streams reading parts of a file, which is closed when the last of them is closed.
+ */
+public class SharedChannel {
+
+    private final FileChannel channel;
+    private int users = 1;
+
+    /**
+     * @param channel the channel, used by the caller until it releases it
+     */
+    public SharedChannel(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    public FileChannel get() {
+        return channel;
+    }
+
+    synchronized FileChannel acquire() {
+        if (users == 0)
+            throw new IllegalStateException("The channel is already closed");
+        users++;
+        return channel;
+    }
+
+    public synchronized void release() throws IOException {
+        if (--users == 0)
+            channel.close();
+    }
+}
@@ -0,0 +1,37 @@
+package be.meemoo.reader;
+
+import de.gwdg.metadataqa.api.calculator.CalculatorFacade;
+import de.gwdg.metadataqa.api.interfaces.MetricResult;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Adds the file a record was read from to its results, as the first column.
+ */
+public class SourceRecordReader<T> extends ForwardingRecordReader<T> {
+
+    public static final String SOURCE = "source";
+    public static final String FILE = "file";
+    public static final String HEADER = SOURCE + ":" + FILE;
+
+    private final List<MetricResult> source;
+
+    public SourceRecordReader(RecordReader<T> reader, String file) {
+        super(reader);
+        this.source = List.of(new ColumnResult(SOURCE, FILE, file));
+    }
+
+    public static <T> SourceRecordReader<T> of(RecordReader<T> reader, String file) {
+        return new SourceRecordReader<>(reader, file);
+    }
+
+    @Override
+    public Map<String, List<MetricResult>> measure(CalculatorFacade calculator, T record) {
+        Map<String, List<MetricResult>> result = new LinkedHashMap<>();
+        result.put(SOURCE, source);
+        result.putAll(reader.measure(calculator, record));
+        return result;
+    }
+}
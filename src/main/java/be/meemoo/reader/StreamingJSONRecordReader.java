@@ -0,0 +1,135 @@
+package be.meemoo.reader;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import de.gwdg.metadataqa.api.calculator.CalculatorFacade;
+import de.gwdg.metadataqa.api.interfaces.MetricResult;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the records of a single JSON document one at a time with a streaming parser. The record address is a
+ * JSONPath of object members, like $.results[*] or $['data']['items'], that leads to an array of records or to a
+ * single record.
+ */
+public class StreamingJSONRecordReader extends RecordReader<String> {
+
+    private static final Pattern STREAMABLE = Pattern.compile("^\\$((\\.[A-Za-z_][\\w-]*)|(\\['[^']+'\\]))*(\\[\\*\\])?$");
+    private static final Pattern MEMBER = Pattern.compile("\\.([A-Za-z_][\\w-]*)|\\['([^']+)'\\]");
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final JsonParser parser;
+    private final List<String> members = new ArrayList<>();
+
+    private boolean started = false;
+    private boolean inArray = false;
+    private boolean atRecord = false;
+    private boolean finished = false;
+
+    public StreamingJSONRecordReader(BufferedReader inputReader, CalculatorFacade calculator, String recordAddress) throws IOException {
+        super(inputReader, calculator);
+        if (!isStreamable(recordAddress))
+            throw new IllegalArgumentException("Record address can not be streamed: " + recordAddress);
+
+        Matcher matcher = MEMBER.matcher(recordAddress);
+        while (matcher.find())
+            members.add(matcher.group(1) != null ? matcher.group(1) : matcher.group(2));
+
+        this.parser = jsonFactory.createParser(inputReader);
+    }
+
+    public static boolean isStreamable(String recordAddress) {
+        return recordAddress != null && STREAMABLE.matcher(recordAddress).matches();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (atRecord)
+            return true;
+        if (finished)
+            return false;
+
+        try {
+            if (!started) {
+                started = true;
+                JsonToken token = findRecords();
+                inArray = token == JsonToken.START_ARRAY;
+                // the address leads to a single record
+                atRecord = token == JsonToken.START_OBJECT;
+                finished = !inArray && !atRecord;
+                if (!inArray)
+                    return atRecord;
+            }
+
+            JsonToken token = inArray ? parser.nextToken() : null;
+            if (token == null || token == JsonToken.END_ARRAY) {
+                finished = true;
+                return false;
+            }
+            atRecord = true;
+            return true;
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read JSON record", e);
+        }
+    }
+
+    @Override
+    public String read() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        atRecord = false;
+
+        StringWriter sw = new StringWriter();
+        try (JsonGenerator generator = jsonFactory.createGenerator(sw)) {
+            generator.copyCurrentStructure(parser);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read JSON record", e);
+        }
+        return sw.toString();
+    }
+
+    @Override
+    public Function<String, String> getField(String path) {
+        return RecordFields.jsonPath(path);
+    }
+
+    @Override
+    public Map<String, List<MetricResult>> measure(CalculatorFacade calculator, String record) {
+        return calculator.measureAsMetricResult(record);
+    }
+
+    /**
+     * Walk down the object members of the record address, skipping everything else.
+     *
+     * @return the first token of the value at the record address, or null if there is no such value
+     */
+    private JsonToken findRecords() throws IOException {
+        JsonToken token = parser.nextToken();
+        for (String member : members) {
+            if (token != JsonToken.START_OBJECT)
+                return null;
+
+            boolean found = false;
+            while (!found && parser.nextToken() == JsonToken.FIELD_NAME) {
+                found = member.equals(parser.getCurrentName());
+                token = parser.nextToken();
+                if (!found)
+                    parser.skipChildren();
+            }
+            if (!found)
+                return null;
+        }
+        return token;
+    }
+}
@@ -0,0 +1,222 @@
+package be.meemoo.reader;
+
+import de.gwdg.metadataqa.api.calculator.CalculatorFacade;
+import de.gwdg.metadataqa.api.interfaces.MetricResult;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedReader;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Reads XML records one subtree at a time with StAX, so the document is never held in memory. Only supports
+ * record addresses that are a simple location path, like /root/record or //mods:mods. Namespaces declared on
+ * the ancestors of a record are copied onto the record element.
+ */
+public class StreamingXMLRecordReader extends RecordReader<String> {
+
+    private static final Pattern STREAMABLE = Pattern.compile("^/?(/(\\*|[A-Za-z_][\\w.-]*(:[A-Za-z_][\\w.-]*)?))+$");
+
+    private final XMLStreamReader xmlReader;
+    private final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+    private final List<QName> steps = new ArrayList<>();
+    private final boolean anywhere;
+
+    // the path to the current element and the namespaces each element on that path declares
+    private final Deque<QName> path = new ArrayDeque<>();
+    private final Deque<Map<String, String>> declarations = new ArrayDeque<>();
+    private boolean atRecord = false;
+
+    public StreamingXMLRecordReader(BufferedReader inputReader, CalculatorFacade calculator, String recordAddress) {
+        super(inputReader, calculator);
+        if (!isStreamable(recordAddress))
+            throw new IllegalArgumentException("Record address can not be streamed: " + recordAddress);
+
+        this.anywhere = recordAddress.startsWith("//");
+        Map<String, String> namespaces = calculator.getSchema().getNamespaces();
+        for (String step : recordAddress.substring(anywhere ? 2 : 1).split("/"))
+            steps.add(toQName(step, namespaces));
+
+        XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        // no entities declared in the input either, which could expand without limit
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        try {
+            this.xmlReader = inputFactory.createXMLStreamReader(inputReader);
+        } catch (XMLStreamException e) {
+            throw new IllegalArgumentException("Could not read XML input", e);
+        }
+    }
+
+    public static boolean isStreamable(String recordAddress) {
+        return recordAddress != null && STREAMABLE.matcher(recordAddress).matches();
+    }
+
+    private static QName toQName(String step, Map<String, String> namespaces) {
+        int colon = step.indexOf(':');
+        if (colon == -1)
+            return new QName(XMLConstants.NULL_NS_URI, step);
+
+        String prefix = step.substring(0, colon);
+        String namespace = namespaces == null ? null : namespaces.get(prefix);
+        if (namespace == null)
+            throw new IllegalArgumentException("Unknown namespace prefix in record address: " + prefix);
+        return new QName(namespace, step.substring(colon + 1), prefix);
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            while (!atRecord && xmlReader.hasNext()) {
+                int event = xmlReader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    path.push(xmlReader.getName());
+                    declarations.push(getDeclarations());
+                    atRecord = matches();
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    path.pop();
+                    declarations.pop();
+                }
+            }
+            return atRecord;
+        } catch (XMLStreamException e) {
+            throw new IllegalStateException("Could not read XML record", e);
+        }
+    }
+
+    @Override
+    public String read() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        atRecord = false;
+        try {
+            return copyRecord();
+        } catch (XMLStreamException e) {
+            throw new IllegalStateException("Could not read XML record", e);
+        } finally {
+            path.pop();
+            declarations.pop();
+        }
+    }
+
+    @Override
+    public Function<String, String> getField(String path) {
+        return RecordFields.xpath(path, calculator.getSchema().getNamespaces());
+    }
+
+    @Override
+    public Map<String, List<MetricResult>> measure(CalculatorFacade calculator, String record) {
+        return calculator.measureAsMetricResult(record);
+    }
+
+    private Map<String, String> getDeclarations() {
+        Map<String, String> declared = new LinkedHashMap<>();
+        for (int i = 0; i < xmlReader.getNamespaceCount(); i++) {
+            String prefix = xmlReader.getNamespacePrefix(i);
+            declared.put(prefix == null ? XMLConstants.DEFAULT_NS_PREFIX : prefix, xmlReader.getNamespaceURI(i));
+        }
+        return declared;
+    }
+
+    private boolean matches() {
+        if (anywhere ? path.size() < steps.size() : path.size() != steps.size())
+            return false;
+
+        // the path is a stack, so compare from the innermost element outwards
+        Iterator<QName> names = path.iterator();
+        for (int i = steps.size() - 1; i >= 0; i--) {
+            QName step = steps.get(i);
+            QName name = names.next();
+            if (!step.getLocalPart().equals("*") && !step.equals(name))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Copy the subtree of the current start element, leaving the reader on its end element.
+     */
+    private String copyRecord() throws XMLStreamException {
+        // namespaces in scope of the record, the nearest declaration of a prefix wins
+        Map<String, String> inScope = new LinkedHashMap<>();
+        Iterator<Map<String, String>> outwards = declarations.descendingIterator();
+        while (outwards.hasNext())
+            inScope.putAll(outwards.next());
+
+        StringWriter sw = new StringWriter();
+        XMLStreamWriter writer = outputFactory.createXMLStreamWriter(sw);
+        writeStartElement(writer, inScope);
+
+        int depth = 1;
+        while (depth > 0) {
+            switch (xmlReader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    writeStartElement(writer, getDeclarations());
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    writer.writeEndElement();
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                case XMLStreamConstants.ENTITY_REFERENCE:
+                    writer.writeCharacters(xmlReader.getText());
+                    break;
+                case XMLStreamConstants.CDATA:
+                    writer.writeCData(xmlReader.getText());
+                    break;
+                case XMLStreamConstants.COMMENT:
+                    writer.writeComment(xmlReader.getText());
+                    break;
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    writer.writeProcessingInstruction(xmlReader.getPITarget(), xmlReader.getPIData());
+                    break;
+                default:
+                    break;
+            }
+        }
+        writer.close();
+        return sw.toString();
+    }
+
+    private void writeStartElement(XMLStreamWriter writer, Map<String, String> namespaces) throws XMLStreamException {
+        String prefix = xmlReader.getPrefix();
+        String namespace = xmlReader.getNamespaceURI();
+        writer.writeStartElement(prefix == null ? XMLConstants.DEFAULT_NS_PREFIX : prefix,
+                xmlReader.getLocalName(), namespace == null ? XMLConstants.NULL_NS_URI : namespace);
+
+        for (Map.Entry<String, String> ns : namespaces.entrySet()) {
+            if (ns.getKey().isEmpty())
+                writer.writeDefaultNamespace(ns.getValue());
+            else
+                writer.writeNamespace(ns.getKey(), ns.getValue());
+        }
+
+        for (int i = 0; i < xmlReader.getAttributeCount(); i++) {
+            String attributePrefix = xmlReader.getAttributePrefix(i);
+            if (attributePrefix == null || attributePrefix.isEmpty())
+                writer.writeAttribute(xmlReader.getAttributeLocalName(i), xmlReader.getAttributeValue(i));
+            else
+                writer.writeAttribute(attributePrefix, xmlReader.getAttributeNamespace(i),
+                        xmlReader.getAttributeLocalName(i), xmlReader.getAttributeValue(i));
+        }
+    }
+}
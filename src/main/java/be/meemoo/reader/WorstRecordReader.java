@@ -0,0 +1,36 @@
+package be.meemoo.reader;
+
+import be.meemoo.reader.NumberedRecordReader.Numbered;
+import be.meemoo.stats.WorstRecords;
+import de.gwdg.metadataqa.api.calculator.CalculatorFacade;
+import de.gwdg.metadataqa.api.interfaces.MetricResult;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Offers the results of numbered records to the worst records when they are measured, on the thread that measured
+ * them.
+ */
+public class WorstRecordReader<T> extends ForwardingRecordReader<Numbered<T>> {
+
+    private final WorstRecords worst;
+    private final String source;
+
+    public WorstRecordReader(RecordReader<Numbered<T>> reader, WorstRecords worst, String source) {
+        super(reader);
+        this.worst = worst;
+        this.source = source;
+    }
+
+    public static <T> WorstRecordReader<T> of(RecordReader<Numbered<T>> reader, WorstRecords worst, String source) {
+        return new WorstRecordReader<>(reader, worst, source);
+    }
+
+    @Override
+    public Map<String, List<MetricResult>> measure(CalculatorFacade calculator, Numbered<T> record) {
+        Map<String, List<MetricResult>> result = reader.measure(calculator, record);
+        worst.offer(result, source, record.getOffset());
+        return result;
+    }
+}
@@ -11,12 +11,15 @@ import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
 
+import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
@@ -30,8 +33,13 @@ import java.io.IOException;
 import java.io.StringWriter;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
-public class XMLRecordReader extends RecordReader {
+public class XMLRecordReader extends RecordReader<String> {
+
+    private static final TransformerFactory TRANSFORMER_FACTORY = newTransformerFactory();
+    // transformers are expensive to create but not thread safe
+    private static final ThreadLocal<Transformer> transformer = ThreadLocal.withInitial(XMLRecordReader::newTransformer);
 
     private NodeList nodeList;
     private NamedNodeMap rootAttributes;
@@ -43,20 +51,46 @@ public class XMLRecordReader extends RecordReader {
     public XMLRecordReader(BufferedReader inputReader, CalculatorFacade calculator) throws IOException {
         super(inputReader, calculator);
         this.calculator = calculator;
-        DocumentBuilderFactory builderFactory = DocumentBuilderFactory.newInstance();
-        builderFactory.setNamespaceAware(true);
         try {
-            DocumentBuilder builder = builderFactory.newDocumentBuilder();
+            DocumentBuilder builder = newDocumentBuilder();
             InputSource inputSource = new InputSource(inputReader);
             xmlDocument = builder.parse(inputSource);
             rootAttributes = xmlDocument.getDocumentElement().getAttributes();
-        } catch (ParserConfigurationException e) {
-            e.printStackTrace();
         } catch (SAXException e) {
-            e.printStackTrace();
+            throw new IOException("Invalid XML input: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * A namespace aware parser that loads no external document types or entities, so records can not include other
+     * files, and limits the expansion of entities. Inputs can come from clients of the server.
+     */
+    static DocumentBuilder newDocumentBuilder() {
+        DocumentBuilderFactory builderFactory = DocumentBuilderFactory.newInstance();
+        builderFactory.setNamespaceAware(true);
+        builderFactory.setXIncludeAware(false);
+        builderFactory.setExpandEntityReferences(false);
+        try {
+            builderFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            builderFactory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+            builderFactory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+            builderFactory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+            DocumentBuilder builder = builderFactory.newDocumentBuilder();
+            // errors are thrown, rather than also printed
+            builder.setErrorHandler(new DefaultHandler());
+            return builder;
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException(e);
         }
     }
 
+    private static TransformerFactory newTransformerFactory() {
+        TransformerFactory factory = TransformerFactory.newInstance();
+        factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+        factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_STYLESHEET, "");
+        return factory;
+    }
+
     public XMLRecordReader setRecordAddress(String xpathExpression) {
         XPath xPath = XpathEngineFactory.initializeEngine(calculator.getSchema().getNamespaces());
         try {
@@ -73,14 +107,26 @@ public class XMLRecordReader extends RecordReader {
 
         StringWriter sw = new StringWriter();
         try {
-            Transformer t = TransformerFactory.newInstance().newTransformer();
-            t.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
-            t.setOutputProperty(OutputKeys.INDENT, "yes");
-            t.transform(new DOMSource(node), new StreamResult(sw));
+            transformer.get().transform(new DOMSource(node), new StreamResult(sw));
         } catch (TransformerException te) {
             System.out.println("nodeToString Transformer Exception");
         }
-        return sw.toString().replaceAll("\n\\s+\n", "\n");
+        return sw.toString();
+    }
+
+    private static Transformer newTransformer() {
+        // no indentation: the record is only parsed again, and indenting adds blank lines to mixed content
+        try {
+            Transformer t;
+            synchronized (TRANSFORMER_FACTORY) {
+                t = TRANSFORMER_FACTORY.newTransformer();
+            }
+            t.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+            t.setOutputProperty(OutputKeys.INDENT, "no");
+            return t;
+        } catch (TransformerConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
     private void injectNamespaces(Node node) {
@@ -101,8 +147,18 @@ public class XMLRecordReader extends RecordReader {
     }
 
     @Override
-    public Map<String, List<MetricResult>> next() {
-        String record = nodeToString(nodeList.item(current++));
-        return this.calculator.measureAsMetricResult(record);
+    public String read() {
+        // the DOM is not thread safe, so records are serialized on the reading thread
+        return nodeToString(nodeList.item(current++));
+    }
+
+    @Override
+    public Function<String, String> getField(String path) {
+        return RecordFields.xpath(path, calculator.getSchema().getNamespaces());
+    }
+
+    @Override
+    public Map<String, List<MetricResult>> measure(CalculatorFacade calculator, String record) {
+        return calculator.measureAsMetricResult(record);
     }
 }
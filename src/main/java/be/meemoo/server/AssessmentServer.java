@@ -0,0 +1,174 @@
+package be.meemoo.server;
+
+import be.meemoo.App;
+import be.meemoo.reader.RecordReader;
+import be.meemoo.writer.ResultWriter;
+import com.opencsv.exceptions.CsvValidationException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import de.gwdg.metadataqa.api.calculator.CalculatorFacade;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Assesses batches of records posted to a local HTTP endpoint, with the schema and measurements loaded once.
+ * Requests are handled concurrently by a pool of workers, each keeping its own calculator.
+ *
+ * <pre>
+ * curl --data-binary @records.ndjson 'http://localhost:8080/assess?format=csv'
+ * </pre>
+ */
+public class AssessmentServer {
+
+    private static final Logger logger = Logger.getLogger(AssessmentServer.class.getCanonicalName());
+
+    public static final String PATH = "/assess";
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    public interface ReaderFactory {
+        RecordReader<?> open(BufferedReader input, CalculatorFacade calculator) throws IOException, CsvValidationException;
+    }
+
+    public interface WriterFactory {
+        ResultWriter open(String format, BufferedWriter output);
+    }
+
+    private final ReaderFactory readerFactory;
+    private final WriterFactory writerFactory;
+    private final String defaultFormat;
+    private final List<String> header;
+    private final ThreadLocal<CalculatorFacade> calculators;
+    private final ExecutorService workers;
+    private final HttpServer server;
+
+    public AssessmentServer(int port, ReaderFactory readerFactory, WriterFactory writerFactory, String defaultFormat,
+                            List<String> header, Supplier<CalculatorFacade> calculatorFactory, int threads) throws IOException {
+        this.readerFactory = readerFactory;
+        this.writerFactory = writerFactory;
+        this.defaultFormat = defaultFormat;
+        this.header = header;
+        this.calculators = ThreadLocal.withInitial(calculatorFactory);
+
+        AtomicInteger workerCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, task -> {
+            Thread worker = new Thread(task, "mqa-server-" + workerCount.getAndIncrement());
+            worker.setDaemon(true);
+            return worker;
+        });
+
+        // only local clients can connect
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.server.createContext(PATH, this::assess);
+        this.server.setExecutor(workers);
+    }
+
+    public void start() {
+        server.start();
+        logger.info(String.format("Listening on http://%s:%s%s ", server.getAddress().getHostString(), getPort(), PATH));
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        server.stop(0);
+        workers.shutdown();
+    }
+
+    private void assess(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                sendError(exchange, 405, "Post the records to assess");
+                return;
+            }
+
+            String format = getQueryParameters(exchange).getOrDefault("format", defaultFormat);
+            if (!List.of(App.NDJSON, App.JSON, App.CSV, App.CSVJSON).contains(format)) {
+                sendError(exchange, 400, "Unknown format: " + format);
+                return;
+            }
+
+            CalculatorFacade calculator = calculators.get();
+            RecordReader<?> reader;
+            try {
+                reader = readerFactory.open(new BufferedReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)), calculator);
+                reader.configure(calculator);
+            } catch (IOException | CsvValidationException | RuntimeException e) {
+                sendError(exchange, 400, "Records can not be read: " + e.getMessage());
+                return;
+            }
+
+            // results are streamed, as the records are read from the request
+            exchange.getResponseHeaders().set("Content-Type", getContentType(format));
+            exchange.sendResponseHeaders(200, 0);
+            BufferedWriter output = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), BUFFER_SIZE);
+            long records = 0;
+            try (ResultWriter writer = writerFactory.open(format, output)) {
+                writer.writeHeader(header);
+                records = writeResults(reader, calculator, writer);
+            } catch (IOException | RuntimeException e) {
+                // the response has started, so the client only sees it end early
+                logger.severe(String.format("Assessment failed after %s records: %s", records, e.getMessage()));
+            }
+        }
+    }
+
+    private static <T> long writeResults(RecordReader<T> reader, CalculatorFacade calculator, ResultWriter writer) throws IOException {
+        long records = 0;
+        while (reader.hasNext()) {
+            writer.writeResult(reader.measure(calculator, reader.read()));
+            records++;
+        }
+        return records;
+    }
+
+    private static Map<String, String> getQueryParameters(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null)
+            return parameters;
+        for (String parameter : query.split("&")) {
+            int separator = parameter.indexOf('=');
+            if (separator > 0)
+                parameters.put(URLDecoder.decode(parameter.substring(0, separator), StandardCharsets.UTF_8),
+                        URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    private static String getContentType(String format) {
+        switch (format) {
+            case App.CSV:
+            case App.CSVJSON:
+                return "text/csv; charset=utf-8";
+            case App.NDJSON:
+                return "application/x-ndjson; charset=utf-8";
+            default:
+                return "application/json; charset=utf-8";
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+}
@@ -0,0 +1,189 @@
+package be.meemoo.stats;
+
+import de.gwdg.metadataqa.api.interfaces.MetricResult;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Estimates the mean of every column from the results of sampled records, with a confidence interval. The records
+ * can be stratified by the value of a field: the estimate of a stratum is then weighed by its share of all records
+ * read. Once the whole input was read, intervals are narrowed by the part of each stratum that was sampled, so a
+ * stratum sampled completely has no error. Before that, or when reading stopped early, the size of a stratum is not
+ * known. Records are counted on the reading thread, results can be added from any thread.
+ */
+public class Sample {
+
+    public static final double CONFIDENCE = 0.95;
+    // z-score of the confidence interval
+    public static final double Z = 1.959964;
+    // intervals of fewer values are not trusted to decide when to stop
+    public static final int MIN_COUNT = 30;
+    // the intervals are compared with the width after every number of results
+    private static final int CHECK_EVERY = 100;
+
+    private final List<String> columns;
+    private final double width;
+    private final Map<String, Stratum> strata = new ConcurrentHashMap<>();
+    private long sampled = 0;
+    private volatile boolean precise = false;
+    private volatile boolean readAll = false;
+
+    /**
+     * @param width the width every interval should be narrower than, 0 to never stop early
+     */
+    public Sample(List<String> columns, double width) {
+        this.columns = columns;
+        this.width = width;
+    }
+
+    /**
+     * Count a record read from the input, sampled or not.
+     */
+    public void count(String stratum) {
+        getStratum(stratum).records.increment();
+    }
+
+    /**
+     * Mark that every record of the input was read and counted.
+     */
+    public void readAll() {
+        readAll = true;
+    }
+
+    /**
+     * Whether every record of the input was read, rather than reading stopped once the estimates were precise.
+     */
+    public boolean isReadAll() {
+        return readAll;
+    }
+
+    /**
+     * Add the results of a sampled record.
+     */
+    public synchronized void add(String stratum, Map<String, List<MetricResult>> result) {
+        getStratum(stratum).statistics.add(result);
+        sampled++;
+        if (width > 0 && sampled % CHECK_EVERY == 0)
+            precise = isNarrowerThan(width);
+    }
+
+    private Stratum getStratum(String stratum) {
+        return strata.computeIfAbsent(stratum, s -> new Stratum(columns));
+    }
+
+    /**
+     * Whether the interval of every column is narrower than the width, so no more records are needed.
+     */
+    public boolean isPrecise() {
+        return precise;
+    }
+
+    private boolean isNarrowerThan(double width) {
+        boolean measured = false;
+        for (int i = 0; i < columns.size(); i++) {
+            Estimate estimate = estimate(i);
+            // columns without values, like extracted fields, can not be estimated
+            if (estimate.getCount() == 0)
+                continue;
+            if (estimate.getCount() < MIN_COUNT || estimate.getHigh() - estimate.getLow() >= width)
+                return false;
+            measured = true;
+        }
+        return measured;
+    }
+
+    public synchronized Estimate estimate(int column) {
+        long count = 0;
+        double records = 0;
+        double sum = 0;
+        double variance = 0;
+        for (Stratum stratum : strata.values()) {
+            Statistics statistics = stratum.statistics;
+            long n = statistics.getCount(column);
+            if (n == 0)
+                continue;
+            // strata without values for the column are left out, and the others weighed by their records alone
+            double size = stratum.records.sum();
+            double sampleVariance = n > 1 ? statistics.getVariance(column) * n / (n - 1) : 0;
+            // the finite population correction, only when the size of the stratum is known
+            double unsampled = readAll ? Math.max(0, 1 - statistics.getRecords() / size) : 1;
+            count += n;
+            records += size;
+            sum += size * statistics.getMean(column);
+            variance += size * size * sampleVariance / n * unsampled;
+        }
+        if (count == 0)
+            return new Estimate(0, Double.NaN, Double.NaN);
+        return new Estimate(count, sum / records, Math.sqrt(variance) / records);
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    public long getRecords() {
+        long records = 0;
+        for (Stratum stratum : strata.values())
+            records += stratum.records.sum();
+        return records;
+    }
+
+    public synchronized long getSampled() {
+        return sampled;
+    }
+
+    /**
+     * The number of records read and sampled of every stratum, in the order of their values.
+     */
+    public synchronized Map<String, long[]> getStrata() {
+        Map<String, long[]> counts = new TreeMap<>();
+        for (Map.Entry<String, Stratum> entry : strata.entrySet())
+            counts.put(entry.getKey(), new long[]{entry.getValue().records.sum(), entry.getValue().statistics.getRecords()});
+        return counts;
+    }
+
+    private static class Stratum {
+        private final LongAdder records = new LongAdder();
+        private final Statistics statistics;
+
+        private Stratum(List<String> columns) {
+            this.statistics = new Statistics(columns);
+        }
+    }
+
+    public static class Estimate {
+        private final long count;
+        private final double mean;
+        private final double standardError;
+
+        private Estimate(long count, double mean, double standardError) {
+            this.count = count;
+            this.mean = mean;
+            this.standardError = standardError;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMean() {
+            return mean;
+        }
+
+        public double getStandardError() {
+            return standardError;
+        }
+
+        public double getLow() {
+            return mean - Z * standardError;
+        }
+
+        public double getHigh() {
+            return mean + Z * standardError;
+        }
+    }
+}
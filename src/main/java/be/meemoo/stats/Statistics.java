@@ -0,0 +1,240 @@
+package be.meemoo.stats;
+
+import de.gwdg.metadataqa.api.interfaces.MetricResult;
+import de.gwdg.metadataqa.api.util.CompressionLevel;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Running statistics for every column of the assessment output: count, sum, min, max, mean, variance and a
+ * histogram. Values are kept in primitive arrays, so adding a record does not allocate.
+ */
+public class Statistics implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // the histogram splits [0, 1] in equal buckets, other values are counted below or above it
+    public static final int BUCKETS = 10;
+
+    private final List<String> columns;
+    private long records = 0;
+    private final long[] count;
+    private final double[] sum;
+    private final double[] min;
+    private final double[] max;
+    private final double[] mean;
+    // sum of squared differences from the mean (Welford)
+    private final double[] m2;
+    private final long[][] histogram;
+    private final long[] below;
+    private final long[] above;
+
+    public Statistics(List<String> columns) {
+        int size = columns.size();
+        this.columns = columns;
+        this.count = new long[size];
+        this.sum = new double[size];
+        this.min = new double[size];
+        this.max = new double[size];
+        this.mean = new double[size];
+        this.m2 = new double[size];
+        this.histogram = new long[size][BUCKETS];
+        this.below = new long[size];
+        this.above = new long[size];
+        Arrays.fill(min, Double.POSITIVE_INFINITY);
+        Arrays.fill(max, Double.NEGATIVE_INFINITY);
+    }
+
+    /**
+     * Add the results of one record. The values are taken in the same order as the header of the calculator. They
+     * are read from the result maps as they are, without formatting them as text first, except for results holding
+     * more than single values, like the counts per language of multilingual saturation.
+     */
+    public void add(Map<String, List<MetricResult>> result) {
+        records++;
+        int column = 0;
+        for (List<MetricResult> metricResults : result.values())
+            for (MetricResult metricResult : metricResults) {
+                Map<?, ?> resultMap = metricResult.getResultMap();
+                if (isFlat(resultMap)) {
+                    for (Object value : resultMap.values()) {
+                        if (column < columns.size())
+                            add(column, toDouble(value));
+                        column++;
+                    }
+                } else {
+                    for (String value : metricResult.getList(false, CompressionLevel.NORMAL)) {
+                        if (column < columns.size())
+                            add(column, parse(value));
+                        column++;
+                    }
+                }
+            }
+    }
+
+    private static boolean isFlat(Map<?, ?> resultMap) {
+        for (Object value : resultMap.values())
+            if (!(value == null || value instanceof Number || value instanceof Boolean || value instanceof String))
+                return false;
+        return true;
+    }
+
+    /**
+     * A value of a result map as a number, like it is written: true as 1, values that are not a number as NaN.
+     */
+    private static double toDouble(Object value) {
+        if (value instanceof Number)
+            return ((Number) value).doubleValue();
+        if (value instanceof Boolean)
+            return (Boolean) value ? 1 : 0;
+        return parse((String) value);
+    }
+
+    /**
+     * Add the values of one record, in the order of the columns.
+     */
+    public void add(double[] values) {
+        records++;
+        for (int i = 0; i < columns.size(); i++)
+            add(i, values[i]);
+    }
+
+    /**
+     * Add a single value to a column, NaN counts as missing.
+     */
+    public void add(int column, double value) {
+        if (Double.isNaN(value))
+            return;
+
+        long n = ++count[column];
+        sum[column] += value;
+        if (value < min[column])
+            min[column] = value;
+        if (value > max[column])
+            max[column] = value;
+        double delta = value - mean[column];
+        mean[column] += delta / n;
+        m2[column] += delta * (value - mean[column]);
+
+        if (value < 0)
+            below[column]++;
+        else if (value > 1)
+            above[column]++;
+        else
+            histogram[column][Math.min(BUCKETS - 1, (int) (value * BUCKETS))]++;
+    }
+
+    /**
+     * Add the statistics of other records, like those of another part of the input, with the same columns.
+     */
+    public void merge(Statistics other) {
+        if (!columns.equals(other.columns))
+            throw new IllegalArgumentException("Statistics of other columns can not be merged");
+        addRecords(other.records);
+        for (int i = 0; i < columns.size(); i++)
+            merge(i, other.count[i], other.sum[i], other.min[i], other.max[i], other.mean[i], other.getVariance(i),
+                    other.histogram[i], other.below[i], other.above[i]);
+    }
+
+    /**
+     * Count records whose values are merged column by column.
+     */
+    public void addRecords(long records) {
+        this.records += records;
+    }
+
+    /**
+     * Add the statistics of a column over other records.
+     *
+     * @param variance the population variance of the values
+     */
+    public void merge(int column, long count, double sum, double min, double max, double mean, double variance,
+                      long[] histogram, long below, long above) {
+        if (count == 0)
+            return;
+
+        long n = this.count[column] + count;
+        // combine the sums of squared differences of both parts (Chan et al.)
+        double delta = mean - this.mean[column];
+        m2[column] += variance * count + delta * delta * this.count[column] * count / n;
+        this.mean[column] += delta * count / n;
+        this.count[column] = n;
+        this.sum[column] += sum;
+        this.min[column] = Math.min(this.min[column], min);
+        this.max[column] = Math.max(this.max[column], max);
+        for (int b = 0; b < BUCKETS; b++)
+            this.histogram[column][b] += histogram[b];
+        this.below[column] += below;
+        this.above[column] += above;
+    }
+
+    /**
+     * Parse a value of the assessment output, values that are not a number (like NA) are returned as NaN.
+     */
+    public static double parse(String value) {
+        if (value == null || value.isEmpty())
+            return Double.NaN;
+        char first = value.charAt(0);
+        if (!(Character.isDigit(first) || first == '-' || first == '.'))
+            return Double.NaN;
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    public long getCount(int column) {
+        return count[column];
+    }
+
+    public long getMissing(int column) {
+        return records - count[column];
+    }
+
+    public double getSum(int column) {
+        return sum[column];
+    }
+
+    public double getMin(int column) {
+        return count[column] == 0 ? Double.NaN : min[column];
+    }
+
+    public double getMax(int column) {
+        return count[column] == 0 ? Double.NaN : max[column];
+    }
+
+    public double getMean(int column) {
+        return count[column] == 0 ? Double.NaN : mean[column];
+    }
+
+    /**
+     * @return the population variance of a column
+     */
+    public double getVariance(int column) {
+        return count[column] == 0 ? Double.NaN : m2[column] / count[column];
+    }
+
+    public long[] getHistogram(int column) {
+        return histogram[column];
+    }
+
+    public long getBelow(int column) {
+        return below[column];
+    }
+
+    public long getAbove(int column) {
+        return above[column];
+    }
+}
@@ -0,0 +1,256 @@
+package be.meemoo.stats;
+
+import de.gwdg.metadataqa.api.interfaces.MetricResult;
+import de.gwdg.metadataqa.api.util.CompressionLevel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the records with the lowest values of some columns, like the least complete records, in a heap of a fixed size
+ * per column. Every thread offers its results to heaps of its own, so measuring threads never wait for each other,
+ * and the heaps of all threads are merged when the worst records are taken.
+ */
+public class WorstRecords {
+
+    private final List<String> columns;
+    private final int[] columnIndex;
+    private final List<String> ids;
+    private final int[] idIndex;
+    private final int size;
+    private final int width;
+
+    private final List<Heap[]> threadHeaps = new ArrayList<>();
+    private final ThreadLocal<Heap[]> heaps = ThreadLocal.withInitial(this::newHeaps);
+    private final ThreadLocal<String[]> values;
+
+    /**
+     * @param header the header of the results
+     * @param columns the columns to keep the worst records of
+     * @param ids the columns identifying a record, like extracted fields
+     * @param size the number of records kept per column
+     */
+    public WorstRecords(List<String> header, List<String> columns, List<String> ids, int size) {
+        if (size < 1)
+            throw new IllegalArgumentException("At least one record should be kept per column: " + size);
+        this.columns = columns;
+        this.columnIndex = indexOf(header, columns);
+        this.ids = ids;
+        this.idIndex = indexOf(header, ids);
+        this.size = size;
+        this.width = header.size();
+        this.values = ThreadLocal.withInitial(() -> new String[width]);
+    }
+
+    /**
+     * The positions of columns in the header, by their name or the name after their calculator, like cp_id for
+     * extractable:cp_id.
+     */
+    private static int[] indexOf(List<String> header, List<String> columns) {
+        int[] index = new int[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            index[i] = header.indexOf(columns.get(i));
+            for (int j = 0; j < header.size() && index[i] < 0; j++)
+                if (header.get(j).endsWith(":" + columns.get(i)))
+                    index[i] = j;
+            if (index[i] < 0)
+                throw new IllegalArgumentException("Column not found in the results: " + columns.get(i));
+        }
+        return index;
+    }
+
+    private Heap[] newHeaps() {
+        Heap[] heaps = new Heap[columns.size()];
+        for (int i = 0; i < heaps.length; i++)
+            heaps[i] = new Heap(size);
+        synchronized (threadHeaps) {
+            threadHeaps.add(heaps);
+        }
+        return heaps;
+    }
+
+    /**
+     * Offer the result of a record to the heap of every column, on the heaps of the calling thread.
+     *
+     * @param source the input of the record
+     * @param offset the number of the record in its input
+     */
+    public void offer(Map<String, List<MetricResult>> result, String source, long offset) {
+        String[] values = this.values.get();
+        int column = 0;
+        for (List<MetricResult> metricResults : result.values())
+            for (MetricResult metricResult : metricResults)
+                for (String value : metricResult.getList(false, CompressionLevel.NORMAL)) {
+                    if (column < width)
+                        values[column] = value;
+                    column++;
+                }
+        Arrays.fill(values, Math.min(column, width), width, null);
+
+        Heap[] heaps = this.heaps.get();
+        String[] recordIds = null;
+        for (int i = 0; i < columnIndex.length; i++) {
+            double score = Statistics.parse(values[columnIndex[i]]);
+            if (Double.isNaN(score) || !heaps[i].accepts(score, offset))
+                continue;
+            // the ids are only copied for records that are kept
+            if (recordIds == null) {
+                recordIds = new String[idIndex.length];
+                for (int j = 0; j < idIndex.length; j++)
+                    recordIds[j] = values[idIndex[j]];
+            }
+            heaps[i].add(score, source, offset, recordIds);
+        }
+    }
+
+    /**
+     * The worst records of a column over all threads, from the lowest value up.
+     */
+    public List<Entry> getWorst(int column) {
+        Heap merged = new Heap(size);
+        synchronized (threadHeaps) {
+            for (Heap[] heaps : threadHeaps)
+                merged.merge(heaps[column]);
+        }
+        return merged.sorted();
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    public List<String> getIds() {
+        return ids;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * A record kept for its value of a column.
+     */
+    public static class Entry {
+        private final double score;
+        private final String source;
+        private final long offset;
+        private final String[] ids;
+
+        private Entry(double score, String source, long offset, String[] ids) {
+            this.score = score;
+            this.source = source;
+            this.offset = offset;
+            this.ids = ids;
+        }
+
+        public double getScore() {
+            return score;
+        }
+
+        public String getSource() {
+            return source;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * @return the values of the id columns, in their order
+         */
+        public String[] getIds() {
+            return ids;
+        }
+    }
+
+    /**
+     * A max-heap of the lowest values in parallel primitive arrays, so the highest value kept is the first replaced.
+     * Of equal values, the records later in the input are replaced first.
+     */
+    static class Heap {
+        private final double[] scores;
+        private final long[] offsets;
+        private final String[] sources;
+        private final String[][] ids;
+        private int count = 0;
+
+        Heap(int size) {
+            this.scores = new double[size];
+            this.offsets = new long[size];
+            this.sources = new String[size];
+            this.ids = new String[size][];
+        }
+
+        private boolean above(int i, double score, long offset) {
+            return scores[i] > score || (scores[i] == score && offsets[i] > offset);
+        }
+
+        boolean accepts(double score, long offset) {
+            return count < scores.length || above(0, score, offset);
+        }
+
+        void add(double score, String source, long offset, String[] recordIds) {
+            if (count < scores.length) {
+                set(count, score, source, offset, recordIds);
+                siftUp(count++);
+            } else if (above(0, score, offset)) {
+                set(0, score, source, offset, recordIds);
+                siftDown(0);
+            }
+        }
+
+        void merge(Heap other) {
+            for (int i = 0; i < other.count; i++)
+                add(other.scores[i], other.sources[i], other.offsets[i], other.ids[i]);
+        }
+
+        private void set(int i, double score, String source, long offset, String[] recordIds) {
+            scores[i] = score;
+            sources[i] = source;
+            offsets[i] = offset;
+            ids[i] = recordIds;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (!above(i, scores[parent], offsets[parent]))
+                    return;
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int largest = i;
+                for (int child = 2 * i + 1; child <= 2 * i + 2 && child < count; child++)
+                    if (above(child, scores[largest], offsets[largest]))
+                        largest = child;
+                if (largest == i)
+                    return;
+                swap(i, largest);
+                i = largest;
+            }
+        }
+
+        private void swap(int i, int j) {
+            double score = scores[i];
+            String source = sources[i];
+            long offset = offsets[i];
+            String[] recordIds = ids[i];
+            set(i, scores[j], sources[j], offsets[j], ids[j]);
+            set(j, score, source, offset, recordIds);
+        }
+
+        List<Entry> sorted() {
+            List<Entry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++)
+                entries.add(new Entry(scores[i], sources[i], offsets[i], ids[i]));
+            entries.sort((a, b) -> a.score != b.score ? Double.compare(a.score, b.score) : Long.compare(a.offset, b.offset));
+            return entries;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package be.meemoo.writer;
+
+import be.meemoo.reader.CSVTokenizer;
+import be.meemoo.stats.Statistics;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.opencsv.CSVWriter;
+import de.gwdg.metadataqa.api.interfaces.MetricResult;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Folds all results into summary statistics per column, and writes them as a single report when closed.
+ */
+public class AggregateResultWriter extends ResultWriter {
+
+    private final boolean csv;
+    private Statistics statistics;
+
+    public AggregateResultWriter(String outputFile, boolean csv) throws IOException {
+        super(outputFile);
+        this.csv = csv;
+    }
+
+    public AggregateResultWriter(boolean csv) {
+        super();
+        this.csv = csv;
+    }
+
+    public AggregateResultWriter(BufferedWriter outputWriter, boolean csv) {
+        super(outputWriter);
+        this.csv = csv;
+    }
+
+    @Override
+    public void writeHeader(List<String> header) throws IOException {
+        this.statistics = new Statistics(header);
+    }
+
+    @Override
+    public void writeResult(Map<String, List<MetricResult>> result) throws IOException {
+        statistics.add(result);
+    }
+
+    @Override
+    public byte[] getState() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(statistics);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public void restoreState(List<String> header, byte[] state) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(state))) {
+            this.statistics = (Statistics) in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Invalid checkpoint", e);
+        }
+    }
+
+    public Statistics getStatistics() {
+        return statistics;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (statistics != null) {
+            if (csv)
+                writeCsv(statistics);
+            else
+                writeJson(statistics);
+        }
+        super.close();
+    }
+
+    private void writeJson(Statistics statistics) throws IOException {
+        JsonGenerator generator = new JsonFactory().createGenerator(outputWriter);
+        generator.writeStartObject();
+        generator.writeNumberField("records", statistics.getRecords());
+        writeColumns(generator, statistics);
+        generator.writeEndObject();
+        generator.flush();
+        outputWriter.newLine();
+    }
+
+    /**
+     * Write the statistics of every column as the fields of a columns object.
+     */
+    static void writeColumns(JsonGenerator generator, Statistics statistics) throws IOException {
+        generator.writeObjectFieldStart("columns");
+        for (int i = 0; i < statistics.getColumns().size(); i++) {
+            generator.writeObjectFieldStart(statistics.getColumns().get(i));
+            generator.writeNumberField("count", statistics.getCount(i));
+            generator.writeNumberField("missing", statistics.getMissing(i));
+            writeNumberField(generator, "sum", statistics.getSum(i));
+            writeNumberField(generator, "min", statistics.getMin(i));
+            writeNumberField(generator, "max", statistics.getMax(i));
+            writeNumberField(generator, "mean", statistics.getMean(i));
+            writeNumberField(generator, "variance", statistics.getVariance(i));
+            generator.writeFieldName("histogram");
+            generator.writeArray(statistics.getHistogram(i), 0, Statistics.BUCKETS);
+            generator.writeNumberField("below", statistics.getBelow(i));
+            generator.writeNumberField("above", statistics.getAbove(i));
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+    }
+
+    static void writeNumberField(JsonGenerator generator, String name, double value) throws IOException {
+        if (Double.isNaN(value))
+            generator.writeNullField(name);
+        else
+            generator.writeNumberField(name, value);
+    }
+
+    private void writeCsv(Statistics statistics) throws IOException {
+        CSVWriter csvWriter = new CSVWriter(outputWriter);
+
+        List<String> header = new ArrayList<>(List.of("metric", "count", "missing", "sum", "min", "max", "mean", "variance"));
+        for (int b = 0; b < Statistics.BUCKETS; b++)
+            header.add("histogram_" + b);
+        header.add("below");
+        header.add("above");
+        csvWriter.writeNext(header.toArray(new String[0]));
+
+        for (int i = 0; i < statistics.getColumns().size(); i++) {
+            List<String> row = new ArrayList<>();
+            row.add(statistics.getColumns().get(i));
+            row.add(String.valueOf(statistics.getCount(i)));
+            row.add(String.valueOf(statistics.getMissing(i)));
+            row.add(format(statistics.getSum(i)));
+            row.add(format(statistics.getMin(i)));
+            row.add(format(statistics.getMax(i)));
+            row.add(format(statistics.getMean(i)));
+            row.add(format(statistics.getVariance(i)));
+            for (long bucket : statistics.getHistogram(i))
+                row.add(String.valueOf(bucket));
+            row.add(String.valueOf(statistics.getBelow(i)));
+            row.add(String.valueOf(statistics.getAbove(i)));
+            csvWriter.writeNext(row.toArray(new String[0]));
+        }
+        csvWriter.flush();
+    }
+
+    static String format(double value) {
+        return Double.isNaN(value) ? "NA" : String.valueOf(value);
+    }
+
+    /**
+     * Read the statistics of a report written before, e.g. to merge the reports of shards.
+     */
+    public static Statistics read(Reader input, boolean csv) throws IOException {
+        return csv ? readCsv(input) : readJson(input);
+    }
+
+    private static Statistics readJson(Reader input) throws IOException {
+        JsonNode report = new ObjectMapper().readTree(input);
+        JsonNode columns = report.path("columns");
+        List<String> names = new ArrayList<>();
+        columns.fieldNames().forEachRemaining(names::add);
+
+        Statistics statistics = new Statistics(names);
+        statistics.addRecords(report.path("records").asLong());
+        for (int i = 0; i < names.size(); i++) {
+            JsonNode column = columns.get(names.get(i));
+            long[] histogram = new long[Statistics.BUCKETS];
+            for (int b = 0; b < Statistics.BUCKETS; b++)
+                histogram[b] = column.path("histogram").path(b).asLong();
+            statistics.merge(i, column.path("count").asLong(), number(column.path("sum")),
+                    number(column.path("min")), number(column.path("max")), number(column.path("mean")),
+                    number(column.path("variance")), histogram,
+                    column.path("below").asLong(), column.path("above").asLong());
+        }
+        return statistics;
+    }
+
+    private static double number(JsonNode node) {
+        return node.isNumber() ? node.asDouble() : Double.NaN;
+    }
+
+    private static Statistics readCsv(Reader input) throws IOException {
+        CSVTokenizer tokenizer = new CSVTokenizer(input);
+        tokenizer.readNext();
+        List<String[]> rows = new ArrayList<>();
+        String[] row;
+        while ((row = tokenizer.readNext()) != null)
+            rows.add(row);
+
+        List<String> names = new ArrayList<>();
+        for (String[] columnRow : rows)
+            names.add(columnRow[0]);
+        Statistics statistics = new Statistics(names);
+        // the csv report has no number of records, which is the same for every column
+        if (!rows.isEmpty())
+            statistics.addRecords(Long.parseLong(rows.get(0)[1]) + Long.parseLong(rows.get(0)[2]));
+        for (int i = 0; i < rows.size(); i++) {
+            String[] values = rows.get(i);
+            long[] histogram = new long[Statistics.BUCKETS];
+            for (int b = 0; b < Statistics.BUCKETS; b++)
+                histogram[b] = Long.parseLong(values[8 + b]);
+            statistics.merge(i, Long.parseLong(values[1]), Statistics.parse(values[3]),
+                    Statistics.parse(values[4]), Statistics.parse(values[5]), Statistics.parse(values[6]),
+                    Statistics.parse(values[7]), histogram,
+                    Long.parseLong(values[8 + Statistics.BUCKETS]), Long.parseLong(values[9 + Statistics.BUCKETS]));
+        }
+        return statistics;
+    }
+}
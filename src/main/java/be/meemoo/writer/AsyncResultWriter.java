@@ -0,0 +1,203 @@
+package be.meemoo.writer;
+
+import de.gwdg.metadataqa.api.interfaces.MetricResult;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Writes results to another result writer on a dedicated thread, so formatting and writing the output overlaps with
+ * measuring. Results are handed over in batches through a bounded queue, which blocks the measuring thread when the
+ * output can not keep up. Errors of the writer thread are thrown by the next write, flush or close.
+ */
+public class AsyncResultWriter extends ResultWriter {
+
+    public static final int BATCH_SIZE = 256;
+    public static final int BATCHES = 2;
+
+    private final ResultWriter writer;
+    private final int batchSize;
+    private final BlockingQueue<Batch> filled;
+    private final Thread writerThread;
+    private volatile IOException failure;
+
+    private Batch current;
+    private boolean closed = false;
+
+    public AsyncResultWriter(ResultWriter writer) {
+        this(writer, BATCH_SIZE, BATCHES);
+    }
+
+    /**
+     * @param buffered the number of results that can wait to be written, handed over in batches of up to
+     *                 {@link #BATCH_SIZE}
+     */
+    public static AsyncResultWriter of(ResultWriter writer, int buffered) {
+        if (buffered < 1)
+            throw new IllegalArgumentException("At least one result should be buffered: " + buffered);
+        int batchSize = Math.min(BATCH_SIZE, buffered);
+        return new AsyncResultWriter(writer, batchSize, Math.max(1, buffered / batchSize));
+    }
+
+    /**
+     * @param batches the number of batches that can wait to be written, besides the one being filled
+     */
+    public AsyncResultWriter(ResultWriter writer, int batchSize, int batches) {
+        super(writer.outputWriter);
+        this.writer = writer;
+        this.batchSize = batchSize;
+        this.filled = new ArrayBlockingQueue<>(batches);
+        this.current = new Batch(batchSize);
+
+        this.writerThread = new Thread(this::drain, "mqa-writer");
+        // results that are not written when the assessment fails without closing the writer are lost anyway
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    private void drain() {
+        try {
+            while (true) {
+                Batch batch = filled.take();
+                if (batch == Batch.END)
+                    return;
+                // after a failure batches are still taken, so the measuring thread does not block
+                if (failure == null)
+                    write(batch);
+                if (batch.flushed != null)
+                    batch.flushed.countDown();
+            }
+        } catch (InterruptedException e) {
+            // closed without waiting for the output
+        }
+    }
+
+    private void write(Batch batch) {
+        try {
+            for (Map<String, List<MetricResult>> result : batch.results)
+                writer.writeResult(result);
+            if (batch.flushed != null)
+                writer.flush();
+        } catch (IOException | RuntimeException e) {
+            failure = e instanceof IOException ? (IOException) e : new IOException(e);
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null)
+            throw new IOException("Writing output failed", failure);
+    }
+
+    private void handOff(Batch batch) throws IOException {
+        try {
+            filled.put(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    @Override
+    public void writeResult(Map<String, List<MetricResult>> result) throws IOException {
+        checkFailure();
+        current.results.add(result);
+        if (current.results.size() == batchSize) {
+            handOff(current);
+            current = new Batch(batchSize);
+        }
+    }
+
+    @Override
+    public void writeHeader(List<String> header) throws IOException {
+        flush();
+        writer.writeHeader(header);
+    }
+
+    /**
+     * Waits until all results are written, and flushes the writer.
+     */
+    @Override
+    public void flush() throws IOException {
+        checkFailure();
+        Batch batch = current;
+        batch.flushed = new CountDownLatch(1);
+        handOff(batch);
+        current = new Batch(batchSize);
+        try {
+            batch.flushed.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        checkFailure();
+    }
+
+    @Override
+    public byte[] getState() throws IOException {
+        flush();
+        return writer.getState();
+    }
+
+    @Override
+    public void restoreState(List<String> header, byte[] state) throws IOException {
+        flush();
+        writer.restoreState(header, state);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!stop())
+            return;
+        try {
+            writer.close();
+        } finally {
+            checkFailure();
+        }
+    }
+
+    @Override
+    public void abort() throws IOException {
+        if (stop())
+            writer.abort();
+    }
+
+    /**
+     * Wait until the results handed off are written, and stop the writer thread.
+     *
+     * @return whether the writer thread was running
+     */
+    private boolean stop() throws IOException {
+        if (closed)
+            return false;
+        closed = true;
+        try {
+            if (!current.results.isEmpty())
+                filled.put(current);
+            filled.put(Batch.END);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            writerThread.interrupt();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        return true;
+    }
+
+    private static class Batch {
+        private static final Batch END = new Batch(0);
+
+        private final List<Map<String, List<MetricResult>>> results;
+        // set when the writer should be flushed after the batch
+        private CountDownLatch flushed;
+
+        private Batch(int size) {
+            this.results = new ArrayList<>(size);
+        }
+    }
+}
@@ -1,42 +1,100 @@
 package be.meemoo.writer;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import de.gwdg.metadataqa.api.interfaces.MetricResult;
-import de.gwdg.metadataqa.api.json.JsonUtils;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
-import java.util.LinkedHashMap;
+import java.io.Writer;
 import java.util.List;
 import java.util.Map;
 
 public class CSVJSONResultWriter extends CSVResultWriter {
 
+    // the JSON of a result is streamed into a single quoted CSV cell
+    private final JsonGenerator generator;
+
     public CSVJSONResultWriter(String outputFile) throws IOException {
         super(outputFile);
+        this.generator = createGenerator();
     }
 
     public CSVJSONResultWriter() {
         super();
+        this.generator = createGenerator();
+    }
+
+    public CSVJSONResultWriter(BufferedWriter outputWriter) {
+        super(outputWriter);
+        this.generator = createGenerator();
+    }
+
+    private JsonGenerator createGenerator() {
+        JsonGenerator generator = JSONResultWriter.createGenerator(new QuoteEscapingWriter(outputWriter));
+        // the generator is flushed after every record, which should not flush the output
+        generator.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+        return generator;
     }
 
     @Override
     public void writeResult(Map<String, List<MetricResult>> result) throws IOException {
-        Map<String, Object> map = new LinkedHashMap<>();
-        for (Map.Entry<String, List<MetricResult>> entry : result.entrySet()) {
-            Map<String, Object> calcResult = new LinkedHashMap<>();
+        outputWriter.write('"');
+        JSONResultWriter.writeJson(generator, result);
+        generator.flush();
+        outputWriter.write("\"\n");
+    }
+
+    @Override
+    public void writeHeader(List<String> header) throws IOException {
+        row.add("json_data");
+        row.writeTo(outputWriter);
+    }
+
+    /**
+     * Doubles the quotes written to a CSV cell, like OpenCSV does.
+     */
+    private static class QuoteEscapingWriter extends Writer {
+        private final Writer out;
 
-            for (MetricResult metricResult : entry.getValue()) {
-                calcResult.put(metricResult.getName(), metricResult.getResultMap());
+        private QuoteEscapingWriter(Writer out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(char[] chars, int off, int len) throws IOException {
+            int end = off + len;
+            int start = off;
+            for (int i = off; i < end; i++) {
+                if (chars[i] == '"') {
+                    // write up to and including the quote, which is written again by the next part
+                    out.write(chars, start, i + 1 - start);
+                    start = i;
+                }
             }
-            map.put(entry.getKey(), calcResult);
+            out.write(chars, start, end - start);
         }
 
-        String json = JsonUtils.toJson(map);
+        @Override
+        public void write(String s, int off, int len) throws IOException {
+            for (int i = off; i < off + len; i++)
+                write(s.charAt(i));
+        }
 
-        csvWriter.writeNext(new String[]{json});
-    }
+        @Override
+        public void write(int c) throws IOException {
+            if (c == '"')
+                out.write(c);
+            out.write(c);
+        }
 
-    @Override
-    public void writeHeader(List<String> header) throws IOException {
-        this.csvWriter.writeNext(new String[]{"json_data"});
+        @Override
+        public void flush() throws IOException {
+            // the output is flushed by the result writer
+        }
+
+        @Override
+        public void close() {
+            // the output is closed by the result writer
+        }
     }
 }
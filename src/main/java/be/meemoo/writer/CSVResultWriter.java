@@ -1,56 +1,123 @@
 package be.meemoo.writer;
 
-import com.opencsv.CSVWriter;
 import de.gwdg.metadataqa.api.interfaces.MetricResult;
 import de.gwdg.metadataqa.api.util.CompressionLevel;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 public class CSVResultWriter extends ResultWriter{
 
-    protected final CSVWriter csvWriter;
+    // rows of results are built in a reusable buffer, rather than through a list and array of cells per record
+    protected final CSVRowBuffer row = new CSVRowBuffer();
+
+    // kinds of values, whose cells getList may format in their own way
+    private static final int NULL = 1;
+    private static final int STRING = 1 << 1;
+    private static final int BOOLEAN = 1 << 2;
+    private static final int INTEGER = 1 << 3;
+    private static final int WHOLE_DOUBLE = 1 << 4;
+    private static final int DOUBLE = 1 << 5;
+    private static final int EXPONENT_DOUBLE = 1 << 6;
+    private static final int OTHER = 1 << 7;
+
+    // for every class of results, the kinds of values getList was found to format like their strings, and not to
+    private final Map<Class<?>, int[]> checkedKinds = new HashMap<>();
 
     public CSVResultWriter(String outputFile) throws IOException {
         super(outputFile);
-        this.csvWriter = new CSVWriter(outputWriter);
-
     }
 
     public CSVResultWriter() {
         super();
-        this.csvWriter = new CSVWriter(outputWriter);
     }
 
+    public CSVResultWriter(BufferedWriter outputWriter) {
+        super(outputWriter);
+    }
+
+    /**
+     * Write the values of the results straight into the row when getList formats them like their strings, which is
+     * checked once for every class of results and kind of values, and otherwise the cells of getList.
+     */
     @Override
     public void writeResult(Map<String, List<MetricResult>> result) throws IOException {
-        List<String> output = new ArrayList<>();
-
-        for (Map.Entry<String, List<MetricResult>> entry : result.entrySet())
-            for (MetricResult metricResult : entry.getValue()) {
-                List<String> list = metricResult.getList(false, CompressionLevel.NORMAL);
-                output.addAll(list);
+        for (List<MetricResult> metricResults : result.values())
+            for (int i = 0; i < metricResults.size(); i++) {
+                MetricResult metricResult = metricResults.get(i);
+                Map<?, ?> resultMap = metricResult.getResultMap();
+                if (resultMap != null && formatsLikeStrings(metricResult, resultMap)) {
+                    for (Object value : resultMap.values())
+                        add(value);
+                } else {
+                    List<String> list = metricResult.getList(false, CompressionLevel.NORMAL);
+                    for (int j = 0; j < list.size(); j++)
+                        row.add(list.get(j));
+                }
             }
 
         // Write results to CSV
-        this.csvWriter.writeNext(output.toArray(new String[0]));
+        row.writeTo(this.outputWriter);
     }
 
-    @Override
-    public void writeHeader(List<String> header) throws IOException {
-        // Switch headers
-        List<String> outputHeader = header.stream()
-                .map(s -> s.replaceAll("(:|/|\\.)", "_")
-                        .toLowerCase()).collect(Collectors.toList());
-        this.csvWriter.writeNext(outputHeader.toArray(new String[0]));
+    private boolean formatsLikeStrings(MetricResult metricResult, Map<?, ?> resultMap) {
+        int kinds = 0;
+        for (Object value : resultMap.values())
+            kinds |= kindOf(value);
+        if ((kinds & OTHER) != 0)
+            return false;
+
+        int[] checked = checkedKinds.computeIfAbsent(metricResult.getClass(), c -> new int[2]);
+        if ((kinds & ~checked[0]) == 0)
+            return true;
+        if ((kinds & checked[1]) != 0)
+            return false;
+
+        List<String> list = metricResult.getList(false, CompressionLevel.NORMAL);
+        boolean same = list.size() == resultMap.size();
+        int j = 0;
+        for (Object value : resultMap.values())
+            same = same && String.valueOf(value).equals(list.get(j++));
+        checked[same ? 0 : 1] |= kinds;
+        return same;
+    }
+
+    private static int kindOf(Object value) {
+        if (value == null)
+            return NULL;
+        if (value instanceof String)
+            return STRING;
+        if (value instanceof Boolean)
+            return BOOLEAN;
+        if (value instanceof Integer || value instanceof Long)
+            return INTEGER;
+        if (value instanceof Double) {
+            double d = (Double) value;
+            if (d == Math.rint(d) && Math.abs(d) < 1e7)
+                return WHOLE_DOUBLE;
+            // Double.toString switches to computerized scientific notation outside this range
+            return Math.abs(d) >= 1e-3 && Math.abs(d) < 1e7 ? DOUBLE : EXPONENT_DOUBLE;
+        }
+        return OTHER;
+    }
+
+    private void add(Object value) {
+        if (value instanceof Integer || value instanceof Long)
+            row.add(((Number) value).longValue());
+        else if (value instanceof Double)
+            row.add(((Double) value).doubleValue());
+        else
+            row.add(String.valueOf(value));
     }
 
     @Override
-    public void close() throws IOException {
-        this.csvWriter.flush();
-        this.csvWriter.close();
+    public void writeHeader(List<String> header) throws IOException {
+        // Switch headers
+        for (String s : header)
+            row.add(s.replaceAll("(:|/|\\.)", "_").toLowerCase());
+        row.writeTo(this.outputWriter);
     }
 }
@@ -0,0 +1,113 @@
+package be.meemoo.writer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Builds CSV rows in a reusable buffer, formatted exactly like the default OpenCSV writer: every cell quoted,
+ * quotes doubled, null cells left empty and rows ended by a new line. Numbers are formatted like their strings,
+ * straight into the buffer.
+ */
+class CSVRowBuffer {
+
+    private static final char SEPARATOR = ',';
+    private static final char QUOTE = '"';
+    private static final char LINE_END = '\n';
+
+    private char[] buffer = new char[1 << 13];
+    private int length = 0;
+    private boolean empty = true;
+    // doubles are formatted here first, which unlike Double.toString creates no string
+    private final StringBuilder number = new StringBuilder(32);
+
+    public void add(String cell) {
+        if (!empty)
+            append(SEPARATOR);
+        empty = false;
+        if (cell == null)
+            return;
+
+        int cellLength = cell.length();
+        ensureCapacity(length + cellLength + 2);
+        buffer[length++] = QUOTE;
+        if (cell.indexOf(QUOTE) < 0) {
+            cell.getChars(0, cellLength, buffer, length);
+            length += cellLength;
+        } else {
+            for (int i = 0; i < cellLength; i++) {
+                char c = cell.charAt(i);
+                if (c == QUOTE)
+                    append(QUOTE);
+                append(c);
+            }
+        }
+        append(QUOTE);
+    }
+
+    /**
+     * Add a cell formatted like {@link Long#toString(long)}.
+     */
+    public void add(long value) {
+        if (!empty)
+            append(SEPARATOR);
+        empty = false;
+
+        // a sign, 19 digits and the quotes
+        ensureCapacity(length + 22);
+        buffer[length++] = QUOTE;
+        if (value < 0)
+            buffer[length++] = '-';
+        // the digits of the negative value, which also holds the smallest long, from the last one
+        long remaining = value < 0 ? value : -value;
+        int start = length;
+        do {
+            buffer[length++] = (char) ('0' - remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+        for (int i = start, j = length - 1; i < j; i++, j--) {
+            char c = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = c;
+        }
+        buffer[length++] = QUOTE;
+    }
+
+    /**
+     * Add a cell formatted like {@link Double#toString(double)}.
+     */
+    public void add(double value) {
+        if (!empty)
+            append(SEPARATOR);
+        empty = false;
+
+        number.setLength(0);
+        number.append(value);
+        int numberLength = number.length();
+        ensureCapacity(length + numberLength + 2);
+        buffer[length++] = QUOTE;
+        number.getChars(0, numberLength, buffer, length);
+        length += numberLength;
+        buffer[length++] = QUOTE;
+    }
+
+    /**
+     * Write the row with its line end, and start a new one.
+     */
+    public void writeTo(Writer writer) throws IOException {
+        append(LINE_END);
+        writer.write(buffer, 0, length);
+        length = 0;
+        empty = true;
+    }
+
+    private void append(char c) {
+        ensureCapacity(length + 1);
+        buffer[length++] = c;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > buffer.length)
+            buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+    }
+}
@@ -0,0 +1,102 @@
+package be.meemoo.writer;
+
+import be.meemoo.reader.FileFollower;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Base64;
+import java.util.Properties;
+
+/**
+ * The progress of an assessment: the number of input records that were written, the length of the output after
+ * writing them, and the state of the result writer. Saved in a sidecar file next to the output. When following an
+ * input, also the position in the input after the last record written.
+ */
+public class Checkpoint {
+
+    private static final String RECORDS = "records";
+    private static final String OUTPUT_LENGTH = "outputLength";
+    private static final String WRITER_STATE = "writerState";
+    private static final String INPUT_KEY = "inputKey";
+    private static final String INPUT_OFFSET = "inputOffset";
+
+    private final long records;
+    private final long outputLength;
+    private final byte[] writerState;
+    private final FileFollower.Position inputPosition;
+
+    public Checkpoint(long records, long outputLength, byte[] writerState) {
+        this(records, outputLength, writerState, null);
+    }
+
+    public Checkpoint(long records, long outputLength, byte[] writerState, FileFollower.Position inputPosition) {
+        this.records = records;
+        this.outputLength = outputLength;
+        this.writerState = writerState;
+        this.inputPosition = inputPosition;
+    }
+
+    public static Path getPath(String outputFile) {
+        return Path.of(outputFile + ".checkpoint");
+    }
+
+    public static Checkpoint load(Path path) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        String state = properties.getProperty(WRITER_STATE);
+        String offset = properties.getProperty(INPUT_OFFSET);
+        return new Checkpoint(
+                Long.parseLong(properties.getProperty(RECORDS)),
+                Long.parseLong(properties.getProperty(OUTPUT_LENGTH)),
+                state == null ? null : Base64.getDecoder().decode(state),
+                offset == null ? null : new FileFollower.Position(properties.getProperty(INPUT_KEY), Long.parseLong(offset)));
+    }
+
+    /**
+     * Save the checkpoint, replacing the previous one at once so a crash never leaves a partial file.
+     */
+    public void save(Path path) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(RECORDS, String.valueOf(records));
+        properties.setProperty(OUTPUT_LENGTH, String.valueOf(outputLength));
+        if (writerState != null)
+            properties.setProperty(WRITER_STATE, Base64.getEncoder().encodeToString(writerState));
+        if (inputPosition != null) {
+            properties.setProperty(INPUT_OFFSET, String.valueOf(inputPosition.getOffset()));
+            if (inputPosition.getFileKey() != null)
+                properties.setProperty(INPUT_KEY, inputPosition.getFileKey());
+        }
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            properties.store(writer, null);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    public long getOutputLength() {
+        return outputLength;
+    }
+
+    public byte[] getWriterState() {
+        return writerState;
+    }
+
+    /**
+     * @return the position in the followed input after the last record written, or null when the input is not followed
+     */
+    public FileFollower.Position getInputPosition() {
+        return inputPosition;
+    }
+}
@@ -0,0 +1,86 @@
+package be.meemoo.writer;
+
+import de.gwdg.metadataqa.api.interfaces.MetricResult;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Saves a checkpoint every number of records or seconds while writing to another result writer, so an assessment can
+ * be resumed. Results should be written in input order. The checkpoint is removed when the writer is closed.
+ */
+public class CheckpointResultWriter extends ResultWriter {
+
+    private static final Logger logger = Logger.getLogger(CheckpointResultWriter.class.getCanonicalName());
+
+    private final ResultWriter writer;
+    private final Path outputFile;
+    private final Path checkpointFile;
+    private final long everyRecords;
+    private final long everyNanos;
+    private final Checkpoint resumeFrom;
+
+    private long records;
+    private long lastCheckpoint = System.nanoTime();
+
+    /**
+     * @param resumeFrom the checkpoint the output was truncated to, or null when starting a new assessment
+     */
+    public CheckpointResultWriter(ResultWriter writer, String outputFile, long everyRecords, long everySeconds, Checkpoint resumeFrom) {
+        super(writer.outputWriter);
+        this.writer = writer;
+        this.outputFile = Path.of(outputFile);
+        this.checkpointFile = Checkpoint.getPath(outputFile);
+        this.everyRecords = everyRecords;
+        this.everyNanos = everySeconds * 1_000_000_000L;
+        this.resumeFrom = resumeFrom;
+        this.records = resumeFrom == null ? 0 : resumeFrom.getRecords();
+    }
+
+    @Override
+    public void writeHeader(List<String> header) throws IOException {
+        // when resuming the header is already in the output
+        if (resumeFrom == null)
+            writer.writeHeader(header);
+        else
+            writer.restoreState(header, resumeFrom.getWriterState());
+    }
+
+    @Override
+    public void writeResult(Map<String, List<MetricResult>> result) throws IOException {
+        writer.writeResult(result);
+        records++;
+        if (records % everyRecords == 0 || System.nanoTime() - lastCheckpoint > everyNanos)
+            save();
+    }
+
+    private void save() throws IOException {
+        writer.flush();
+        new Checkpoint(records, Files.size(outputFile), writer.getState()).save(checkpointFile);
+        lastCheckpoint = System.nanoTime();
+        logger.info(String.format("Checkpoint saved after %s records. ", records));
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+        Files.deleteIfExists(checkpointFile);
+    }
+
+    /**
+     * Keeps the last checkpoint, to resume the assessment from.
+     */
+    @Override
+    public void abort() throws IOException {
+        writer.abort();
+    }
+}
@@ -0,0 +1,120 @@
+package be.meemoo.writer;
+
+import be.meemoo.reader.FileFollower;
+import de.gwdg.metadataqa.api.interfaces.MetricResult;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Writes the results of a followed input to another result writer, which is flushed every interval when results
+ * were written, so they can be read soon after their records were appended. A checkpoint with the position in the
+ * input after the last result is saved with every flush, and kept when the writer is closed, so following the input
+ * again continues where it stopped. Results should be written in input order.
+ */
+public class FollowResultWriter extends ResultWriter {
+
+    private static final Logger logger = Logger.getLogger(FollowResultWriter.class.getCanonicalName());
+
+    private final ResultWriter writer;
+    private final Path outputFile;
+    private final Path checkpointFile;
+    private final Supplier<FileFollower.Position> positions;
+    private final Checkpoint resumeFrom;
+    private final ScheduledExecutorService scheduler;
+
+    private long records;
+    private FileFollower.Position position;
+    private boolean written = false;
+    private boolean closed = false;
+
+    /**
+     * @param positions  the position in the input after every result written, in the same order
+     * @param resumeFrom the checkpoint the output was truncated to, or null when starting a new assessment
+     */
+    public FollowResultWriter(ResultWriter writer, String outputFile, Supplier<FileFollower.Position> positions,
+                              long flushMillis, Checkpoint resumeFrom) {
+        super(writer.outputWriter);
+        this.writer = writer;
+        this.outputFile = Path.of(outputFile);
+        this.checkpointFile = Checkpoint.getPath(outputFile);
+        this.positions = positions;
+        this.resumeFrom = resumeFrom;
+        this.records = resumeFrom == null ? 0 : resumeFrom.getRecords();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "mqa-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushWritten, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void writeHeader(List<String> header) throws IOException {
+        // when resuming the header is already in the output
+        if (resumeFrom == null)
+            writer.writeHeader(header);
+        else
+            writer.restoreState(header, resumeFrom.getWriterState());
+    }
+
+    @Override
+    public synchronized void writeResult(Map<String, List<MetricResult>> result) throws IOException {
+        // results measured while stopping are read again when following the input again
+        if (closed)
+            return;
+        writer.writeResult(result);
+        records++;
+        position = positions.get();
+        written = true;
+    }
+
+    private void flushWritten() {
+        try {
+            flush();
+        } catch (IOException e) {
+            logger.severe("Results could not be flushed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Flush the results written, and save the position after them.
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        if (!written || closed)
+            return;
+        writer.flush();
+        new Checkpoint(records, Files.size(outputFile), writer.getState(), position).save(checkpointFile);
+        written = false;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed)
+            return;
+        scheduler.shutdownNow();
+        flush();
+        closed = true;
+        writer.close();
+        logger.info(String.format("Stopped following after %s records. ", records));
+    }
+
+    @Override
+    public synchronized void abort() throws IOException {
+        if (closed)
+            return;
+        scheduler.shutdownNow();
+        flush();
+        closed = true;
+        writer.abort();
+    }
+}
@@ -0,0 +1,293 @@
+package be.meemoo.writer;
+
+import be.meemoo.stats.Statistics;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.opencsv.CSVWriter;
+import de.gwdg.metadataqa.api.interfaces.MetricResult;
+import de.gwdg.metadataqa.api.util.CompressionLevel;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Folds the results into summary statistics per value of a field, like the content partner of the records, and writes
+ * a row per value, in the order of the values, when closed. When there are more values than fit in memory, the
+ * statistics are spilled to disk as runs sorted by value, which are merged at the end. Runs are merged into one when
+ * there are many, so only a group per run is in memory while merging.
+ */
+public class GroupResultWriter extends ResultWriter {
+
+    private static final Logger logger = Logger.getLogger(GroupResultWriter.class.getCanonicalName());
+
+    public static final String NA = "NA";
+
+    // the runs merged at a time, which bounds the groups in memory and the files open while merging
+    private static final int MAX_RUNS = 64;
+
+    private final boolean csv;
+    private final String field;
+    private final int maxGroups;
+
+    private List<String> columns;
+    private int keyColumn;
+    private double[] values;
+    private final Map<String, Statistics> groups = new HashMap<>();
+    private Path spillDirectory;
+    private final List<Path> runs = new ArrayList<>();
+    private int files = 0;
+    private int spills = 0;
+
+    /**
+     * @param field the label of the field in the header, whose values are the groups
+     * @param maxGroups the number of groups kept in memory before they are spilled to disk
+     */
+    public GroupResultWriter(BufferedWriter outputWriter, boolean csv, String field, int maxGroups) {
+        super(outputWriter);
+        if (maxGroups < 1)
+            throw new IllegalArgumentException("At least one group should fit in memory");
+        this.csv = csv;
+        this.field = field;
+        this.maxGroups = maxGroups;
+    }
+
+    @Override
+    public void writeHeader(List<String> header) throws IOException {
+        this.columns = header;
+        this.keyColumn = -1;
+        for (int i = 0; i < header.size() && keyColumn < 0; i++)
+            if (header.get(i).equals(field) || header.get(i).endsWith(":" + field))
+                keyColumn = i;
+        if (keyColumn < 0)
+            throw new IllegalArgumentException("The field to group by is not extracted: " + field);
+        this.values = new double[header.size()];
+    }
+
+    @Override
+    public void writeResult(Map<String, List<MetricResult>> result) throws IOException {
+        String key = null;
+        int column = 0;
+        for (List<MetricResult> metricResults : result.values())
+            for (MetricResult metricResult : metricResults)
+                for (String value : metricResult.getList(false, CompressionLevel.NORMAL)) {
+                    if (column == keyColumn)
+                        key = value;
+                    if (column < values.length)
+                        values[column] = Statistics.parse(value);
+                    column++;
+                }
+        Arrays.fill(values, Math.min(column, values.length), values.length, Double.NaN);
+
+        groups.computeIfAbsent(key == null || key.isEmpty() ? NA : key, k -> new Statistics(columns)).add(values);
+        if (groups.size() > maxGroups)
+            spill();
+    }
+
+    /**
+     * Write the groups in memory to a new run, sorted by value, and start over with an empty table.
+     */
+    private void spill() throws IOException {
+        if (spillDirectory == null)
+            spillDirectory = Files.createTempDirectory("mqa-groups");
+        Path run = newRun();
+        try (ObjectOutputStream out = openRun(run)) {
+            for (Map.Entry<String, Statistics> group : new TreeMap<>(groups).entrySet()) {
+                out.writeObject(group.getKey());
+                out.writeObject(group.getValue());
+            }
+        }
+        logger.info(String.format("Spilled %s groups to %s", groups.size(), spillDirectory));
+        groups.clear();
+        spills++;
+        runs.add(run);
+        if (runs.size() >= MAX_RUNS) {
+            Path merged = newRun();
+            try (ObjectOutputStream out = openRun(merged)) {
+                merge((key, statistics) -> {
+                    out.writeObject(key);
+                    out.writeObject(statistics);
+                });
+            }
+            runs.add(merged);
+        }
+    }
+
+    private Path newRun() {
+        return spillDirectory.resolve(String.valueOf(files++));
+    }
+
+    private static ObjectOutputStream openRun(Path run) throws IOException {
+        return new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(run), 1 << 16));
+    }
+
+    /**
+     * Merge the runs by value, merging the statistics of the same value, and delete them.
+     */
+    private void merge(GroupWriter writer) throws IOException {
+        List<RunReader> readers = new ArrayList<>();
+        try {
+            PriorityQueue<RunReader> queue = new PriorityQueue<>(Comparator.comparing((RunReader reader) -> reader.key));
+            for (Path run : runs) {
+                RunReader reader = new RunReader(run);
+                readers.add(reader);
+                if (reader.advance())
+                    queue.add(reader);
+            }
+            while (!queue.isEmpty()) {
+                RunReader reader = queue.poll();
+                String key = reader.key;
+                Statistics statistics = reader.statistics;
+                if (reader.advance())
+                    queue.add(reader);
+                while (!queue.isEmpty() && queue.peek().key.equals(key)) {
+                    RunReader next = queue.poll();
+                    statistics.merge(next.statistics);
+                    if (next.advance())
+                        queue.add(next);
+                }
+                writer.write(key, statistics);
+            }
+        } finally {
+            for (RunReader reader : readers)
+                reader.in.close();
+        }
+        for (Path run : runs)
+            Files.delete(run);
+        runs.clear();
+    }
+
+    public int getSpills() {
+        return spills;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (columns != null) {
+                CSVWriter csvWriter = csv ? new CSVWriter(outputWriter) : null;
+                JsonGenerator generator = csv ? null : JSONResultWriter.createGenerator(outputWriter);
+                if (csv)
+                    csvWriter.writeNext(getCsvHeader());
+                if (spills == 0) {
+                    for (Map.Entry<String, Statistics> group : new TreeMap<>(groups).entrySet())
+                        write(group.getKey(), group.getValue(), csvWriter, generator);
+                } else {
+                    spill();
+                    merge((key, statistics) -> write(key, statistics, csvWriter, generator));
+                }
+                if (csv)
+                    csvWriter.flush();
+                else
+                    generator.flush();
+            }
+        } finally {
+            deleteSpills();
+        }
+        super.close();
+    }
+
+    @Override
+    public void abort() throws IOException {
+        try {
+            deleteSpills();
+        } finally {
+            super.abort();
+        }
+    }
+
+    private void write(String key, Statistics statistics, CSVWriter csvWriter, JsonGenerator generator) throws IOException {
+        if (csvWriter != null) {
+            csvWriter.writeNext(getCsvRow(key, statistics));
+        } else {
+            generator.writeStartObject();
+            generator.writeStringField(field, key);
+            generator.writeNumberField("records", statistics.getRecords());
+            AggregateResultWriter.writeColumns(generator, statistics);
+            generator.writeEndObject();
+            generator.flush();
+            outputWriter.newLine();
+        }
+    }
+
+    private String[] getCsvHeader() {
+        List<String> header = new ArrayList<>(List.of(field, "records"));
+        for (String column : columns)
+            for (String statistic : List.of("count", "mean", "min", "max", "histogram"))
+                header.add(column + ":" + statistic);
+        return header.toArray(new String[0]);
+    }
+
+    private static String[] getCsvRow(String key, Statistics statistics) {
+        List<String> row = new ArrayList<>(List.of(key, String.valueOf(statistics.getRecords())));
+        for (int i = 0; i < statistics.getColumns().size(); i++) {
+            row.add(String.valueOf(statistics.getCount(i)));
+            row.add(AggregateResultWriter.format(statistics.getMean(i)));
+            row.add(AggregateResultWriter.format(statistics.getMin(i)));
+            row.add(AggregateResultWriter.format(statistics.getMax(i)));
+            // the counts of the buckets of [0, 1], separated by spaces
+            StringBuilder histogram = new StringBuilder();
+            for (long count : statistics.getHistogram(i))
+                histogram.append(histogram.length() == 0 ? "" : " ").append(count);
+            row.add(histogram.toString());
+        }
+        return row.toArray(new String[0]);
+    }
+
+    private void deleteSpills() throws IOException {
+        if (spillDirectory == null)
+            return;
+        try (Stream<Path> paths = Files.list(spillDirectory)) {
+            for (Path path : (Iterable<Path>) paths::iterator)
+                Files.delete(path);
+        }
+        Files.delete(spillDirectory);
+    }
+
+    private interface GroupWriter {
+        void write(String key, Statistics statistics) throws IOException;
+    }
+
+    /**
+     * Reads the groups of a run in order.
+     */
+    private static class RunReader {
+        private final ObjectInputStream in;
+        private String key;
+        private Statistics statistics;
+
+        private RunReader(Path run) throws IOException {
+            this.in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(run), 1 << 16));
+        }
+
+        /**
+         * @return whether there was another group
+         */
+        private boolean advance() throws IOException {
+            try {
+                key = (String) in.readObject();
+                statistics = (Statistics) in.readObject();
+                return true;
+            } catch (EOFException e) {
+                return false;
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Invalid spill file", e);
+            }
+        }
+    }
+}
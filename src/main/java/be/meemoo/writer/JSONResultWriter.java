@@ -1,51 +1,152 @@
 package be.meemoo.writer;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import de.gwdg.metadataqa.api.interfaces.MetricResult;
-import de.gwdg.metadataqa.api.json.JsonUtils;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
-import java.util.LinkedHashMap;
+import java.io.Writer;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Streams every result as a JSON object, one per line, or as the elements of a single JSON array. The results are
+ * written by one generator, without building maps or strings per record.
+ */
 public class JSONResultWriter extends ResultWriter {
 
+    // serializes result values the same way as the JSON utilities of the library
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final boolean array;
+    private final JsonGenerator generator;
+    private boolean empty = true;
+
     public JSONResultWriter(String outputFile) throws IOException {
+        this(outputFile, false);
+    }
+
+    public JSONResultWriter(String outputFile, boolean array) throws IOException {
         super(outputFile);
+        this.array = array;
+        this.generator = createGenerator(outputWriter);
     }
 
     public JSONResultWriter() {
+        this(false);
     }
 
-    private Object getJson(Map<String, List<MetricResult>> result) {
-        Map<String, Object> output = new LinkedHashMap<>();
+    public JSONResultWriter(boolean array) {
+        super();
+        this.array = array;
+        this.generator = createGenerator(outputWriter);
+    }
 
-        for (Map.Entry<String, List<MetricResult>> entry : result.entrySet()) {
-            Map<String, Object> calcResult = new LinkedHashMap<>();
+    public JSONResultWriter(BufferedWriter outputWriter) {
+        this(outputWriter, false);
+    }
+
+    public JSONResultWriter(BufferedWriter outputWriter, boolean array) {
+        super(outputWriter);
+        this.array = array;
+        this.generator = createGenerator(this.outputWriter);
+    }
+
+    /**
+     * A generator writing root values without separators, leaving the writer open when closed.
+     */
+    static JsonGenerator createGenerator(Writer writer) {
+        try {
+            JsonGenerator generator = mapper.getFactory().createGenerator(writer);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            return generator;
+        } catch (IOException e) {
+            // creating a generator for a writer does not write anything yet
+            throw new IllegalStateException(e);
+        }
+    }
 
+    static void writeJson(JsonGenerator generator, Map<String, List<MetricResult>> result) throws IOException {
+        generator.writeStartObject();
+        for (Map.Entry<String, List<MetricResult>> entry : result.entrySet()) {
+            generator.writeObjectFieldStart(entry.getKey());
             for (MetricResult metricResult : entry.getValue()) {
-                calcResult.put(metricResult.getName(), metricResult.getResultMap());
+                generator.writeFieldName(metricResult.getName());
+                writeValue(generator, metricResult.getResultMap());
             }
-            output.put(entry.getKey(), calcResult);
+            generator.writeEndObject();
         }
+        generator.writeEndObject();
+    }
 
-        try {
-            return JsonUtils.toJson(output);
-        } catch (JsonProcessingException e) {
-            e.printStackTrace();
+    private static void writeValue(JsonGenerator generator, Object value) throws IOException {
+        if (value instanceof Map) {
+            generator.writeStartObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                generator.writeFieldName(String.valueOf(entry.getKey()));
+                writeValue(generator, entry.getValue());
+            }
+            generator.writeEndObject();
+        } else if (value instanceof String) {
+            generator.writeString((String) value);
+        } else if (value instanceof Integer) {
+            generator.writeNumber((Integer) value);
+        } else if (value instanceof Double) {
+            generator.writeNumber((Double) value);
+        } else if (value instanceof Boolean) {
+            generator.writeBoolean((Boolean) value);
+        } else {
+            generator.writeObject(value);
         }
-        return null;
     }
 
     @Override
     public void writeResult(Map<String, List<MetricResult>> result) throws IOException {
-        Object json = getJson(result);
+        if (array)
+            generator.writeRaw(empty ? "\n" : ",\n");
+        empty = false;
+        writeJson(generator, result);
+        if (!array)
+            generator.writeRaw('\n');
+    }
+
+    @Override
+    public void writeHeader(List<String> header) throws IOException {
+        if (array)
+            generator.writeRaw('[');
+    }
+
+    @Override
+    public void flush() throws IOException {
+        generator.flush();
+    }
 
-        this.outputWriter.write(json.toString());
-        this.outputWriter.newLine();
+    /**
+     * Whether results were written, which decides the separator before the next element of an array.
+     */
+    @Override
+    public byte[] getState() throws IOException {
+        return new byte[]{(byte) (empty ? 0 : 1)};
+    }
+
+    @Override
+    public void restoreState(List<String> header, byte[] state) throws IOException {
+        this.empty = state == null || state[0] == 0;
     }
 
     @Override
-    public void writeHeader(List<String> header) throws IOException {}
+    public void close() throws IOException {
+        if (array)
+            generator.writeRaw(empty ? "]\n" : "\n]\n");
+        generator.close();
+        super.close();
+    }
+
+    @Override
+    public void abort() throws IOException {
+        generator.flush();
+        super.abort();
+    }
 }
@@ -0,0 +1,61 @@
+package be.meemoo.writer;
+
+import be.meemoo.metrics.AssessmentMetrics;
+import be.meemoo.metrics.Stage;
+import de.gwdg.metadataqa.api.interfaces.MetricResult;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts the records written to another result writer, and the time spent writing them.
+ */
+public class MeteredResultWriter extends ResultWriter {
+
+    private final ResultWriter writer;
+    private final Stage write;
+
+    public MeteredResultWriter(ResultWriter writer, AssessmentMetrics metrics) {
+        super(writer.outputWriter);
+        this.writer = writer;
+        this.write = metrics.getWrite();
+    }
+
+    @Override
+    public void writeResult(Map<String, List<MetricResult>> result) throws IOException {
+        long start = System.nanoTime();
+        writer.writeResult(result);
+        write.record(start);
+    }
+
+    @Override
+    public void writeHeader(List<String> header) throws IOException {
+        writer.writeHeader(header);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public byte[] getState() throws IOException {
+        return writer.getState();
+    }
+
+    @Override
+    public void restoreState(List<String> header, byte[] state) throws IOException {
+        writer.restoreState(header, state);
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    @Override
+    public void abort() throws IOException {
+        writer.abort();
+    }
+}
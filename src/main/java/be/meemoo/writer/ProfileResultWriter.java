@@ -0,0 +1,69 @@
+package be.meemoo.writer;
+
+import be.meemoo.reader.ProfileRecordReader;
+import de.gwdg.metadataqa.api.interfaces.MetricResult;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the results of every profile of a record to the writer of the profile, in the order they are written.
+ */
+public class ProfileResultWriter extends ResultWriter {
+
+    private final ResultWriter writer;
+    private final List<ResultWriter> profiles;
+    private final List<List<String>> headers;
+
+    /**
+     * @param writer the writer of the results of the calculator the records were measured with
+     * @param profiles the writers of the profiles
+     * @param headers the headers of the profiles
+     */
+    public ProfileResultWriter(ResultWriter writer, List<ResultWriter> profiles, List<List<String>> headers) {
+        super(writer.outputWriter);
+        this.writer = writer;
+        this.profiles = profiles;
+        this.headers = headers;
+    }
+
+    @Override
+    public void writeResult(Map<String, List<MetricResult>> result) throws IOException {
+        if (!(result instanceof ProfileRecordReader.Results))
+            throw new IllegalArgumentException("The results of a record have no profiles, it was not measured by a "
+                    + ProfileRecordReader.class.getSimpleName());
+        writer.writeResult(result);
+        ProfileRecordReader.Results results = (ProfileRecordReader.Results) result;
+        for (int i = 0; i < profiles.size(); i++)
+            profiles.get(i).writeResult(results.getProfile(i));
+    }
+
+    @Override
+    public void writeHeader(List<String> header) throws IOException {
+        writer.writeHeader(header);
+        for (int i = 0; i < profiles.size(); i++)
+            profiles.get(i).writeHeader(headers.get(i));
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+        for (ResultWriter profile : profiles)
+            profile.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+        for (ResultWriter profile : profiles)
+            profile.close();
+    }
+
+    @Override
+    public void abort() throws IOException {
+        writer.abort();
+        for (ResultWriter profile : profiles)
+            profile.abort();
+    }
+}
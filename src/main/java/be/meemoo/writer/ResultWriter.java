@@ -25,12 +25,41 @@ public abstract class ResultWriter implements Closeable {
         this.outputWriter = new BufferedWriter(new OutputStreamWriter(System.out));
     }
 
+    public ResultWriter(BufferedWriter outputWriter) {
+        this.outputWriter = outputWriter;
+    }
+
+    public void flush() throws IOException {
+        this.outputWriter.flush();
+    }
+
+    /**
+     * The state of the writer that is not in the output yet, to save in a checkpoint.
+     */
+    public byte[] getState() throws IOException {
+        return null;
+    }
+
+    /**
+     * Continue writing to an output that was truncated to a checkpoint, instead of writing the header.
+     */
+    public void restoreState(List<String> header, byte[] state) throws IOException {}
+
     @Override
     public void close() throws IOException {
         this.outputWriter.flush();
         this.outputWriter.close();
     }
 
+    /**
+     * Stop writing after the assessment failed. The results written so far are kept, but the output is not completed,
+     * so summaries of all records are not written and a JSON array is not closed.
+     */
+    public void abort() throws IOException {
+        this.outputWriter.flush();
+        this.outputWriter.close();
+    }
+
     public abstract void writeResult(Map<String, List<MetricResult>> result) throws IOException;
     public abstract void writeHeader(List<String> header) throws IOException;
 }
@@ -0,0 +1,111 @@
+package be.meemoo.writer;
+
+import be.meemoo.stats.Sample;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.opencsv.CSVWriter;
+import de.gwdg.metadataqa.api.interfaces.MetricResult;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the estimates of a sample as a single report when closed. The results themselves are added to the sample
+ * by the reader that sampled them.
+ */
+public class SampleResultWriter extends ResultWriter {
+
+    private final boolean csv;
+    private final Sample sample;
+    private final boolean stratified;
+
+    public SampleResultWriter(BufferedWriter outputWriter, boolean csv, Sample sample, boolean stratified) {
+        super(outputWriter);
+        this.csv = csv;
+        this.sample = sample;
+        this.stratified = stratified;
+    }
+
+    @Override
+    public void writeHeader(List<String> header) throws IOException {
+        // the columns are those of the sample
+    }
+
+    @Override
+    public void writeResult(Map<String, List<MetricResult>> result) throws IOException {
+        // the result was added to the sample when it was measured
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (csv)
+            writeCsv();
+        else
+            writeJson();
+        super.close();
+    }
+
+    private void writeJson() throws IOException {
+        JsonGenerator generator = new JsonFactory().createGenerator(outputWriter);
+        generator.writeStartObject();
+        generator.writeNumberField("records", sample.getRecords());
+        generator.writeNumberField("sampled", sample.getSampled());
+        generator.writeNumberField("confidence", Sample.CONFIDENCE);
+        // the estimates can get precise enough with the last records of the input
+        generator.writeBooleanField("stoppedEarly", sample.isPrecise() && !sample.isReadAll());
+        generator.writeObjectFieldStart("columns");
+        for (int i = 0; i < sample.getColumns().size(); i++) {
+            Sample.Estimate estimate = sample.estimate(i);
+            generator.writeObjectFieldStart(sample.getColumns().get(i));
+            generator.writeNumberField("count", estimate.getCount());
+            writeNumberField(generator, "mean", estimate.getMean());
+            writeNumberField(generator, "standardError", estimate.getStandardError());
+            writeNumberField(generator, "low", estimate.getLow());
+            writeNumberField(generator, "high", estimate.getHigh());
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+        if (stratified) {
+            generator.writeObjectFieldStart("strata");
+            for (Map.Entry<String, long[]> stratum : sample.getStrata().entrySet()) {
+                generator.writeObjectFieldStart(stratum.getKey());
+                generator.writeNumberField("records", stratum.getValue()[0]);
+                generator.writeNumberField("sampled", stratum.getValue()[1]);
+                generator.writeEndObject();
+            }
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+        generator.flush();
+        outputWriter.newLine();
+    }
+
+    private static void writeNumberField(JsonGenerator generator, String name, double value) throws IOException {
+        if (Double.isNaN(value))
+            generator.writeNullField(name);
+        else
+            generator.writeNumberField(name, value);
+    }
+
+    private void writeCsv() throws IOException {
+        CSVWriter csvWriter = new CSVWriter(outputWriter);
+        csvWriter.writeNext(new String[]{"metric", "count", "mean", "standard_error", "low", "high"});
+        for (int i = 0; i < sample.getColumns().size(); i++) {
+            Sample.Estimate estimate = sample.estimate(i);
+            csvWriter.writeNext(new String[]{
+                    sample.getColumns().get(i),
+                    String.valueOf(estimate.getCount()),
+                    format(estimate.getMean()),
+                    format(estimate.getStandardError()),
+                    format(estimate.getLow()),
+                    format(estimate.getHigh())});
+        }
+        csvWriter.flush();
+    }
+
+    private static String format(double value) {
+        return Double.isNaN(value) ? "NA" : String.valueOf(value);
+    }
+}
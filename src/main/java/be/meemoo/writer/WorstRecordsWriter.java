@@ -0,0 +1,68 @@
+package be.meemoo.writer;
+
+import be.meemoo.stats.WorstRecords;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.opencsv.CSVWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes the worst records of every column as a report, a row per record from the worst up as csv, else as json.
+ */
+public class WorstRecordsWriter {
+
+    public static void write(WorstRecords worst, BufferedWriter outputWriter, boolean csv) throws IOException {
+        if (csv)
+            writeCsv(worst, outputWriter);
+        else
+            writeJson(worst, outputWriter);
+        outputWriter.flush();
+    }
+
+    private static void writeJson(WorstRecords worst, BufferedWriter outputWriter) throws IOException {
+        JsonGenerator generator = JSONResultWriter.createGenerator(outputWriter);
+        generator.writeStartObject();
+        generator.writeNumberField("size", worst.getSize());
+        generator.writeObjectFieldStart("columns");
+        for (int i = 0; i < worst.getColumns().size(); i++) {
+            generator.writeArrayFieldStart(worst.getColumns().get(i));
+            for (WorstRecords.Entry entry : worst.getWorst(i)) {
+                generator.writeStartObject();
+                generator.writeNumberField("score", entry.getScore());
+                generator.writeStringField("source", entry.getSource());
+                generator.writeNumberField("offset", entry.getOffset());
+                for (int j = 0; j < worst.getIds().size(); j++)
+                    generator.writeStringField(worst.getIds().get(j), entry.getIds()[j]);
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+        generator.writeEndObject();
+        generator.writeEndObject();
+        generator.flush();
+        outputWriter.newLine();
+    }
+
+    private static void writeCsv(WorstRecords worst, BufferedWriter outputWriter) throws IOException {
+        CSVWriter csvWriter = new CSVWriter(outputWriter);
+
+        List<String> header = new ArrayList<>(List.of("metric", "rank", "score", "source", "offset"));
+        header.addAll(worst.getIds());
+        csvWriter.writeNext(header.toArray(new String[0]));
+
+        for (int i = 0; i < worst.getColumns().size(); i++) {
+            int rank = 0;
+            for (WorstRecords.Entry entry : worst.getWorst(i)) {
+                List<String> row = new ArrayList<>(List.of(worst.getColumns().get(i), String.valueOf(++rank),
+                        String.valueOf(entry.getScore()), String.valueOf(entry.getSource()), String.valueOf(entry.getOffset())));
+                for (String id : entry.getIds())
+                    row.add(id);
+                csvWriter.writeNext(row.toArray(new String[0]));
+            }
+        }
+        csvWriter.flush();
+    }
+}
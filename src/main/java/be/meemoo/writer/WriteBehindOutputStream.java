@@ -0,0 +1,145 @@
+package be.meemoo.writer;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Hands large buffers to a background thread that writes them to an output stream, so that e.g. compression
+ * overlaps with the work of the thread producing the output. Errors of the background thread are thrown by the next
+ * write, flush or close.
+ */
+public class WriteBehindOutputStream extends OutputStream {
+
+    public static final int BUFFERS = 4;
+    public static final int BUFFER_SIZE = 1 << 20;
+
+    private final OutputStream out;
+    private final BlockingQueue<Chunk> free = new ArrayBlockingQueue<>(BUFFERS);
+    private final BlockingQueue<Chunk> filled = new ArrayBlockingQueue<>(BUFFERS + 1);
+    private final Thread writer;
+    private volatile IOException failure;
+
+    private Chunk current;
+    private boolean closed = false;
+
+    public WriteBehindOutputStream(OutputStream out) {
+        this.out = out;
+        for (int i = 0; i < BUFFERS - 1; i++)
+            free.add(new Chunk(new byte[BUFFER_SIZE]));
+        this.current = new Chunk(new byte[BUFFER_SIZE]);
+
+        this.writer = new Thread(this::drain, "mqa-write-behind");
+        // output that is not written when the assessment fails without closing the stream is lost anyway
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private void drain() {
+        try {
+            while (true) {
+                Chunk chunk = filled.take();
+                if (chunk == Chunk.END)
+                    break;
+                // after a failure buffers are still recycled, so the producing thread does not block
+                write(chunk);
+                chunk.length = 0;
+                free.put(chunk);
+            }
+            out.close();
+        } catch (IOException e) {
+            if (failure == null)
+                failure = e;
+        } catch (InterruptedException e) {
+            // closed without waiting for the output
+        }
+    }
+
+    private void write(Chunk chunk) {
+        if (failure != null)
+            return;
+        try {
+            out.write(chunk.data, 0, chunk.length);
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null)
+            throw new IOException("Writing output failed", failure);
+    }
+
+    private void handOff() throws IOException {
+        try {
+            filled.put(current);
+            current = free.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        checkFailure();
+        if (current.length == current.data.length)
+            handOff();
+        current.data[current.length++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        checkFailure();
+        while (len > 0) {
+            if (current.length == current.data.length)
+                handOff();
+            int n = Math.min(len, current.data.length - current.length);
+            System.arraycopy(b, off, current.data, current.length, n);
+            current.length += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Hands the buffered bytes to the background thread, without waiting for them to be written.
+     */
+    @Override
+    public void flush() throws IOException {
+        checkFailure();
+        if (current.length > 0)
+            handOff();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        try {
+            if (current.length > 0)
+                filled.put(current);
+            filled.put(Chunk.END);
+            writer.join();
+        } catch (InterruptedException e) {
+            writer.interrupt();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        checkFailure();
+    }
+
+    private static class Chunk {
+        private static final Chunk END = new Chunk(new byte[0]);
+
+        private final byte[] data;
+        private int length;
+
+        private Chunk(byte[] data) {
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package be.meemoo;
+
+import org.apache.commons.cli.DefaultParser;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+
+public class DiffTest {
+
+  private static final Map<String, Long> COUNTS = Map.of(
+      "old", 6L, "new", 5L, "unchanged", 2L, Diff.CHANGED, 2L, Diff.ADDED, 1L, Diff.REMOVED, 2L);
+  private static final String SUMMARY =
+      "{\"old\":6,\"new\":5,\"unchanged\":2,\"changed\":2,\"added\":1,\"removed\":2,"
+      + "\"columns\":{\"%s\":{\"better\":1,\"worse\":0}}}\n";
+
+  @Test
+  public void writesTheChangedAddedAndRemovedCsvRecords() throws Exception {
+    // the second c is paired with the second c of the old output, f got a value it did not have
+    String changes = diff("csv",
+        "\"extractable_pid\",\"completeness_total\",\"existence_title\"\n"
+        + "\"d\",\"0.5\",\"1\"\n\"c\",\"0.5\",\"1\"\n\"a\",\"0.5\",\"0\"\n\"b\",\"1.0\",\"1\"\n\"c\",\"0.25\",\"0\"\n\"f\",\"NA\",\"1\"\n",
+        "\"extractable_pid\",\"completeness_total\",\"existence_title\",\"existence_pid\"\n"
+        + "\"f\",\"1.0\",\"1\",\"1\"\n\"e\",\"0.5\",\"1\",\"1\"\n\"c\",\"0.75\",\"1\",\"1\"\n\"b\",\"1.0\",\"1\",\"1\"\n\"c\",\"0.25\",\"0\",\"1\"\n",
+        "completeness_total");
+    assertEquals(
+        "\"pid\",\"change\",\"completeness_total\",\"existence_title\"\n"
+        + "\"a\",\"removed\",\"\",\"\"\n"
+        + "\"c\",\"changed\",\"0.25\",\"\"\n"
+        + "\"d\",\"removed\",\"\",\"\"\n"
+        + "\"e\",\"added\",\"\",\"\"\n"
+        + "\"f\",\"changed\",\"NA\",\"\"\n",
+        changes);
+  }
+
+  @Test
+  public void writesTheChangedAddedAndRemovedJsonRecords() throws Exception {
+    String changes = diff("ndjson",
+        json("d", "0.5", 1) + json("c", "0.5", 1) + json("a", "0.5", 0) + json("b", "1.0", 1)
+        + json("c", "0.25", 0) + json("f", "\"NA\"", 1),
+        json("f", "1.0", 1) + json("e", "0.5", 1) + json("c", "0.75", 1) + "\n" + json("b", "1.0", 1)
+        + json("c", "0.25", 0),
+        "completeness:total");
+    assertEquals(
+        "{\"pid\":\"a\",\"change\":\"removed\"}\n"
+        + "{\"pid\":\"c\",\"change\":\"changed\",\"deltas\":{\"completeness:total\":0.25}}\n"
+        + "{\"pid\":\"d\",\"change\":\"removed\"}\n"
+        + "{\"pid\":\"e\",\"change\":\"added\"}\n"
+        + "{\"pid\":\"f\",\"change\":\"changed\",\"deltas\":{\"completeness:total\":null}}\n",
+        changes);
+  }
+
+  private static String json(String pid, String completeness, int title) {
+    return String.format("{\"extract\":{\"pid\":\"%s\"},\"completeness\":{\"total\":%s},\"existence\":{\"title\":%s}}%n",
+        pid, completeness, title);
+  }
+
+  /**
+   * @return the changes written, after checking the counts and the summary
+   */
+  private static String diff(String format, String oldOutput, String newOutput, String column) throws Exception {
+    Path directory = Files.createTempDirectory("diff");
+    try {
+      Path oldFile = Files.writeString(directory.resolve("old"), oldOutput);
+      Path newFile = Files.writeString(directory.resolve("new"), newOutput);
+      Path changes = directory.resolve("changes");
+      Path summary = directory.resolve("summary");
+      Diff diff = new Diff(new DefaultParser().parse(Diff.getOptions(), new String[]{
+          "-f", format, "--id", "pid", "-t", "2", "-i", oldFile.toString(), newFile.toString(),
+          "-o", changes.toString(), "--summary", summary.toString()}));
+      diff.run();
+      assertEquals(COUNTS, diff.getCounts());
+      assertEquals(String.format(SUMMARY, column), Files.readString(summary).replace(System.lineSeparator(), "\n"));
+      return Files.readString(changes).replace(System.lineSeparator(), "\n");
+    } finally {
+      try (Stream<Path> files = Files.walk(directory)) {
+        for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator)
+          Files.delete(file);
+      }
+    }
+  }
+}
@@ -0,0 +1,175 @@
+package be.meemoo.cache;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ResultCacheTest {
+
+  private static final byte[] FINGERPRINT = ResultCache.fingerprint("schema", "measurements");
+
+  @Test
+  public void returnsTheResultsPutAlsoAfterReopening() throws Exception {
+    Path directory = Files.createTempDirectory("cache");
+    try {
+      try (ResultCache cache = ResultCache.open(directory, 100, 5)) {
+        put(cache, "first", "1");
+        put(cache, "second", "2");
+        assertEquals("1", get(cache, "first"));
+        assertNull(get(cache, "third"));
+        // another fingerprint is another schema or configuration
+        assertNull(cache.get(ResultCache.key(ResultCache.fingerprint("other"), "first")));
+        put(cache, "first", "one");
+        assertEquals("one", get(cache, "first"));
+      }
+      try (ResultCache cache = ResultCache.open(directory, 100, 5)) {
+        assertEquals("one", get(cache, "first"));
+        assertEquals("2", get(cache, "second"));
+      }
+    } finally {
+      delete(directory);
+    }
+  }
+
+  @Test
+  public void keepsTheResultsWhenReopenedWithAnotherSize() throws Exception {
+    Path directory = Files.createTempDirectory("cache");
+    try {
+      try (ResultCache cache = ResultCache.open(directory, 10, 5)) {
+        for (int i = 0; i < 10; i++)
+          put(cache, "record " + i, String.valueOf(i));
+      }
+      try (ResultCache cache = ResultCache.open(directory, 1000, 5)) {
+        for (int i = 0; i < 10; i++)
+          assertEquals(String.valueOf(i), get(cache, "record " + i));
+      }
+      // a smaller cache keeps as many results as fit
+      try (ResultCache cache = ResultCache.open(directory, 4, 5)) {
+        int hits = 0;
+        for (int i = 0; i < 10; i++)
+          if (get(cache, "record " + i) != null)
+            hits++;
+        assertEquals(4, hits);
+      }
+    } finally {
+      delete(directory);
+    }
+  }
+
+  @Test
+  public void evictsResultsNotUsedInTheLastRuns() throws Exception {
+    Path directory = Files.createTempDirectory("cache");
+    try {
+      try (ResultCache cache = ResultCache.open(directory, 100, 1)) {
+        put(cache, "old", "1");
+        put(cache, "used", "2");
+      }
+      try (ResultCache cache = ResultCache.open(directory, 100, 1)) {
+        assertEquals("2", get(cache, "used"));
+      }
+      try (ResultCache cache = ResultCache.open(directory, 100, 1)) {
+        assertNull(get(cache, "old"));
+        assertEquals("2", get(cache, "used"));
+      }
+    } finally {
+      delete(directory);
+    }
+  }
+
+  @Test
+  public void evictsOlderRunsWhenFullAndStopsCachingWithOnlyThisRun() throws Exception {
+    Path directory = Files.createTempDirectory("cache");
+    try {
+      try (ResultCache cache = ResultCache.open(directory, 4, 5)) {
+        for (int i = 0; i < 4; i++)
+          put(cache, "old " + i, String.valueOf(i));
+      }
+      try (ResultCache cache = ResultCache.open(directory, 4, 5)) {
+        // the results of the last run make room for those of this run
+        for (int i = 0; i < 4; i++)
+          put(cache, "new " + i, String.valueOf(i));
+        for (int i = 0; i < 4; i++)
+          assertEquals(String.valueOf(i), get(cache, "new " + i));
+        assertNull(get(cache, "old 0"));
+
+        put(cache, "more", "5");
+        assertNull(get(cache, "more"));
+        assertEquals("0", get(cache, "new 0"));
+      }
+    } finally {
+      delete(directory);
+    }
+  }
+
+  @Test
+  public void compactsTheDataFile() throws Exception {
+    Path directory = Files.createTempDirectory("cache");
+    try {
+      try (ResultCache cache = ResultCache.open(directory, 100, 5)) {
+        for (int round = 0; round < 10; round++)
+          for (int i = 0; i < 20; i++)
+            put(cache, "record " + i, round + "-" + i);
+        long size = Files.size(directory.resolve("data.bin"));
+        cache.compact();
+        assertTrue(Files.size(directory.resolve("data.bin")) < size / 5);
+        assertTrue(Files.notExists(directory.resolve("data.new")));
+        assertTrue(Files.notExists(directory.resolve("index.new")));
+        // the cache is still used after compacting
+        assertEquals("9-3", get(cache, "record 3"));
+        put(cache, "added", "new");
+      }
+      try (ResultCache cache = ResultCache.open(directory, 100, 5)) {
+        for (int i = 0; i < 20; i++)
+          assertEquals("9-" + i, get(cache, "record " + i));
+        assertEquals("new", get(cache, "added"));
+      }
+    } finally {
+      delete(directory);
+    }
+  }
+
+  @Test
+  public void canNotBeOpenedTwice() throws Exception {
+    Path directory = Files.createTempDirectory("cache");
+    try {
+      try (ResultCache cache = ResultCache.open(directory, 100, 5)) {
+        try {
+          ResultCache.open(directory, 100, 5);
+          fail("A cache directory is used by one assessment at a time");
+        } catch (IllegalStateException e) {
+          // expected
+        }
+      }
+      ResultCache.open(directory, 100, 5).close();
+    } finally {
+      delete(directory);
+    }
+  }
+
+  private static void put(ResultCache cache, String record, String result) throws IOException {
+    cache.put(ResultCache.key(FINGERPRINT, record), result.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String get(ResultCache cache, String record) throws IOException {
+    byte[] result = cache.get(ResultCache.key(FINGERPRINT, record));
+    return result == null ? null : new String(result, StandardCharsets.UTF_8);
+  }
+
+  private static void delete(Path directory) throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator)
+        Files.delete(file);
+    }
+  }
+}
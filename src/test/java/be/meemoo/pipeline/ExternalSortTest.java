@@ -0,0 +1,46 @@
+package be.meemoo.pipeline;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class ExternalSortTest {
+
+  @Test
+  public void sortsLikeAStableSortInMemory() throws IOException {
+    Random random = new Random(7);
+    List<ExternalSort.Row> rows = new ArrayList<>();
+    for (int i = 0; i < 2000; i++)
+      // few distinct ids, so rows with the same id have to keep their order
+      rows.add(new ExternalSort.Row("pid" + random.nextInt(300), new String[]{String.valueOf(i), i % 5 == 0 ? null : "é"}));
+
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try (ExternalSort sort = new ExternalSort(executor, 3, 5000)) {
+      for (ExternalSort.Row row : rows)
+        sort.add(row);
+      List<ExternalSort.Row> expected = new ArrayList<>(rows);
+      expected.sort(Comparator.comparing(ExternalSort.Row::getId));
+
+      Iterator<ExternalSort.Row> sorted = sort.sorted();
+      for (ExternalSort.Row row : expected) {
+        ExternalSort.Row actual = sorted.next();
+        assertEquals(row.getId(), actual.getId());
+        assertArrayEquals(row.getValues(), actual.getValues());
+      }
+      assertFalse(sorted.hasNext());
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
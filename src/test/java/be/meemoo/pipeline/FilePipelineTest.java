@@ -0,0 +1,94 @@
+package be.meemoo.pipeline;
+
+import be.meemoo.RecordFactory;
+import be.meemoo.reader.ForwardingRecordReader;
+import be.meemoo.reader.InputFiles;
+import be.meemoo.reader.RecordReader;
+import be.meemoo.reader.SourceRecordReader;
+import be.meemoo.writer.ResultWriter;
+import de.gwdg.metadataqa.api.calculator.CalculatorFacade;
+import de.gwdg.metadataqa.api.configuration.MeasurementConfiguration;
+import de.gwdg.metadataqa.api.interfaces.MetricResult;
+import de.gwdg.metadataqa.api.json.JsonBranch;
+import de.gwdg.metadataqa.api.schema.BaseSchema;
+import de.gwdg.metadataqa.api.schema.Format;
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+
+public class FilePipelineTest {
+
+  @Test
+  public void assessesAndClosesTheArchivesOfADirectory() throws Exception {
+    Path directory = Files.createTempDirectory("files");
+    Path archive = directory.resolve("records.zip");
+    try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive))) {
+      for (String title : new String[]{"first", "second"}) {
+        zip.putNextEntry(new ZipEntry(title + ".json"));
+        zip.write(("{\"title\":\"" + title + "\"}").getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+      }
+    }
+
+    AtomicInteger closed = new AtomicInteger();
+    List<Map<String, List<MetricResult>>> results = new ArrayList<>();
+    try {
+      // the archive is closed through the readers added to it, as a reader of a directory is
+      FilePipeline pipeline = new FilePipeline(InputFiles.resolve(directory.toString()).getFiles(),
+          (file, calculator) -> counting(SourceRecordReader.of(
+              RecordFactory.getRecordReader(file.toString(), calculator, false), file.toString()), closed),
+          FilePipelineTest::newCalculator, 2);
+      assertEquals(2, pipeline.run(collecting(results)));
+      assertEquals(1, closed.get());
+      assertEquals(archive.toString(),
+          results.get(0).get(SourceRecordReader.SOURCE).get(0).getResultMap().get(SourceRecordReader.FILE));
+    } finally {
+      Files.delete(archive);
+      Files.delete(directory);
+    }
+  }
+
+  private static CalculatorFacade newCalculator() {
+    MeasurementConfiguration config = new MeasurementConfiguration();
+    config.enableCompletenessMeasurement();
+    return new CalculatorFacade(config)
+      .setSchema(new BaseSchema()
+        .setFormat(Format.JSON)
+        .addField(new JsonBranch("title", "$.title")));
+  }
+
+  private static <T> RecordReader<T> counting(RecordReader<T> reader, AtomicInteger closed) {
+    return new ForwardingRecordReader<>(reader) {
+      @Override
+      public void close() throws IOException {
+        closed.incrementAndGet();
+        super.close();
+      }
+    };
+  }
+
+  private static ResultWriter collecting(List<Map<String, List<MetricResult>>> results) {
+    return new ResultWriter(new BufferedWriter(new StringWriter())) {
+      @Override
+      public void writeResult(Map<String, List<MetricResult>> result) {
+        results.add(result);
+      }
+
+      @Override
+      public void writeHeader(List<String> header) {}
+    };
+  }
+}
@@ -0,0 +1,105 @@
+package be.meemoo.pipeline;
+
+import be.meemoo.reader.RecordReader;
+import be.meemoo.stats.MetricResults;
+import be.meemoo.writer.ResultWriter;
+import de.gwdg.metadataqa.api.calculator.CalculatorFacade;
+import de.gwdg.metadataqa.api.interfaces.MetricResult;
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MeasurementPipelineTest {
+
+  private static final int RECORDS = 300;
+
+  @Test
+  public void writesTheResultsInInputOrder() throws IOException {
+    List<Long> written = new ArrayList<>();
+    long count = MeasurementPipeline.of(new Records(-1), CalculatorFacade::new, collecting(written), 4, true).run();
+    assertEquals(RECORDS, count);
+    assertEquals(LongStream.range(0, RECORDS).boxed().collect(Collectors.toList()), written);
+  }
+
+  @Test
+  public void writesAllResultsUnordered() throws IOException {
+    List<Long> written = new ArrayList<>();
+    MeasurementPipeline.of(new Records(-1), CalculatorFacade::new, collecting(written), 4, false).run();
+    written.sort(null);
+    assertEquals(LongStream.range(0, RECORDS).boxed().collect(Collectors.toList()), written);
+  }
+
+  @Test
+  public void throwsTheFailureOfAWorker() {
+    List<Long> written = new ArrayList<>();
+    try {
+      MeasurementPipeline.of(new Records(100), CalculatorFacade::new, collecting(written), 4, true).run();
+      fail("The failure of record 100 was not thrown");
+    } catch (IOException e) {
+      assertEquals("Record 100", e.getCause().getMessage());
+    }
+    // the records before it can still be written, none after it
+    assertTrue(written.size() <= 100);
+    assertEquals(LongStream.range(0, written.size()).boxed().collect(Collectors.toList()), written);
+  }
+
+  /**
+   * Numbered records, of which every seventh one takes longer to measure, and one fails.
+   */
+  private static class Records extends RecordReader<Long> {
+    private final long failing;
+    private long next = 0;
+
+    private Records(long failing) {
+      super(null, null);
+      this.failing = failing;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next < RECORDS;
+    }
+
+    @Override
+    public Long read() {
+      return next++;
+    }
+
+    @Override
+    public Map<String, List<MetricResult>> measure(CalculatorFacade calculator, Long record) {
+      if (record == failing)
+        throw new IllegalStateException("Record " + record);
+      if (record % 7 == 0) {
+        try {
+          Thread.sleep(5);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      return MetricResults.of("record", record).get();
+    }
+  }
+
+  private static ResultWriter collecting(List<Long> written) {
+    return new ResultWriter(new BufferedWriter(new StringWriter())) {
+      @Override
+      public void writeResult(Map<String, List<MetricResult>> result) {
+        written.add((Long) result.get("record").get(0).getResultMap().get("record0"));
+      }
+
+      @Override
+      public void writeHeader(List<String> header) {}
+    };
+  }
+}
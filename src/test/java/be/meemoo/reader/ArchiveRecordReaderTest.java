@@ -0,0 +1,66 @@
+package be.meemoo.reader;
+
+import be.meemoo.RecordFactory;
+import de.gwdg.metadataqa.api.calculator.CalculatorFacade;
+import de.gwdg.metadataqa.api.configuration.MeasurementConfiguration;
+import de.gwdg.metadataqa.api.interfaces.MetricResult;
+import de.gwdg.metadataqa.api.schema.BaseSchema;
+import de.gwdg.metadataqa.api.schema.Format;
+import de.gwdg.metadataqa.api.util.CompressionLevel;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ArchiveRecordReaderTest {
+
+  // directories and the metadata macOS adds to archives are not records
+  private static final List<String> ENTRIES = List.of("records/1.json", "records/2.json", "records/nested/3.json");
+  // the byte order mark of the second record is not part of it
+  private static final List<String> TITLES = List.of("first", "tweede é", "third");
+
+  @Test
+  public void readsAFileOfAZipArchivePerRecord() throws Exception {
+    assertReads("src/test/resources/archive/records.zip");
+  }
+
+  @Test
+  public void readsAFileOfACompressedTarArchivePerRecord() throws Exception {
+    assertReads("src/test/resources/archive/records.tar.gz");
+  }
+
+  private static void assertReads(String archive) throws Exception {
+    CalculatorFacade calculator = new CalculatorFacade(new MeasurementConfiguration())
+      .setSchema(new BaseSchema().setFormat(Format.JSON));
+    try (RecordReader<?> reader = RecordFactory.getRecordReader(archive, calculator, false, null, new ReaderOptions(false, true))) {
+      assertTrue(reader instanceof ArchiveRecordReader);
+      ArchiveRecordReader records = (ArchiveRecordReader) reader;
+      Function<ArchiveRecordReader.Entry, String> title = records.getField("$.title");
+
+      List<String> entries = new ArrayList<>();
+      List<String> titles = new ArrayList<>();
+      while (records.hasNext()) {
+        ArchiveRecordReader.Entry entry = records.read();
+        entries.add(entry.getName());
+        titles.add(title.apply(entry));
+        assertTrue(entry.getContent().startsWith("{\"id\":\""));
+        assertSame(entry.getContent(), entry.getContent());
+        assertEquals(entry.getName() + '\n' + entry.getContent(), records.asString(entry));
+
+        Map<String, List<MetricResult>> result = records.measure(calculator, entry);
+        assertEquals(ArchiveRecordReader.ARCHIVE, result.keySet().iterator().next());
+        MetricResult column = result.get(ArchiveRecordReader.ARCHIVE).get(0);
+        assertEquals(Map.of(ArchiveRecordReader.ENTRY, entry.getName()), column.getResultMap());
+        assertEquals(List.of(entry.getName()), column.getList(false, CompressionLevel.NORMAL));
+      }
+      assertEquals(ENTRIES, entries);
+      assertEquals(TITLES, titles);
+    }
+  }
+}
@@ -0,0 +1,69 @@
+package be.meemoo.reader;
+
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvValidationException;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class CSVTokenizerTest {
+
+  private static final String[] INPUTS = {
+      "a,b,c\n1,2,3\n",
+      "\"quoted\",\"with, comma\",\"with \"\"quotes\"\"\"\r\nlast,line,without end",
+      "\"multi\nline\",\"and\r\nwindows\nline\"\n\n,\n",
+      "back\\slash,\"escaped \\\" quote\",\\\\,\\",
+      "in\"si\"de,  \"spaced\",a\"b\"c,\"\"\n",
+      "trailing,\"quote\"x,\"\",\"\"\"\"\r\r\n",
+      "\u00fcn\u00efc\u00f6d\u00e9,\u20ac\n",
+  };
+
+  @Test
+  public void readsLikeOpenCsv() throws IOException, CsvValidationException {
+    for (String input : INPUTS) {
+      assertEquals(input, readOpenCsv(new StringReader(input)), readTokenizer(new StringReader(input), 1 << 16));
+      // lines spread over many reads of the buffer
+      assertEquals(input, readOpenCsv(new StringReader(input)), readTokenizer(new StringReader(input), 3));
+    }
+  }
+
+  @Test
+  public void readsFilesLikeOpenCsv() throws IOException, CsvValidationException {
+    for (String file : new String[]{"src/test/resources/csv/head.csv", "src/test/resources/csv/multiline.csv"}) {
+      List<String> expected = readOpenCsv(Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8));
+      assertEquals(file, expected, readTokenizer(Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8), 1 << 16));
+      assertEquals(file, expected, readTokenizer(Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8), 16));
+    }
+  }
+
+  private static List<String> readOpenCsv(Reader reader) throws IOException, CsvValidationException {
+    List<String> records = new ArrayList<>();
+    try (CSVReader csvReader = new CSVReader(reader)) {
+      String[] record;
+      while ((record = csvReader.readNext()) != null)
+        records.add(Arrays.asList(record).toString() + record.length);
+    }
+    return records;
+  }
+
+  private static List<String> readTokenizer(Reader reader, int bufferSize) throws IOException {
+    List<String> records = new ArrayList<>();
+    CSVTokenizer tokenizer = new CSVTokenizer(reader, bufferSize);
+    while (tokenizer.hasNext()) {
+      String[] record = tokenizer.next();
+      records.add(Arrays.asList(record).toString() + record.length);
+    }
+    reader.close();
+    return records;
+  }
+}
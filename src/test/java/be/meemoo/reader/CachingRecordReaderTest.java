@@ -0,0 +1,73 @@
+package be.meemoo.reader;
+
+import be.meemoo.cache.ResultCache;
+import be.meemoo.metrics.Stage;
+import be.meemoo.stats.MetricResults;
+import de.gwdg.metadataqa.api.calculator.CalculatorFacade;
+import de.gwdg.metadataqa.api.interfaces.MetricResult;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+
+public class CachingRecordReaderTest {
+
+  @Test
+  public void countsTheResultsFoundInTheCacheApartFromThoseMeasured() throws Exception {
+    Path directory = Files.createTempDirectory("cache");
+    Stage read = new Stage("read");
+    Stage measure = new Stage("measure");
+    Stage hits = new Stage("cache");
+    try (ResultCache cache = ResultCache.open(directory, 100, 5)) {
+      // metered like App does with a cache: reading above it, measuring beneath it
+      RecordReader<String> reader = new MeteredRecordReader<>(
+          CachingRecordReader.of(new MeteredRecordReader<>(new Records("a", "b", "a", "a"), null, measure),
+              cache, ResultCache.fingerprint("schema"), hits),
+          read, null);
+      while (reader.hasNext()) {
+        String record = reader.read();
+        Map<String, List<MetricResult>> result = reader.measure(null, record);
+        assertEquals(record, result.get("record").get(0).getResultMap().get("record0"));
+      }
+      assertEquals(4, read.getCount());
+      assertEquals(2, measure.getCount());
+      assertEquals(2, hits.getCount());
+    } finally {
+      try (Stream<Path> files = Files.walk(directory)) {
+        for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator)
+          Files.delete(file);
+      }
+    }
+  }
+
+  private static class Records extends RecordReader<String> {
+    private final Iterator<String> records;
+
+    private Records(String... records) {
+      super(null, null);
+      this.records = List.of(records).iterator();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return records.hasNext();
+    }
+
+    @Override
+    public String read() {
+      return records.next();
+    }
+
+    @Override
+    public Map<String, List<MetricResult>> measure(CalculatorFacade calculator, String record) {
+      return MetricResults.of("record", record).get();
+    }
+  }
+}
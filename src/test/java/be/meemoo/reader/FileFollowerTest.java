@@ -0,0 +1,73 @@
+package be.meemoo.reader;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FileFollowerTest {
+
+  @Test
+  public void readsCompleteLinesAcrossRotation() throws Exception {
+    Path directory = Files.createTempDirectory("follow");
+    Path file = directory.resolve("records.ndjson");
+    Path rotated = directory.resolve("records.ndjson.1");
+    append(file, "first\r\nsecond");
+
+    try (FileFollower follower = new FileFollower(file, null, 10)) {
+      assertEquals("first", follower.readLine());
+      assertTrue(follower.isFirstLine());
+      // the second line is only read once it is complete
+      append(file, " line\n");
+      assertEquals("second line", follower.readLine());
+      assertFalse(follower.isFirstLine());
+      assertEquals(19, follower.getPosition().getOffset());
+
+      // lines written to the old file after it was renamed come before those of the new file
+      Files.move(file, rotated);
+      append(rotated, "last\n");
+      append(file, "new\n");
+      assertEquals("last", follower.readLine());
+      assertEquals("new", follower.readLine());
+      assertTrue(follower.isFirstLine());
+      assertEquals(4, follower.getPosition().getOffset());
+    } finally {
+      Files.delete(rotated);
+      Files.delete(file);
+      Files.delete(directory);
+    }
+  }
+
+  @Test
+  public void continuesFromAPosition() throws Exception {
+    Path directory = Files.createTempDirectory("follow");
+    Path file = directory.resolve("records.ndjson");
+    append(file, "one\ntwo\nthree\n");
+
+    FileFollower.Position position;
+    try (FileFollower follower = new FileFollower(file, null, 10)) {
+      follower.readLine();
+      position = follower.getPosition();
+    }
+    try (FileFollower follower = new FileFollower(file, position, 10)) {
+      assertEquals("two", follower.readLine());
+    }
+    // a position in another file is not continued from
+    try (FileFollower follower = new FileFollower(file, new FileFollower.Position("another", 4), 10)) {
+      assertEquals("one", follower.readLine());
+    } finally {
+      Files.delete(file);
+      Files.delete(directory);
+    }
+  }
+
+  private static void append(Path file, String text) throws IOException {
+    Files.writeString(file, text, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+  }
+}
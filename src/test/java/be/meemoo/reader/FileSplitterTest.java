@@ -0,0 +1,74 @@
+package be.meemoo.reader;
+
+import be.meemoo.RecordFactory;
+import de.gwdg.metadataqa.api.calculator.CalculatorFacade;
+import de.gwdg.metadataqa.api.configuration.MeasurementConfiguration;
+import de.gwdg.metadataqa.api.schema.BaseSchema;
+import de.gwdg.metadataqa.api.schema.Format;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class FileSplitterTest {
+
+  @Test
+  public void splitsMultilineRecordsInMoreRangesThanRecords() throws Exception {
+    Path file = Paths.get("src/test/resources/csv/multiline.csv");
+    for (boolean tokenize : new boolean[]{false, true})
+      for (int parts = 1; parts <= 8; parts++)
+        assertEquals("Split in " + parts, readSequentially(file, tokenize), readSplit(file, parts, tokenize));
+  }
+
+  @Test
+  public void splitsQuotedNewLinesAndQuotes() throws Exception {
+    Path file = Files.createTempFile("split", ".csv");
+    StringBuilder csv = new StringBuilder("id,text\n");
+    for (int i = 0; i < 10; i++)
+      csv.append(i).append(",\"line\n").append(i % 3 == 0 ? "\"\"quoted\"\"\n\n" : "").append("end\"\n");
+    Files.writeString(file, csv);
+    try {
+      List<List<String>> records = readSequentially(file, true);
+      assertEquals(10, records.size());
+      for (int parts = 1; parts <= 40; parts++)
+        assertEquals("Split in " + parts, records, readSplit(file, parts, true));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  private static List<List<String>> readSequentially(Path file, boolean tokenize) throws Exception {
+    try (BufferedReader input = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+         CSVRecordReader reader = new CSVRecordReader(input, newCalculator(), null, tokenize)) {
+      return readAll(reader);
+    }
+  }
+
+  private static List<List<String>> readSplit(Path file, int parts, boolean tokenize) throws Exception {
+    List<List<String>> records = new ArrayList<>();
+    for (RecordReader<?> part : RecordFactory.getSplitRecordReaders(file.toString(), newCalculator(), parts, new ReaderOptions(tokenize, false)))
+      try (part) {
+        records.addAll(readAll((CSVRecordReader) part));
+      }
+    return records;
+  }
+
+  private static List<List<String>> readAll(CSVRecordReader reader) {
+    List<List<String>> records = new ArrayList<>();
+    while (reader.hasNext())
+      records.add(reader.read());
+    return records;
+  }
+
+  private static CalculatorFacade newCalculator() {
+    return new CalculatorFacade(new MeasurementConfiguration())
+      .setSchema(new BaseSchema().setFormat(Format.CSV));
+  }
+}
@@ -0,0 +1,77 @@
+package be.meemoo.reader;
+
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class RecordFieldsTest {
+
+  private static final String RECORD = "{\"cp_id\":\"OR-123\",\"count\":2,"
+      + "\"edm:ProvidedCHO\":[{\"dc:title\":[\"first\",\"second\"],\"dc:subject\":null}],"
+      + "\"parts\":[{\"name\":\"a\"},{\"name\":\"b\"}]}";
+
+  @Test
+  public void readsMembersAndElements() {
+    assertEquals("OR-123", read("$.cp_id"));
+    assertEquals("2", read("$['count']"));
+    assertEquals("first", read("$['edm:ProvidedCHO'][0]['dc:title']"));
+    assertEquals("second", read("$['edm:ProvidedCHO'][0]['dc:title'][1]"));
+    // arrays are read as their first value
+    assertEquals("first", read("$['edm:ProvidedCHO']['dc:title']"));
+    assertEquals("a", read("$.parts[*].name"));
+    assertEquals("b", read("$.parts[1].name"));
+    assertEquals("{\"name\":\"b\"}", read("$.parts[1]"));
+  }
+
+  @Test
+  public void readsNullWhenNothingMatches() {
+    assertNull(read("$.missing"));
+    assertNull(read("$['edm:ProvidedCHO'][0]['dc:subject']"));
+    assertNull(read("$.parts[5].name"));
+  }
+
+  @Test
+  public void rejectsOtherPaths() {
+    for (String path : new String[]{"cp_id", "$..name", "$.parts[?(@.name)]", "$.parts[0", "$['dc:title"}) {
+      try {
+        RecordFields.jsonPath(path);
+        fail("Accepted " + path);
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void readsXmlWithoutExternalEntities() throws Exception {
+    Function<String, String> title = RecordFields.xpath("/record/title", Map.of());
+    assertEquals("first", title.apply("<record><title>first</title><title>second</title></record>"));
+    assertNull(title.apply("<record/>"));
+    // the document type of exports is not loaded
+    assertEquals("first", title.apply("<!DOCTYPE record SYSTEM \"http://localhost:1/record.dtd\">"
+        + "<record><title>first</title></record>"));
+
+    // external entities could read any file the server can read
+    Path secret = Files.createTempFile("secret", ".txt");
+    Files.writeString(secret, "secret");
+    try {
+      String value = title.apply("<!DOCTYPE record [<!ENTITY secret SYSTEM \"" + secret.toUri() + "\">]>"
+          + "<record><title>&secret;</title></record>");
+      assertNull(value);
+    } finally {
+      Files.delete(secret);
+    }
+  }
+
+  private static String read(String path) {
+    Function<String, String> field = RecordFields.jsonPath(path);
+    return field.apply(RECORD);
+  }
+}
@@ -0,0 +1,65 @@
+package be.meemoo.reader;
+
+import be.meemoo.stats.Sample;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SamplingRecordReaderTest {
+
+  @Test
+  public void drawsEveryRecordOfAStratumAsOften() throws IOException {
+    int trials = 4000;
+    int size = 4;
+    int[] drawn = new int[30];
+    Random random = new Random(11);
+    for (int trial = 0; trial < trials; trial++) {
+      Sample sample = new Sample(List.of("completeness:TOTAL"), 0);
+      SamplingRecordReader<String> reader = SamplingRecordReader.ofSize(records(30), sample, "$.cp", size, random);
+      int count = 0;
+      while (reader.hasNext()) {
+        drawn[Integer.parseInt(RecordFields.jsonPath("$.id").apply(reader.read()))]++;
+        count++;
+      }
+      assertEquals(2 * size, count);
+      assertEquals(20, sample.getStrata().get("a")[0]);
+      assertEquals(10, sample.getStrata().get("b")[0]);
+    }
+
+    // records of a are drawn with a chance of 4 in 20, those of b of 4 in 10
+    for (int id = 0; id < drawn.length; id++) {
+      double expected = trials * (double) size / (id % 3 == 2 ? 10 : 20);
+      assertTrue("record " + id + " drawn " + drawn[id] + " times", Math.abs(drawn[id] - expected) < 0.1 * expected);
+    }
+  }
+
+  @Test
+  public void countsRecordsNotSampledAtARate() throws IOException {
+    Sample sample = new Sample(List.of("completeness:TOTAL"), 0);
+    SamplingRecordReader<String> reader = SamplingRecordReader.ofRate(records(30), sample, null, 0.5, new Random(3));
+    int count = 0;
+    while (reader.hasNext()) {
+      reader.read();
+      count++;
+    }
+    assertTrue(count > 0 && count < 30);
+    assertEquals(30, sample.getRecords());
+  }
+
+  /**
+   * Records with an id, every third one of content partner b and the others of a.
+   */
+  private static JSONRecordReader records(int count) throws IOException {
+    StringBuilder records = new StringBuilder();
+    for (int id = 0; id < count; id++)
+      records.append(String.format("{\"id\":%s,\"cp\":\"%s\"}%n", id, id % 3 == 2 ? "b" : "a"));
+    return new JSONRecordReader(new BufferedReader(new StringReader(records.toString())), null);
+  }
+}
@@ -0,0 +1,69 @@
+package be.meemoo.reader;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.gwdg.metadataqa.api.calculator.CalculatorFacade;
+import de.gwdg.metadataqa.api.configuration.MeasurementConfiguration;
+import de.gwdg.metadataqa.api.schema.BaseSchema;
+import de.gwdg.metadataqa.api.schema.Format;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class StreamingJSONRecordReaderTest {
+
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  // escapes, unicode, nested arrays and objects, and a member named like the address after the records
+  private static final List<String> RECORDS = List.of(
+      "{\"pid\":\"1\",\"title\":[\"First \\\"quoted\\\"\",\"é\\u00e9\"],\"parts\":[{\"results\":[]}],\"size\":1.5e3}",
+      "{\"pid\":\"2\",\"title\":null,\"empty\":{},\"flags\":[true,false],\"count\":-7}",
+      "{\"pid\":\"3\",\"results\":{\"items\":[{\"pid\":\"not a record\"}]}}");
+
+  @Test
+  public void readsTheSameRecordsAsTheLineReader() throws Exception {
+    List<JsonNode> lines = parse(readAll(new JSONRecordReader(input(String.join("\n", RECORDS) + "\n"), newCalculator())));
+    assertEquals(RECORDS.size(), lines.size());
+
+    String records = "[\n    " + String.join(",\n    ", RECORDS) + "\n  ]";
+    String[][] documents = {
+        {"$.results[*]", "{\"results\": " + records + "}"},
+        {"$['results'][*]", "{\"total\": 3, \"skipped\": {\"results\": [1]},\n  \"results\": " + records + ", \"next\": null}"},
+        {"$.data['items']", "{\"data\": {\"count\": 3, \"items\": " + records + "}}"},
+        {"$.data.items[*]", "{\"data\": {\"items\": " + records + "}, \"items\": [{}]}"}};
+    for (String[] document : documents)
+      assertEquals(document[0], lines, parse(readAll(new StreamingJSONRecordReader(input(document[1]), newCalculator(), document[0]))));
+
+    // an address leading to a single record
+    assertEquals(lines.subList(0, 1),
+        parse(readAll(new StreamingJSONRecordReader(input("{\"record\": " + RECORDS.get(0) + "}"), newCalculator(), "$.record"))));
+  }
+
+  private static BufferedReader input(String json) {
+    return new BufferedReader(new StringReader(json));
+  }
+
+  private static CalculatorFacade newCalculator() {
+    return new CalculatorFacade(new MeasurementConfiguration())
+      .setSchema(new BaseSchema().setFormat(Format.JSON));
+  }
+
+  private static List<String> readAll(RecordReader<String> reader) {
+    List<String> records = new ArrayList<>();
+    while (reader.hasNext())
+      records.add(reader.read());
+    return records;
+  }
+
+  private static List<JsonNode> parse(List<String> records) throws Exception {
+    List<JsonNode> nodes = new ArrayList<>();
+    for (String record : records)
+      nodes.add(mapper.readTree(record));
+    return nodes;
+  }
+}
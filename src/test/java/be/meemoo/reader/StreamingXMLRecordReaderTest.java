@@ -0,0 +1,118 @@
+package be.meemoo.reader;
+
+import de.gwdg.metadataqa.api.calculator.CalculatorFacade;
+import de.gwdg.metadataqa.api.configuration.MeasurementConfiguration;
+import de.gwdg.metadataqa.api.schema.BaseSchema;
+import de.gwdg.metadataqa.api.schema.Format;
+import org.junit.Test;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class StreamingXMLRecordReaderTest {
+
+  private static final Map<String, String> NAMESPACES = Map.of(
+      "oai", "http://www.openarchives.org/OAI/2.0/",
+      "mods", "http://www.loc.gov/mods/v3",
+      "xlink", "http://www.w3.org/1999/xlink",
+      "dc", "http://purl.org/dc/elements/1.1/");
+
+  // the namespaces of the records are declared on the root and on other ancestors, with another default namespace
+  private static final String INPUT = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+      + "<OAI-PMH xmlns=\"http://www.openarchives.org/OAI/2.0/\" xmlns:mods=\"http://www.loc.gov/mods/v3\">\n"
+      + "  <ListRecords xmlns:xlink=\"http://www.w3.org/1999/xlink\">\n"
+      + "    <record><metadata xmlns:dc=\"http://purl.org/dc/elements/1.1/\">\n"
+      + "      <mods:mods version=\"3.5\"><mods:titleInfo><mods:title>First &amp; <![CDATA[<only>]]></mods:title></mods:titleInfo>\n"
+      + "        <mods:location><mods:url xlink:href=\"https://example.org/1\">one</mods:url></mods:location>\n"
+      + "        <dc:subject>film</dc:subject><!-- a comment --></mods:mods>\n"
+      + "    </metadata></record>\n"
+      + "    <record><metadata xmlns:dc=\"http://purl.org/dc/elements/1.1/\">\n"
+      + "      <mods:mods version=\"3.5\"><mods:titleInfo><mods:title>Tweede é</mods:title></mods:titleInfo>\n"
+      + "        <mods:location><mods:url xlink:href=\"https://example.org/2\">two</mods:url></mods:location>\n"
+      + "        <dc:subject/></mods:mods>\n"
+      + "    </metadata></record>\n"
+      + "  </ListRecords>\n"
+      + "</OAI-PMH>\n";
+
+  @Test
+  public void readsTheSameRecordsAsTheDomReader() throws Exception {
+    for (String address : new String[]{"//mods:mods", "/oai:OAI-PMH/oai:ListRecords/oai:record/oai:metadata/mods:mods",
+                                       "//oai:record/*/mods:mods", "//oai:record"}) {
+      List<String> streamed = readAll(new StreamingXMLRecordReader(input(), newCalculator(), address));
+      List<String> parsed = readAll(new XMLRecordReader(input(), newCalculator()).setRecordAddress(address));
+      assertEquals(address, 2, streamed.size());
+      assertEquals(address, canonical(parsed), canonical(streamed));
+
+      // the namespaces of the ancestors are declared on the records
+      for (String path : new String[]{"//mods:title", "//mods:url/@xlink:href", "//dc:subject", "count(//*)"}) {
+        Function<String, String> field = RecordFields.xpath(path, NAMESPACES);
+        for (int i = 0; i < streamed.size(); i++)
+          assertEquals(address + " " + path, field.apply(parsed.get(i)), field.apply(streamed.get(i)));
+      }
+      assertEquals("First & <only>", RecordFields.xpath("//mods:title", NAMESPACES).apply(streamed.get(0)));
+      assertNotNull(RecordFields.xpath("//mods:url/@xlink:href", NAMESPACES).apply(streamed.get(1)));
+    }
+  }
+
+  private static BufferedReader input() {
+    return new BufferedReader(new StringReader(INPUT));
+  }
+
+  private static CalculatorFacade newCalculator() {
+    return new CalculatorFacade(new MeasurementConfiguration())
+      .setSchema(new BaseSchema().setFormat(Format.XML).setNamespaces(NAMESPACES));
+  }
+
+  private static List<String> readAll(RecordReader<String> reader) {
+    List<String> records = new ArrayList<>();
+    while (reader.hasNext())
+      records.add(reader.read());
+    return records;
+  }
+
+  /**
+   * The records as their elements by namespace and name, with their attributes and text, leaving out the namespace
+   * declarations and comments, which are serialized differently.
+   */
+  private static List<String> canonical(List<String> records) throws Exception {
+    List<String> canonical = new ArrayList<>();
+    for (String record : records) {
+      StringBuilder builder = new StringBuilder();
+      append(XMLRecordReader.newDocumentBuilder().parse(new InputSource(new StringReader(record))).getDocumentElement(), builder);
+      canonical.add(builder.toString());
+    }
+    return canonical;
+  }
+
+  private static void append(Element element, StringBuilder builder) {
+    builder.append('{').append(element.getNamespaceURI()).append('}').append(element.getLocalName());
+    NamedNodeMap attributes = element.getAttributes();
+    TreeSet<String> sorted = new TreeSet<>();
+    for (int i = 0; i < attributes.getLength(); i++) {
+      Attr attribute = (Attr) attributes.item(i);
+      if (!"http://www.w3.org/2000/xmlns/".equals(attribute.getNamespaceURI()))
+        sorted.add("{" + attribute.getNamespaceURI() + "}" + attribute.getLocalName() + "=" + attribute.getValue());
+    }
+    builder.append(sorted).append('(');
+    for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+      if (child instanceof Element)
+        append((Element) child, builder);
+      else if (child.getNodeType() == Node.TEXT_NODE || child.getNodeType() == Node.CDATA_SECTION_NODE)
+        builder.append(child.getNodeValue());
+    }
+    builder.append(')');
+  }
+}
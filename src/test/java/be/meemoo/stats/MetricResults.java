@@ -0,0 +1,77 @@
+package be.meemoo.stats;
+
+import de.gwdg.metadataqa.api.interfaces.MetricResult;
+import de.gwdg.metadataqa.api.util.CompressionLevel;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Results of a record like a calculator returns them, a metric result per calculator with a value per column. The
+ * values are numbers, booleans, text, or maps of values, which are listed as the columns of their values.
+ */
+public class MetricResults {
+
+  private final Map<String, List<MetricResult>> results = new LinkedHashMap<>();
+
+  public static MetricResults of(String calculator, Object... values) {
+    return new MetricResults().and(calculator, values);
+  }
+
+  public MetricResults and(String calculator, Object... values) {
+    Map<String, Object> resultMap = new LinkedHashMap<>();
+    for (int i = 0; i < values.length; i++)
+      resultMap.put(calculator + i, values[i]);
+    results.put(calculator, List.of(new Result(calculator, resultMap)));
+    return this;
+  }
+
+  public Map<String, List<MetricResult>> get() {
+    return results;
+  }
+
+  /**
+   * Serializable, like the results of the calculators, so they can be cached.
+   */
+  private static class Result implements MetricResult, Serializable {
+    private final String calculator;
+    private final Map<String, Object> resultMap;
+
+    private Result(String calculator, Map<String, Object> resultMap) {
+      this.calculator = calculator;
+      this.resultMap = resultMap;
+    }
+
+    @Override
+    public String getName() {
+      return calculator;
+    }
+
+    @Override
+    public Map<String, Object> getResultMap() {
+      return resultMap;
+    }
+
+    @Override
+    public List<String> getList(boolean withLabel, CompressionLevel compressionLevel) {
+      List<String> list = new ArrayList<>();
+      for (Object value : resultMap.values()) {
+        if (value instanceof Map)
+          ((Map<?, ?>) value).values().forEach(v -> list.add(String.valueOf(v)));
+        else if (value instanceof Boolean)
+          list.add((Boolean) value ? "1" : "0");
+        else
+          list.add(String.valueOf(value));
+      }
+      return list;
+    }
+
+    @Override
+    public String getCsv(boolean withLabel, CompressionLevel compressionLevel) {
+      return String.join(",", getList(withLabel, compressionLevel));
+    }
+  }
+}
@@ -0,0 +1,57 @@
+package be.meemoo.stats;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class SampleTest {
+
+  private static final double[] VALUES = {0.5, 0.6875, 1.0, 0.3125};
+  // the variance of the values, as an estimate of the variance of all records
+  private static final double VARIANCE = 0.064453125 * 4 / 3;
+
+  @Test
+  public void estimatesTheMeanWithAnInterval() {
+    Sample sample = new Sample(List.of("completeness:TOTAL"), 0);
+    for (int i = 0; i < 10; i++)
+      sample.count("NA");
+    for (double value : VALUES)
+      sample.add("NA", MetricResults.of("completeness", String.valueOf(value)).get());
+
+    // while reading, the part of the records that was sampled is not known
+    Sample.Estimate estimate = sample.estimate(0);
+    assertEquals(4, estimate.getCount());
+    assertEquals(0.625, estimate.getMean(), 1e-9);
+    assertEquals(Math.sqrt(VARIANCE / 4), estimate.getStandardError(), 1e-9);
+    assertEquals(0.625 - Sample.Z * Math.sqrt(VARIANCE / 4), estimate.getLow(), 1e-9);
+    assertEquals(0.625 + Sample.Z * Math.sqrt(VARIANCE / 4), estimate.getHigh(), 1e-9);
+
+    // once all records were read, 4 of 10 were sampled
+    sample.readAll();
+    estimate = sample.estimate(0);
+    assertEquals(0.625, estimate.getMean(), 1e-9);
+    assertEquals(Math.sqrt(VARIANCE / 4 * 0.6), estimate.getStandardError(), 1e-9);
+  }
+
+  @Test
+  public void weighsStrataByTheirRecords() {
+    Sample sample = new Sample(List.of("completeness:TOTAL"), 0);
+    for (int i = 0; i < 30; i++)
+      sample.count("a");
+    for (int i = 0; i < 10; i++)
+      sample.count("b");
+    for (double value : VALUES)
+      sample.add("a", MetricResults.of("completeness", String.valueOf(value)).get());
+    // a stratum sampled completely has no error
+    for (int i = 0; i < 10; i++)
+      sample.add("b", MetricResults.of("completeness", "0.25").get());
+    sample.readAll();
+
+    Sample.Estimate estimate = sample.estimate(0);
+    assertEquals(14, estimate.getCount());
+    assertEquals((30 * 0.625 + 10 * 0.25) / 40, estimate.getMean(), 1e-9);
+    assertEquals(Math.sqrt(30 * 30 * VARIANCE / 4 * (1 - 4 / 30.0)) / 40, estimate.getStandardError(), 1e-9);
+  }
+}
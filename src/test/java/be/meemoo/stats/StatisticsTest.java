@@ -0,0 +1,96 @@
+package be.meemoo.stats;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class StatisticsTest {
+
+  @Test
+  public void accumulatesValues() {
+    Statistics statistics = new Statistics(Arrays.asList("completeness:TOTAL", "ruleCatalog:score"));
+    double[] values = {0.5, 0.6875, 1.0, 0.3125};
+    for (double value : values)
+      statistics.add(0, value);
+    statistics.add(1, Statistics.parse("NA"));
+    statistics.add(1, Statistics.parse("2"));
+
+    assertEquals(4, statistics.getCount(0));
+    assertEquals(2.5, statistics.getSum(0), 1e-9);
+    assertEquals(0.3125, statistics.getMin(0), 1e-9);
+    assertEquals(1.0, statistics.getMax(0), 1e-9);
+    assertEquals(0.625, statistics.getMean(0), 1e-9);
+    assertEquals(0.064453125, statistics.getVariance(0), 1e-9);
+    assertArrayEquals(new Long[]{0L, 0L, 0L, 1L, 0L, 1L, 1L, 0L, 0L, 1L}, box(statistics.getHistogram(0)));
+
+    assertEquals(1, statistics.getCount(1));
+    assertEquals(1, statistics.getAbove(1));
+  }
+
+  @Test
+  public void readsTheValuesOfResultMaps() {
+    List<String> columns = Arrays.asList("completeness:TOTAL", "completeness:MANDATORY",
+        "existence:dc_title", "existence:dc_date", "extracted:id", "multilingual:nl", "multilingual:en", "score");
+    Map<String, Integer> languages = new LinkedHashMap<>();
+    languages.put("nl", 2);
+    languages.put("en", 1);
+    Statistics statistics = new Statistics(columns);
+    statistics.add(MetricResults.of("completeness", 0.6875, 1)
+        .and("existence", true, false)
+        .and("extracted", "OR-123")
+        .and("multilingual", languages)
+        .and("score", "NA")
+        .get());
+
+    Statistics expected = new Statistics(columns);
+    expected.add(new double[]{0.6875, 1, 1, 0, Double.NaN, 2, 1, Double.NaN});
+
+    assertEquals(expected.getRecords(), statistics.getRecords());
+    for (int i = 0; i < columns.size(); i++) {
+      assertEquals(columns.get(i), expected.getCount(i), statistics.getCount(i));
+      assertEquals(columns.get(i), expected.getSum(i), statistics.getSum(i), 1e-9);
+    }
+  }
+
+  @Test
+  public void mergesLikeASingleRun() {
+    List<String> columns = Arrays.asList("completeness:TOTAL", "ruleCatalog:score");
+    Statistics whole = new Statistics(columns);
+    Statistics[] shards = {new Statistics(columns), new Statistics(columns), new Statistics(columns)};
+    double[] values = {0.5, 0.6875, 1.0, 0.3125, 1.5, -0.25, 0.0, 0.9};
+    for (int i = 0; i < values.length; i++) {
+      whole.addRecords(1);
+      whole.add(0, values[i]);
+      whole.add(1, i % 2 == 0 ? Double.NaN : values[i] * 10);
+      shards[i % 3].addRecords(1);
+      shards[i % 3].add(0, values[i]);
+      shards[i % 3].add(1, i % 2 == 0 ? Double.NaN : values[i] * 10);
+    }
+
+    Statistics merged = new Statistics(columns);
+    for (Statistics shard : shards)
+      merged.merge(shard);
+
+    assertEquals(whole.getRecords(), merged.getRecords());
+    for (int i = 0; i < columns.size(); i++) {
+      assertEquals(whole.getCount(i), merged.getCount(i));
+      assertEquals(whole.getMissing(i), merged.getMissing(i));
+      assertEquals(whole.getSum(i), merged.getSum(i), 1e-9);
+      assertEquals(whole.getMin(i), merged.getMin(i), 1e-9);
+      assertEquals(whole.getMax(i), merged.getMax(i), 1e-9);
+      assertEquals(whole.getMean(i), merged.getMean(i), 1e-9);
+      assertEquals(whole.getVariance(i), merged.getVariance(i), 1e-9);
+      assertArrayEquals(box(whole.getHistogram(i)), box(merged.getHistogram(i)));
+    }
+  }
+
+  private static Long[] box(long[] values) {
+    return Arrays.stream(values).boxed().toArray(Long[]::new);
+  }
+}
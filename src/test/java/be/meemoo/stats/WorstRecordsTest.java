@@ -0,0 +1,52 @@
+package be.meemoo.stats;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class WorstRecordsTest {
+
+  @Test
+  public void mergedHeapsKeepTheLowestValues() {
+    int size = 25;
+    Random random = new Random(42);
+    WorstRecords.Heap[] heaps = {new WorstRecords.Heap(size), new WorstRecords.Heap(size), new WorstRecords.Heap(size)};
+    List<double[]> all = new ArrayList<>();
+    for (int offset = 0; offset < 1000; offset++) {
+      // few distinct values, so ties are broken by the offset
+      double score = random.nextInt(40) / 40.0;
+      all.add(new double[]{score, offset});
+      heaps[offset % 3].add(score, "input", offset, new String[]{"id" + offset});
+    }
+    all.sort(Comparator.<double[]>comparingDouble(e -> e[0]).thenComparingDouble(e -> e[1]));
+
+    WorstRecords.Heap merged = new WorstRecords.Heap(size);
+    for (WorstRecords.Heap heap : heaps)
+      merged.merge(heap);
+    List<WorstRecords.Entry> worst = merged.sorted();
+
+    assertEquals(size, worst.size());
+    for (int i = 0; i < size; i++) {
+      assertEquals(all.get(i)[0], worst.get(i).getScore(), 0);
+      assertEquals((long) all.get(i)[1], worst.get(i).getOffset());
+      assertEquals("id" + worst.get(i).getOffset(), worst.get(i).getIds()[0]);
+    }
+  }
+
+  @Test
+  public void keepsFewerRecordsThanItsSize() {
+    WorstRecords.Heap heap = new WorstRecords.Heap(10);
+    heap.add(0.5, "input", 0, new String[0]);
+    heap.add(0.25, "input", 1, new String[0]);
+
+    List<WorstRecords.Entry> worst = heap.sorted();
+    assertEquals(2, worst.size());
+    assertEquals(1, worst.get(0).getOffset());
+    assertEquals(0, worst.get(1).getOffset());
+  }
+}
@@ -0,0 +1,143 @@
+package be.meemoo.writer;
+
+import be.meemoo.stats.MetricResults;
+import de.gwdg.metadataqa.api.interfaces.MetricResult;
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AsyncResultWriterTest {
+
+  @Test
+  public void blocksWhenTheBufferIsFull() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    Collecting collecting = new Collecting(release, -1);
+    AsyncResultWriter writer = new AsyncResultWriter(collecting, 2, 1);
+
+    AtomicInteger handed = new AtomicInteger();
+    Thread measuring = new Thread(() -> {
+      try {
+        for (int i = 0; i < 10; i++) {
+          writer.writeResult(result(i));
+          handed.incrementAndGet();
+        }
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    measuring.setDaemon(true);
+    measuring.start();
+    // a batch being written, a batch waiting and a batch being filled
+    long deadline = System.nanoTime() + 10_000_000_000L;
+    while (handed.get() < 5 || measuring.getState() != Thread.State.WAITING) {
+      assertTrue("The results were not handed over", System.nanoTime() < deadline);
+      Thread.sleep(1);
+    }
+    Thread.sleep(50);
+    assertEquals(5, handed.get());
+
+    release.countDown();
+    measuring.join();
+    writer.flush();
+    assertEquals(10, collecting.results.size());
+    assertEquals(1, collecting.flushes.get());
+    writer.close();
+    for (int i = 0; i < 10; i++)
+      assertEquals(i, collecting.results.get(i).get("record").get(0).getResultMap().get("record0"));
+  }
+
+  @Test
+  public void throwsTheFailureOfTheWriterThread() throws Exception {
+    AsyncResultWriter writer = new AsyncResultWriter(new Collecting(null, 3), 2, 1);
+    for (int i = 0; i < 4; i++)
+      writer.writeResult(result(i));
+    try {
+      writer.flush();
+      fail("The failure was not thrown by flush");
+    } catch (IOException e) {
+      assertEquals("Result 3", e.getCause().getMessage());
+    }
+    try {
+      writer.close();
+      fail("The failure was not thrown by close");
+    } catch (IOException e) {
+      assertEquals("Result 3", e.getCause().getMessage());
+    }
+  }
+
+  @Test
+  public void throwsTheFailureOfTheWriterThreadOnClose() throws Exception {
+    Collecting collecting = new Collecting(null, 1);
+    AsyncResultWriter writer = AsyncResultWriter.of(collecting, 100);
+    writer.writeResult(result(0));
+    writer.writeResult(result(1));
+    try {
+      writer.close();
+      fail("The failure was not thrown by close");
+    } catch (IOException e) {
+      assertEquals("Result 1", e.getCause().getMessage());
+    }
+    assertTrue(collecting.closed);
+  }
+
+  private static Map<String, List<MetricResult>> result(int i) {
+    return MetricResults.of("record", i).get();
+  }
+
+  /**
+   * Collects the results written, after a latch is released, and fails on one of them.
+   */
+  private static class Collecting extends ResultWriter {
+    private final CountDownLatch release;
+    private final int failing;
+    private final List<Map<String, List<MetricResult>>> results = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger flushes = new AtomicInteger();
+    private volatile boolean closed = false;
+
+    private Collecting(CountDownLatch release, int failing) {
+      super(new BufferedWriter(new StringWriter()));
+      this.release = release;
+      this.failing = failing;
+    }
+
+    @Override
+    public void writeResult(Map<String, List<MetricResult>> result) throws IOException {
+      if (release != null) {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+      }
+      if (results.size() == failing)
+        throw new IOException("Result " + failing);
+      results.add(result);
+    }
+
+    @Override
+    public void writeHeader(List<String> header) {}
+
+    @Override
+    public void flush() {
+      flushes.incrementAndGet();
+    }
+
+    @Override
+    public void close() throws IOException {
+      closed = true;
+      super.close();
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package be.meemoo.writer;
+
+import be.meemoo.stats.MetricResults;
+import com.opencsv.CSVWriter;
+import de.gwdg.metadataqa.api.interfaces.MetricResult;
+import de.gwdg.metadataqa.api.util.CompressionLevel;
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class CSVResultWriterTest {
+
+  @Test
+  public void writesTheCellsOfGetList() throws IOException {
+    List<Map<String, List<MetricResult>>> results = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      Map<String, List<MetricResult>> result = MetricResults.of("extract", "OR-" + i, i % 7 == 0 ? null : "a \"title\"")
+          .and("completeness", i / 8.0, i * 1e-4, i * 1e6, i == 3 ? Double.NaN : 1.0)
+          .and("cardinality", i, (long) i << 40, -i)
+          // formatted as 1 and 0
+          .and("existence", i % 2 == 0, true)
+          .and("problemcatalog", Map.of("first", i, "second", i / 4.0))
+          .get();
+      result.put("compressed", List.of(new Compressed(i / 2.0, i)));
+      results.add(result);
+    }
+
+    StringWriter expected = new StringWriter();
+    CSVWriter csvWriter = new CSVWriter(expected);
+    for (Map<String, List<MetricResult>> result : results) {
+      List<String> cells = new ArrayList<>();
+      for (List<MetricResult> metricResults : result.values())
+        for (MetricResult metricResult : metricResults)
+          cells.addAll(metricResult.getList(false, CompressionLevel.NORMAL));
+      csvWriter.writeNext(cells.toArray(new String[0]));
+    }
+    csvWriter.flush();
+
+    StringWriter actual = new StringWriter();
+    CSVResultWriter writer = new CSVResultWriter(new BufferedWriter(actual));
+    for (Map<String, List<MetricResult>> result : results)
+      writer.writeResult(result);
+    writer.close();
+
+    assertEquals(expected.toString(), actual.toString());
+  }
+
+  /**
+   * Formats whole numbers without a fraction, unlike their strings.
+   */
+  private static class Compressed implements MetricResult {
+    private final Map<String, Object> resultMap = new LinkedHashMap<>();
+
+    private Compressed(double mean, int count) {
+      resultMap.put("mean", mean);
+      resultMap.put("count", count);
+    }
+
+    @Override
+    public String getName() {
+      return "compressed";
+    }
+
+    @Override
+    public Map<String, Object> getResultMap() {
+      return resultMap;
+    }
+
+    @Override
+    public List<String> getList(boolean withLabel, CompressionLevel compressionLevel) {
+      List<String> list = new ArrayList<>();
+      for (Object value : resultMap.values())
+        list.add(String.valueOf(value).replaceAll("\\.0$", ""));
+      return list;
+    }
+
+    @Override
+    public String getCsv(boolean withLabel, CompressionLevel compressionLevel) {
+      return String.join(",", getList(withLabel, compressionLevel));
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package be.meemoo.writer;
+
+import com.opencsv.CSVWriter;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+
+public class CSVRowBufferTest {
+
+  private static final String[][] ROWS = {
+      {"completeness_total", "existence_dc_title", "cardinality_dc_title"},
+      {"0.6875", "1", "NA"},
+      {"", null, "2"},
+      {"a \"quoted\" value", "comma, separated", "new\nline"},
+      {"\"", "\"\"", "carriage\r\nreturn"},
+      {"\u00fcn\u00efc\u00f6d\u00e9 \u20ac", "\\back\\slash", "'single'"},
+      {null},
+      {""},
+  };
+
+  @Test
+  public void writesLikeOpenCsv() throws IOException {
+    StringWriter expected = new StringWriter();
+    CSVWriter csvWriter = new CSVWriter(expected);
+    for (String[] cells : ROWS)
+      csvWriter.writeNext(cells);
+    csvWriter.flush();
+
+    StringWriter actual = new StringWriter();
+    CSVRowBuffer row = new CSVRowBuffer();
+    for (String[] cells : ROWS) {
+      for (String cell : cells)
+        row.add(cell);
+      row.writeTo(actual);
+    }
+
+    assertEquals(expected.toString(), actual.toString());
+  }
+
+  @Test
+  public void writesNumbersLikeTheirStrings() throws IOException {
+    long[] longs = {0, 1, -1, 7, 10, -10, 123456789, Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE};
+    double[] doubles = {0.0, -0.0, 1.0, 0.6875, -2.5, 1.0 / 3, 1e-3, 9.99e-4, 1e7, 9999999.5, 1e-300, Double.MAX_VALUE,
+        Double.MIN_VALUE, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+
+    StringWriter expected = new StringWriter();
+    CSVWriter csvWriter = new CSVWriter(expected);
+    StringWriter actual = new StringWriter();
+    CSVRowBuffer row = new CSVRowBuffer();
+    for (long value : longs) {
+      csvWriter.writeNext(new String[]{"a", String.valueOf(value)});
+      row.add("a");
+      row.add(value);
+      row.writeTo(actual);
+    }
+    for (double value : doubles) {
+      csvWriter.writeNext(new String[]{String.valueOf(value), null});
+      row.add(value);
+      row.add(null);
+      row.writeTo(actual);
+    }
+    csvWriter.flush();
+
+    assertEquals(expected.toString(), actual.toString());
+  }
+
+  @Test
+  public void growsForLongRows() throws IOException {
+    StringBuilder cell = new StringBuilder();
+    for (int i = 0; i < 10000; i++)
+      cell.append(i % 10 == 0 ? '"' : 'x');
+
+    StringWriter expected = new StringWriter();
+    CSVWriter csvWriter = new CSVWriter(expected);
+    csvWriter.writeNext(new String[]{cell.toString(), cell.toString()});
+    csvWriter.flush();
+
+    StringWriter actual = new StringWriter();
+    CSVRowBuffer row = new CSVRowBuffer();
+    row.add(cell.toString());
+    row.add(cell.toString());
+    row.writeTo(actual);
+
+    assertEquals(expected.toString(), actual.toString());
+  }
+}
@@ -0,0 +1,81 @@
+package be.meemoo.writer;
+
+import be.meemoo.RecordFactory;
+import be.meemoo.stats.MetricResults;
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CheckpointResultWriterTest {
+
+  private static final List<String> HEADER = List.of("recordId", "completeness:total");
+  private static final int RECORDS = 95;
+
+  @Test
+  public void resumesCsvToTheSameOutput() throws IOException {
+    assertResumes(CSVResultWriter::new);
+  }
+
+  @Test
+  public void resumesAJsonArrayToTheSameOutput() throws IOException {
+    assertResumes(output -> new JSONResultWriter(output, true));
+  }
+
+  @Test
+  public void resumesNewLineDelimitedJsonToTheSameOutput() throws IOException {
+    assertResumes(JSONResultWriter::new);
+  }
+
+  private static void assertResumes(Function<BufferedWriter, ResultWriter> format) throws IOException {
+    Path uninterrupted = Files.createTempFile("uninterrupted", ".out");
+    Path resumed = Files.createTempFile("resumed", ".out");
+    try {
+      ResultWriter writer = checkpointed(format.apply(RecordFactory.getOutputWriter(uninterrupted.toString(), false)), uninterrupted, null);
+      writer.writeHeader(HEADER);
+      write(writer, 0, RECORDS);
+      writer.close();
+      assertTrue(Files.notExists(Checkpoint.getPath(uninterrupted.toString())));
+
+      for (int stop : new int[]{10, 37, 90}) {
+        // stopped after a number of records, with part of the next one written
+        writer = checkpointed(format.apply(RecordFactory.getOutputWriter(resumed.toString(), false)), resumed, null);
+        writer.writeHeader(HEADER);
+        write(writer, 0, stop);
+        writer.abort();
+        Files.writeString(resumed, "{\"partial", StandardOpenOption.APPEND);
+
+        Checkpoint checkpoint = Checkpoint.load(Checkpoint.getPath(resumed.toString()));
+        assertEquals(stop / 10 * 10, checkpoint.getRecords());
+        writer = checkpointed(format.apply(RecordFactory.getOutputWriter(resumed.toString(), checkpoint.getOutputLength())), resumed, checkpoint);
+        writer.writeHeader(HEADER);
+        write(writer, checkpoint.getRecords(), RECORDS);
+        writer.close();
+
+        assertEquals("Stopped after " + stop, Files.readString(uninterrupted), Files.readString(resumed));
+        assertTrue(Files.notExists(Checkpoint.getPath(resumed.toString())));
+      }
+    } finally {
+      Files.delete(uninterrupted);
+      Files.delete(resumed);
+      Files.deleteIfExists(Checkpoint.getPath(resumed.toString()));
+    }
+  }
+
+  private static ResultWriter checkpointed(ResultWriter writer, Path output, Checkpoint resumeFrom) {
+    return new CheckpointResultWriter(writer, output.toString(), 10, 3600, resumeFrom);
+  }
+
+  private static void write(ResultWriter writer, long from, long to) throws IOException {
+    for (long i = from; i < to; i++)
+      writer.writeResult(MetricResults.of("recordId", "record " + i).and("completeness", i * 0.01).get());
+  }
+}
@@ -0,0 +1,61 @@
+package be.meemoo.writer;
+
+import be.meemoo.stats.MetricResults;
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GroupResultWriterTest {
+
+  private static final List<String> HEADER = List.of("cp_id", "completeness:total", "existence:title");
+
+  @Test
+  public void writesTheSameRowsWhenSpilling() throws IOException {
+    for (boolean csv : new boolean[]{true, false}) {
+      String inMemory = write(csv, 1000, 0);
+      assertTrue(inMemory.startsWith(csv ? "\"cp_id\"" : "{\"cp_id\":\"OR-00\""));
+      // more spills than runs merged at a time
+      assertEquals(round(inMemory), round(write(csv, 1, 100)));
+      assertEquals(round(inMemory), round(write(csv, 7, 10)));
+    }
+  }
+
+  private static String write(boolean csv, int maxGroups, int minSpills) throws IOException {
+    StringWriter output = new StringWriter();
+    GroupResultWriter writer = new GroupResultWriter(new BufferedWriter(output), csv, "cp_id", maxGroups);
+    writer.writeHeader(HEADER);
+    Random random = new Random(7);
+    for (int i = 0; i < 500; i++) {
+      String partner = String.format("OR-%02d", random.nextInt(40));
+      writer.writeResult(MetricResults.of("extract", partner)
+          .and("completeness", random.nextInt(5) * 0.25)
+          .and("existence", random.nextBoolean())
+          .get());
+    }
+    assertTrue(writer.getSpills() >= minSpills);
+    writer.close();
+    return output.toString();
+  }
+
+  /**
+   * Means merged in another order can differ in their last digits.
+   */
+  private static String round(String output) {
+    Matcher number = Pattern.compile("-?\\d+\\.\\d+(E-?\\d+)?").matcher(output);
+    StringBuilder rounded = new StringBuilder();
+    while (number.find())
+      number.appendReplacement(rounded, String.format(Locale.ROOT, "%.9f", Double.parseDouble(number.group())));
+    number.appendTail(rounded);
+    return rounded.toString();
+  }
+}
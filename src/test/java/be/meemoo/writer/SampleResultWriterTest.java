@@ -0,0 +1,36 @@
+package be.meemoo.writer;
+
+import be.meemoo.stats.MetricResults;
+import be.meemoo.stats.Sample;
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+
+public class SampleResultWriterTest {
+
+  @Test
+  public void stoppedEarlyOnlyWhenNotAllRecordsWereRead() throws IOException {
+    assertTrue(write(false).contains("\"stoppedEarly\":true"));
+    // precise enough after the last record
+    assertTrue(write(true).contains("\"stoppedEarly\":false"));
+  }
+
+  private static String write(boolean readAll) throws IOException {
+    Sample sample = new Sample(List.of("completeness:TOTAL"), 0.5);
+    for (int i = 0; i < 100; i++) {
+      sample.count("NA");
+      sample.add("NA", MetricResults.of("completeness", String.valueOf(i % 2 * 0.5)).get());
+    }
+    assertTrue(sample.isPrecise());
+    if (readAll)
+      sample.readAll();
+    StringWriter output = new StringWriter();
+    new SampleResultWriter(new BufferedWriter(output), false, sample, false).close();
+    return output.toString();
+  }
+}